@@ -6,6 +6,7 @@ import com.velocityessentials.backend.chat.ChatRelay;
 import com.velocityessentials.backend.chat.ChannelManager;    
 import com.velocityessentials.backend.chat.MuteManager;
 import com.velocityessentials.backend.commands.ChatCommand;      
+import com.velocityessentials.backend.stats.StatsPusher;
 
 import com.google.common.io.ByteArrayDataInput;
 import com.google.common.io.ByteArrayDataOutput;
@@ -41,6 +42,7 @@ public class VelocityEssentialsBackend extends JavaPlugin {
     private ChatRelay chatRelay;              
     private ChannelManager channelManager;     
     private MuteManager muteManager;     
+    private StatsPusher statsPusher;
     
     @Override
     public void onEnable() {
@@ -98,6 +100,12 @@ public class VelocityEssentialsBackend extends JavaPlugin {
             getLogger().info("Restart Handler enabled");
         }
         
+        // === SYSTEM 6: STATS PUSH ===
+        if (getConfig().getBoolean("stats-push.enabled", false)) {
+            getServer().getMessenger().registerOutgoingPluginChannel(this, CHANNEL);
+            statsPusher = new StatsPusher(this);
+        }
+        
         if (getConfig().getBoolean("chat.enabled", true) && 
             Bukkit.getPluginManager().getPlugin("PlaceholderAPI") == null) {
             getLogger().warning("PlaceholderAPI not found! Chat formatting will not work properly.");
@@ -117,6 +125,10 @@ public class VelocityEssentialsBackend extends JavaPlugin {
             restartHandler.shutdown();
         }
 
+        if (statsPusher != null) {
+            statsPusher.shutdown();
+        }
+
         getServer().getMessenger().unregisterIncomingPluginChannel(this);
         getServer().getMessenger().unregisterOutgoingPluginChannel(this);
         getLogger().info("VelocityEssentials Backend disabled!");
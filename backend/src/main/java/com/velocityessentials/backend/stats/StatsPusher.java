@@ -0,0 +1,226 @@
+package com.velocityessentials.backend.stats;
+
+import com.velocityessentials.backend.VelocityEssentialsBackend;
+import com.google.common.io.ByteArrayDataOutput;
+import com.google.common.io.ByteStreams;
+import org.bukkit.Bukkit;
+import org.bukkit.Statistic;
+import org.bukkit.entity.EntityType;
+import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerQuitEvent;
+import org.bukkit.event.player.PlayerStatisticIncrementEvent;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * sends stat changes to velocity as they happen instead of waiting for the proxy to read the stat files.
+ * increments are coalesced per player and key - only the latest value is kept, so a player mining a
+ * thousand blocks between flushes sends one number. flushed every few seconds, and when a player quits
+ * while someone else is online to carry the message.
+ * stats that tick rather than fire events (play time, distances on some versions) still come from the files
+ */
+public class StatsPusher implements Listener {
+    private static final String SUBCHANNEL = "stats_delta";
+    private static final int VERSION = 1;
+    // plugin messages from the server are capped at 32 KiB
+    private static final int MAX_BATCH_BYTES = 30_000;
+
+    private final VelocityEssentialsBackend plugin;
+    // player -> stat key -> latest value, only touched on the main thread
+    private final Map<UUID, PendingPlayer> pending = new LinkedHashMap<>();
+    private final Map<Statistic, String> customKeys = new EnumMap<>(Statistic.class);
+    private BukkitTask flushTask;
+
+    private static final class PendingPlayer {
+        private final String name;
+        private final Map<String, Integer> values = new LinkedHashMap<>();
+
+        PendingPlayer(String name) {
+            this.name = name;
+        }
+    }
+
+    public StatsPusher(VelocityEssentialsBackend plugin) {
+        this.plugin = plugin;
+
+        int intervalSeconds = Math.max(1, plugin.getConfig().getInt("stats-push.interval-seconds", 5));
+        plugin.getServer().getPluginManager().registerEvents(this, plugin);
+        flushTask = plugin.getServer().getScheduler().runTaskTimer(plugin, this::flush,
+            intervalSeconds * 20L, intervalSeconds * 20L);
+
+        plugin.getLogger().info("Stats push enabled - flushing every " + intervalSeconds + " seconds");
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onStatisticIncrement(PlayerStatisticIncrementEvent event) {
+        String key = statKey(event);
+        if (key == null) {
+            return;
+        }
+
+        Player player = event.getPlayer();
+        pending.computeIfAbsent(player.getUniqueId(), uuid -> new PendingPlayer(player.getName()))
+            .values.put(key, event.getNewValue());
+    }
+
+    // the player's last values go out right away through someone who stays - the quitting player's
+    // connection is already closing, so with nobody else online they wait for the next flush
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerQuit(PlayerQuitEvent event) {
+        flush(event.getPlayer());
+    }
+
+    public void flush() {
+        flush(null);
+    }
+
+    /**
+     * sends everything pending through an online player other than `leaving` - with nobody
+     * else online it stays pending for the next flush
+     */
+    private void flush(Player leaving) {
+        if (pending.isEmpty()) {
+            return;
+        }
+
+        Player carrier = null;
+        for (Player player : Bukkit.getOnlinePlayers()) {
+            if (player != leaving) {
+                carrier = player;
+                break;
+            }
+        }
+        if (carrier == null) {
+            return;
+        }
+
+        Batch batch = new Batch();
+        int batches = 0;
+        for (Map.Entry<UUID, PendingPlayer> entry : pending.entrySet()) {
+            for (Map.Entry<String, Integer> value : entry.getValue().values.entrySet()) {
+                if (!batch.fits(entry.getKey(), entry.getValue().name, value.getKey())) {
+                    carrier.sendPluginMessage(plugin, VelocityEssentialsBackend.CHANNEL, batch.encode());
+                    batches++;
+                    batch = new Batch();
+                }
+                batch.add(entry.getKey(), entry.getValue().name, value.getKey(), value.getValue());
+            }
+        }
+        if (!batch.isEmpty()) {
+            carrier.sendPluginMessage(plugin, VelocityEssentialsBackend.CHANNEL, batch.encode());
+            batches++;
+        }
+
+        if (plugin.debug) {
+            plugin.getLogger().info("Pushed stats of " + pending.size() + " players in " + batches + " messages");
+        }
+        pending.clear();
+    }
+
+    // values still pending are in the stat files the server saves on the way down
+    public void shutdown() {
+        if (flushTask != null) {
+            flushTask.cancel();
+        }
+        pending.clear();
+    }
+
+    // the key the proxy reads from the stat file, e.g. minecraft:mined:minecraft:stone
+    private String statKey(PlayerStatisticIncrementEvent event) {
+        Statistic statistic = event.getStatistic();
+        String category = switch (statistic) {
+            case MINE_BLOCK -> "minecraft:mined";
+            case BREAK_ITEM -> "minecraft:broken";
+            case CRAFT_ITEM -> "minecraft:crafted";
+            case USE_ITEM -> "minecraft:used";
+            case PICKUP -> "minecraft:picked_up";
+            case DROP -> "minecraft:dropped";
+            case KILL_ENTITY -> "minecraft:killed";
+            case ENTITY_KILLED_BY -> "minecraft:killed_by";
+            default -> null;
+        };
+
+        if (category == null) {
+            if (statistic.getType() != Statistic.Type.UNTYPED) {
+                return null;
+            }
+            // the statistic's own key is the vanilla name, e.g. PLAY_ONE_MINUTE -> minecraft:play_time
+            return customKeys.computeIfAbsent(statistic, stat -> "minecraft:custom:" + stat.getKey());
+        }
+
+        if (statistic.getType() == Statistic.Type.ENTITY) {
+            return event.getEntityType() != null && event.getEntityType() != EntityType.UNKNOWN ? category + ":" + event.getEntityType().getKey() : null;
+        }
+        return event.getMaterial() != null ? category + ":" + event.getMaterial().getKey() : null;
+    }
+
+    /**
+     * one plugin message: a table of the keys it uses, then each player's (key index, value) pairs
+     */
+    private static final class Batch {
+        private final Map<String, Integer> keys = new LinkedHashMap<>();
+        private final Map<UUID, List<int[]>> players = new LinkedHashMap<>();
+        private final Map<UUID, String> names = new LinkedHashMap<>();
+        // version and the two counts, plus the subchannel
+        private int bytes = 5 + SUBCHANNEL.length() + 2;
+
+        boolean fits(UUID uuid, String name, String key) {
+            return isEmpty() || bytes + added(uuid, name, key) <= MAX_BATCH_BYTES;
+        }
+
+        void add(UUID uuid, String name, String key, int value) {
+            bytes += added(uuid, name, key);
+            int index = keys.computeIfAbsent(key, k -> keys.size());
+            names.putIfAbsent(uuid, name);
+            players.computeIfAbsent(uuid, u -> new ArrayList<>()).add(new int[] { index, value });
+        }
+
+        boolean isEmpty() {
+            return players.isEmpty();
+        }
+
+        byte[] encode() {
+            ByteArrayDataOutput out = ByteStreams.newDataOutput(bytes);
+            out.writeUTF(SUBCHANNEL);
+            out.writeByte(VERSION);
+            out.writeShort(keys.size());
+            for (String key : keys.keySet()) {
+                out.writeUTF(key);
+            }
+
+            out.writeShort(players.size());
+            for (Map.Entry<UUID, List<int[]>> player : players.entrySet()) {
+                out.writeLong(player.getKey().getMostSignificantBits());
+                out.writeLong(player.getKey().getLeastSignificantBits());
+                out.writeUTF(names.get(player.getKey()));
+                out.writeShort(player.getValue().size());
+                for (int[] value : player.getValue()) {
+                    out.writeShort(value[0]);
+                    out.writeInt(value[1]);
+                }
+            }
+            return out.toByteArray();
+        }
+
+        // keys and names are ascii, so a char is a byte
+        private int added(UUID uuid, String name, String key) {
+            int added = 6;
+            if (!keys.containsKey(key)) {
+                added += 2 + key.length();
+            }
+            if (!players.containsKey(uuid)) {
+                added += 16 + 2 + name.length() + 2;
+            }
+            return added;
+        }
+    }
+}
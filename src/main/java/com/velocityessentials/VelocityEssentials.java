@@ -252,4 +252,9 @@ public class VelocityEssentials {
     public RestartScheduler getRestartScheduler() {
         return restartScheduler;
     }
+    
+    // null when the stats system is disabled
+    public StatsSystem getStatsSystem() {
+        return statsSystem;
+    }
 }
\ No newline at end of file
@@ -1,5 +1,9 @@
 package com.velocityessentials.commands;
 
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.velocityessentials.stats.RankTree;
 import com.velocityessentials.stats.StatsSystem;
 import com.velocitypowered.api.command.CommandSource;
 import com.velocitypowered.api.command.SimpleCommand;
@@ -64,6 +68,15 @@ public class EventCommand implements SimpleCommand {
                 showLeaderboard(source, args[1]);
                 break;
                 
+            case "rank":
+                if (args.length < 2 || (args.length < 3 && !(source instanceof Player))) {
+                    source.sendMessage(Component.text("Usage: /event rank <stat-key> [player]")
+                        .color(NamedTextColor.RED));
+                    return;
+                }
+                showRank(source, args[1], args.length > 2 ? args[2] : null);
+                break;
+                
             case "start":
                 if (!hasPermission(source, "velocityessentials.events.manage")) {
                     sendNoPermission(source);
@@ -179,8 +192,67 @@ public class EventCommand implements SimpleCommand {
             .append(Component.text(" ===", NamedTextColor.GOLD))
             .build());
         
-        // TODO: Implement leaderboard from database
-        source.sendMessage(Component.text("Loading leaderboard...", NamedTextColor.YELLOW));
+        JsonObject result = statsSystem.getEventLeaderboard(eventName, 10);
+        if (!result.get("success").getAsBoolean()) {
+            source.sendMessage(Component.text("Failed to load leaderboard", NamedTextColor.RED));
+            return;
+        }
+        
+        JsonArray leaderboard = result.getAsJsonArray("leaderboard");
+        if (leaderboard.isEmpty()) {
+            source.sendMessage(Component.text("No results yet", NamedTextColor.GRAY));
+            return;
+        }
+        
+        for (JsonElement element : leaderboard) {
+            JsonObject row = element.getAsJsonObject();
+            String username = row.has("username") && !row.get("username").isJsonNull() ?
+                row.get("username").getAsString() : "Unknown";
+            source.sendMessage(Component.text()
+                .append(Component.text("#" + row.get("rank").getAsInt() + " ", NamedTextColor.GOLD))
+                .append(Component.text(username, NamedTextColor.WHITE))
+                .append(Component.text(" - " + row.get("progress").getAsLong(), NamedTextColor.GRAY))
+                .build());
+        }
+        
+        // players outside the top 10 still get to see where they stand
+        if (source instanceof Player player && result.get("live").getAsBoolean()) {
+            RankTree.Entry own = statsSystem.getLiveEventRank(eventName, player.getUniqueId());
+            if (own != null && own.rank() > 10) {
+                source.sendMessage(Component.text()
+                    .append(Component.text("You: #" + own.rank(), NamedTextColor.YELLOW))
+                    .append(Component.text(" of " + result.get("participants").getAsInt(), NamedTextColor.GRAY))
+                    .append(Component.text(" - " + own.score(), NamedTextColor.GRAY))
+                    .build());
+            }
+        }
+    }
+    
+    private void showRank(CommandSource source, String statKey, String targetName) {
+        JsonObject result = targetName != null ? 
+            statsSystem.getStatRank(targetName, statKey) : 
+            statsSystem.getStatRank(((Player) source).getUniqueId(), statKey);
+        
+        if (!result.get("success").getAsBoolean()) {
+            source.sendMessage(Component.text(result.get("error").getAsString(), NamedTextColor.RED));
+            return;
+        }
+        
+        source.sendMessage(Component.text()
+            .append(Component.text(targetName != null ? targetName + ": " : "You: ", NamedTextColor.YELLOW))
+            .append(Component.text("#" + result.get("rank").getAsInt(), NamedTextColor.GOLD))
+            .append(Component.text(" of " + result.get("players").getAsInt(), NamedTextColor.GRAY))
+            .append(Component.text(" - " + result.get("value").getAsLong(), NamedTextColor.WHITE))
+            .build());
+        source.sendMessage(Component.text()
+            .append(Component.text(statKey, NamedTextColor.AQUA))
+            .append(Component.text(" (at or above " + formatPercent(result.get("percentile").getAsDouble()) + 
+                "% of players)", NamedTextColor.GRAY))
+            .build());
+    }
+    
+    private String formatPercent(double percent) {
+        return percent >= 10 ? String.valueOf(Math.round(percent)) : String.format("%.1f", percent);
     }
     
     private void startEvent(CommandSource source, String eventName) {
@@ -204,9 +276,45 @@ public class EventCommand implements SimpleCommand {
             .append(Component.text(statKey, NamedTextColor.AQUA))
             .build());
         
+        JsonObject info = statsSystem.getStatKeyInfo(statKey);
+        if (!info.get("success").getAsBoolean()) {
+            source.sendMessage(Component.text(info.get("error").getAsString(), NamedTextColor.RED));
+            return;
+        }
+        
+        source.sendMessage(Component.text()
+            .append(Component.text("Players: ", NamedTextColor.GRAY))
+            .append(Component.text(info.get("players").getAsInt(), NamedTextColor.WHITE))
+            .append(Component.text("  Total: ", NamedTextColor.GRAY))
+            .append(Component.text(info.get("sum").getAsLong(), NamedTextColor.WHITE))
+            .build());
+        source.sendMessage(Component.text()
+            .append(Component.text("Min: ", NamedTextColor.GRAY))
+            .append(Component.text(info.get("min").getAsLong(), NamedTextColor.WHITE))
+            .append(Component.text("  Avg: ", NamedTextColor.GRAY))
+            .append(Component.text(info.get("average").getAsDouble(), NamedTextColor.WHITE))
+            .append(Component.text("  Max: ", NamedTextColor.GRAY))
+            .append(Component.text(info.get("max").getAsLong(), NamedTextColor.WHITE))
+            .build());
+        
         // Show current top players for this stat
-        source.sendMessage(Component.text("Fetching current leaders...", NamedTextColor.YELLOW));
-        // TODO: Implement current stat display
+        JsonObject top = statsSystem.getTopPlayers(statKey, 5);
+        if (!top.get("success").getAsBoolean() || top.getAsJsonArray("players").isEmpty()) {
+            return;
+        }
+        
+        source.sendMessage(Component.text("Current leaders:", NamedTextColor.YELLOW));
+        int rank = 1;
+        for (JsonElement element : top.getAsJsonArray("players")) {
+            JsonObject row = element.getAsJsonObject();
+            String username = row.has("username") && !row.get("username").isJsonNull() ?
+                row.get("username").getAsString() : "Unknown";
+            source.sendMessage(Component.text()
+                .append(Component.text("#" + rank++ + " ", NamedTextColor.GOLD))
+                .append(Component.text(username, NamedTextColor.WHITE))
+                .append(Component.text(" - " + row.get("value").getAsLong(), NamedTextColor.GRAY))
+                .build());
+        }
     }
     
     private void sendUsage(CommandSource source) {
@@ -221,6 +329,8 @@ public class EventCommand implements SimpleCommand {
                 .append(Component.text(" - View all events", NamedTextColor.GRAY)));
             source.sendMessage(Component.text("/event leaderboard <event>", NamedTextColor.YELLOW)
                 .append(Component.text(" - View event leaderboard", NamedTextColor.GRAY)));
+            source.sendMessage(Component.text("/event rank <stat-key> [player]", NamedTextColor.YELLOW)
+                .append(Component.text(" - See where you stand in a stat", NamedTextColor.GRAY)));
         }
         
         if (hasPermission(source, "velocityessentials.events.create")) {
@@ -272,7 +382,7 @@ public class EventCommand implements SimpleCommand {
             List<String> suggestions = List.of();
             
             if (hasPermission(source, "velocityessentials.events.view")) {
-                suggestions = List.of("list", "leaderboard");
+                suggestions = List.of("list", "leaderboard", "rank");
             }
             if (hasPermission(source, "velocityessentials.events.create")) {
                 suggestions = List.of("create", "stats");
@@ -289,16 +399,13 @@ public class EventCommand implements SimpleCommand {
                 .toList();
         }
         
-        if (args.length == 2 && args[0].equalsIgnoreCase("stats")) {
-            // Suggest common stat keys
-            return List.of(
-                "minecraft:mined:minecraft:diamond_ore",
-                "minecraft:custom:minecraft:play_time",
-                "minecraft:killed:minecraft:zombie",
-                "minecraft:custom:minecraft:walk_one_cm"
-            ).stream()
-                .filter(stat -> stat.toLowerCase().contains(args[1].toLowerCase()))
-                .toList();
+        // Stat keys come from the catalog of every key ingested so far - events track single keys only
+        if (args.length == 2 && (args[0].equalsIgnoreCase("stats") || args[0].equalsIgnoreCase("rank"))) {
+            return statsSystem.getCatalog().complete(args[1], 50, true);
+        }
+        if (args.length == 3 && args[0].equalsIgnoreCase("create") &&
+            hasPermission(source, "velocityessentials.events.create")) {
+            return statsSystem.getCatalog().complete(args[2], 50, false);
         }
         
         return List.of();
@@ -1,6 +1,11 @@
 package com.velocityessentials.commands;
 
 import com.velocityessentials.VelocityEssentials;
+import com.velocityessentials.stats.IngestGovernor;
+import com.velocityessentials.stats.IngestMetrics;
+import com.velocityessentials.stats.PoolWaitTracker;
+import com.velocityessentials.stats.StatColumns;
+import com.velocityessentials.stats.StatsBackup;
 import com.velocityessentials.utils.MessageUtil;
 import com.velocitypowered.api.command.CommandSource;
 import com.velocitypowered.api.command.SimpleCommand;
@@ -8,6 +13,7 @@ import com.velocitypowered.api.proxy.Player;
 import net.kyori.adventure.text.Component;
 import net.kyori.adventure.text.format.NamedTextColor;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
@@ -66,6 +72,7 @@ public class MainCommand implements SimpleCommand {
             case "info" -> handleInfo(source, args);
             case "test" -> handleTest(source, args);
             case "debug" -> handleDebug(source);
+            case "stats" -> handleStats(source, args);
             default -> showHelp(source);
         }
     }
@@ -157,6 +164,167 @@ public class MainCommand implements SimpleCommand {
             .append(Component.text(plugin.getServer().getPlayerCount(), NamedTextColor.AQUA)));
     }
     
+    private void handleStats(CommandSource source, String[] args) {
+        if (!source.hasPermission("velocityessentials.admin.stats")) {
+            source.sendMessage(MessageUtil.parse(plugin.getConfig().getMessage("no-permission")));
+            return;
+        }
+        
+        if (args.length < 2 || !List.of("status", "rebuild", "backup", "restore").contains(args[1].toLowerCase())) {
+            source.sendMessage(Component.text("Usage: /ve stats <status|rebuild <server>|backup|restore [snapshot]>", NamedTextColor.RED));
+            return;
+        }
+        
+        if (plugin.getStatsSystem() == null) {
+            source.sendMessage(Component.text("The stats system is disabled", NamedTextColor.RED));
+            return;
+        }
+        
+        if (args[1].equalsIgnoreCase("rebuild")) {
+            handleStatsRebuild(source, args);
+            return;
+        }
+        if (args[1].equalsIgnoreCase("backup")) {
+            handleStatsBackup(source);
+            return;
+        }
+        if (args[1].equalsIgnoreCase("restore")) {
+            handleStatsRestore(source, args);
+            return;
+        }
+        
+        List<IngestMetrics.CycleMetrics> scans = plugin.getStatsSystem().getRecentCycles("scan", 1);
+        List<IngestMetrics.CycleMetrics> watches = plugin.getStatsSystem().getRecentCycles("watch", 50);
+        
+        source.sendMessage(Component.text("=== Stats Ingest Status ===", NamedTextColor.GOLD));
+        
+        if (scans.isEmpty()) {
+            source.sendMessage(Component.text("No full scan has finished yet", NamedTextColor.GRAY));
+        } else {
+            IngestMetrics.CycleMetrics scan = scans.get(0);
+            IngestMetrics.ServerMetrics totals = scan.totals();
+            
+            source.sendMessage(Component.text("Last Scan: ", NamedTextColor.GRAY)
+                .append(Component.text(formatTimeAgo(System.currentTimeMillis() - scan.startTime()) + " ago, took " + 
+                    scan.durationMillis() + "ms in " + scan.commits() + " commits", NamedTextColor.WHITE)));
+            source.sendMessage(Component.text("Files: ", NamedTextColor.GRAY)
+                .append(Component.text(totals.listed() + " listed, " + totals.read() + " read (" + 
+                    formatBytes(totals.bytesRead()) + "), " + totals.ingested() + " ingested, " + 
+                    totals.failed() + " failed", NamedTextColor.WHITE)));
+            source.sendMessage(Component.text("Time: ", NamedTextColor.GRAY)
+                .append(Component.text("list " + totals.listMillis() + "ms, read " + totals.readMillis() + 
+                    "ms, parse " + totals.parseMillis() + "ms, db " + totals.dbMillis() + "ms", NamedTextColor.WHITE)));
+            source.sendMessage(Component.text("Per-file Latency: ", NamedTextColor.GRAY)
+                .append(Component.text("p50 " + totals.p50Millis() + "ms, p99 " + totals.p99Millis() + "ms", NamedTextColor.YELLOW)));
+            source.sendMessage(Component.text("Rows: ", NamedTextColor.GRAY)
+                .append(Component.text(totals.rowsChanged() + " changed, " + totals.rowsUnchanged() + 
+                    " unchanged, " + totals.rowsDeleted() + " deleted", NamedTextColor.WHITE)));
+            source.sendMessage(Component.text("Mojang Lookups: ", NamedTextColor.GRAY)
+                .append(Component.text(scan.mojangLookups(), NamedTextColor.AQUA)));
+            
+            scan.servers().forEach((name, metrics) -> 
+                source.sendMessage(Component.text("  " + name + ": ", NamedTextColor.GREEN)
+                    .append(Component.text(metrics.listed() + " listed, " + metrics.read() + " read in " + 
+                        metrics.readMillis() + "ms, p99 " + metrics.p99Millis() + "ms" + formatThrottle(metrics), NamedTextColor.GRAY))));
+        }
+        
+        if (!watches.isEmpty()) {
+            int files = watches.stream().mapToInt(cycle -> cycle.totals().read()).sum();
+            source.sendMessage(Component.text("Watcher: ", NamedTextColor.GRAY)
+                .append(Component.text(watches.size() + " recent batches, " + files + " files read", NamedTextColor.WHITE)));
+        }
+        
+        PoolWaitTracker writer = plugin.getStatsSystem().getWriterWaits();
+        PoolWaitTracker readers = plugin.getStatsSystem().getReaderWaits();
+        source.sendMessage(Component.text("Connection Waits: ", NamedTextColor.GRAY)
+            .append(Component.text("writer p99 " + writer.percentile(99) / 1_000_000 + "ms, readers p99 " + 
+                readers.percentile(99) / 1_000_000 + "ms (" + readers.getTimeouts() + " timeouts)", NamedTextColor.WHITE)));
+        
+        StatColumns columns = plugin.getStatsSystem().getColumns();
+        if (columns.isEnabled()) {
+            source.sendMessage(Component.text("Stat Columns: ", NamedTextColor.GRAY)
+                .append(Component.text(columns.getResidentColumns() + " in memory, " + 
+                    formatBytes(columns.getResidentBytes()), NamedTextColor.WHITE)));
+        }
+        
+        StatsBackup.Snapshot last = plugin.getStatsSystem().getBackup().getLast();
+        if (last != null) {
+            source.sendMessage(Component.text("Last Backup: ", NamedTextColor.GRAY)
+                .append(Component.text(last.name() + ", " + formatTimeAgo(System.currentTimeMillis() - last.finishedAt()) + 
+                    " ago (" + formatBytes(last.archiveBytes()) + ")", NamedTextColor.WHITE)));
+        }
+    }
+    
+    private void handleStatsBackup(CommandSource source) {
+        if (plugin.getStatsSystem().getBackup().isRunning()) {
+            source.sendMessage(Component.text("A stats backup is already running", NamedTextColor.RED));
+            return;
+        }
+        
+        source.sendMessage(Component.text("Backing up the stats database...", NamedTextColor.YELLOW));
+        plugin.getStatsSystem().backupNow().thenAccept(snapshot -> {
+            if (snapshot == null) {
+                source.sendMessage(Component.text("Stats backup failed, check the console", NamedTextColor.RED));
+                return;
+            }
+            source.sendMessage(Component.text("Saved " + snapshot.name() + " (" + formatBytes(snapshot.databaseBytes()) + 
+                " compressed to " + formatBytes(snapshot.archiveBytes()) + ") in " + snapshot.totalMillis() + "ms", NamedTextColor.GREEN));
+        });
+    }
+    
+    private void handleStatsRestore(CommandSource source, String[] args) {
+        List<String> snapshots;
+        try {
+            snapshots = plugin.getStatsSystem().getBackup().list();
+        } catch (IOException e) {
+            source.sendMessage(Component.text("Failed to list stats backups: " + e.getMessage(), NamedTextColor.RED));
+            return;
+        }
+        
+        if (args.length < 3) {
+            source.sendMessage(Component.text("Usage: /ve stats restore <snapshot>", NamedTextColor.RED));
+            if (snapshots.isEmpty()) {
+                source.sendMessage(Component.text("No stats backups yet", NamedTextColor.GRAY));
+            }
+            snapshots.forEach(name -> source.sendMessage(Component.text("  " + name, NamedTextColor.GRAY)));
+            return;
+        }
+        
+        String name = args[2];
+        if (!snapshots.contains(name)) {
+            source.sendMessage(Component.text("No stats backup named " + name, NamedTextColor.RED));
+            return;
+        }
+        
+        source.sendMessage(Component.text("Checking " + name + "...", NamedTextColor.YELLOW));
+        plugin.getStatsSystem().stageRestore(name).thenAccept(success -> {
+            if (success) {
+                source.sendMessage(Component.text(name + " will replace the stats database when the proxy restarts", NamedTextColor.GREEN));
+            } else {
+                source.sendMessage(Component.text("Failed to restore " + name + ", check the console", NamedTextColor.RED));
+            }
+        });
+    }
+    
+    private void handleStatsRebuild(CommandSource source, String[] args) {
+        if (args.length < 3) {
+            source.sendMessage(Component.text("Usage: /ve stats rebuild <server>", NamedTextColor.RED));
+            return;
+        }
+        
+        String server = args[2];
+        source.sendMessage(Component.text("Dropping the stats of " + server + " and ingesting them again...", NamedTextColor.YELLOW));
+        
+        plugin.getStatsSystem().rebuildServer(server).thenAccept(success -> {
+            if (success) {
+                source.sendMessage(Component.text("Rebuilt the stats of " + server, NamedTextColor.GREEN));
+            } else {
+                source.sendMessage(Component.text("Failed to rebuild the stats of " + server + 
+                    " - is it a configured stats server?", NamedTextColor.RED));
+            }
+        });
+    }
+    
     private void showHelp(CommandSource source) {
         source.sendMessage(Component.text("=== VelocityEssentials Commands ===", NamedTextColor.GOLD));
         
@@ -201,6 +369,16 @@ public class MainCommand implements SimpleCommand {
             source.sendMessage(Component.text("/ve debug", NamedTextColor.YELLOW)
                 .append(Component.text(" - show debug information", NamedTextColor.GRAY)));
         }
+        if (source.hasPermission("velocityessentials.admin.stats")) {
+            source.sendMessage(Component.text("/ve stats status", NamedTextColor.YELLOW)
+                .append(Component.text(" - show recent stats ingest metrics", NamedTextColor.GRAY)));
+            source.sendMessage(Component.text("/ve stats rebuild <server>", NamedTextColor.YELLOW)
+                .append(Component.text(" - drop a server's stats and ingest them again", NamedTextColor.GRAY)));
+            source.sendMessage(Component.text("/ve stats backup", NamedTextColor.YELLOW)
+                .append(Component.text(" - snapshot the stats database now", NamedTextColor.GRAY)));
+            source.sendMessage(Component.text("/ve stats restore <snapshot>", NamedTextColor.YELLOW)
+                .append(Component.text(" - restore a snapshot on the next restart", NamedTextColor.GRAY)));
+        }
     }
     
     @Override
@@ -222,6 +400,9 @@ public class MainCommand implements SimpleCommand {
             if (invocation.source().hasPermission("velocityessentials.admin.debug")) {
                 suggestions.add("debug");
             }
+            if (invocation.source().hasPermission("velocityessentials.admin.stats")) {
+                suggestions.add("stats");
+            }
             
             return suggestions.stream()
                 .filter(cmd -> args.length == 0 || cmd.startsWith(args[0].toLowerCase()))
@@ -259,6 +440,10 @@ public class MainCommand implements SimpleCommand {
                     .map(Player::getUsername)
                     .filter(name -> name.toLowerCase().startsWith(args[1].toLowerCase()))
                     .toList();
+            } else if (args[0].equalsIgnoreCase("stats")) {
+                return List.of("status", "rebuild", "backup", "restore").stream()
+                    .filter(sub -> sub.startsWith(args[1].toLowerCase()))
+                    .toList();
             } else if (args[0].equalsIgnoreCase("test")) {
                 // suggest servers
                 return plugin.getServer().getAllServers().stream()
@@ -267,7 +452,25 @@ public class MainCommand implements SimpleCommand {
                     .toList();
             }
         }
+
+        if (args.length == 3 && args[0].equalsIgnoreCase("stats") && args[1].equalsIgnoreCase("rebuild")
+                && plugin.getStatsSystem() != null) {
+            return plugin.getStatsSystem().getServerNames().stream()
+                .filter(name -> name.toLowerCase().startsWith(args[2].toLowerCase()))
+                .toList();
+        }
         
+        if (args.length == 3 && args[0].equalsIgnoreCase("stats") && args[1].equalsIgnoreCase("restore")
+                && plugin.getStatsSystem() != null) {
+            try {
+                return plugin.getStatsSystem().getBackup().list().stream()
+                    .filter(name -> name.startsWith(args[2]))
+                    .toList();
+            } catch (IOException e) {
+                return List.of();
+            }
+        }
+
         return List.of();
     }
     
@@ -282,6 +485,23 @@ public class MainCommand implements SimpleCommand {
         return invocation.source().hasPermission("velocityessentials.admin");
     }
     
+    // read budget waits of one server, empty when it was never held back
+    private String formatThrottle(IngestMetrics.ServerMetrics metrics) {
+        if (metrics.throttleMillis() == 0) {
+            return "";
+        }
+        
+        IngestGovernor.Limits limits = metrics.limits();
+        return ", throttled " + metrics.throttleMillis() + "ms" + 
+            (limits != null && limits.filesPerSecond() > 0 ? " at " + Math.round(limits.filesPerSecond()) + " files/s" : "");
+    }
+    
+    private String formatBytes(long bytes) {
+        if (bytes < 1024) return bytes + " B";
+        if (bytes < 1024 * 1024) return String.format("%.1f KB", bytes / 1024.0);
+        return String.format("%.1f MB", bytes / (1024.0 * 1024.0));
+    }
+    
     private String formatTimeAgo(long millis) {
         long seconds = millis / 1000;
         if (seconds < 60) return seconds + " seconds";
@@ -61,6 +61,43 @@ public class Config {
     private boolean statsEnabled;
     private int statsUpdateInterval;
     private Map<String, String> statsServerPaths;
+    private int statsParserThreads;
+    private int statsIngestQueueSize;
+    private int statsBatchFiles;
+    private long statsBatchBytes;
+    private long statsBatchMaxLatencyMs;
+    private int statsIoMaxFilesPerSecond;
+    private double statsIoMaxMbPerSecond;
+    private Map<String, Integer> statsIoServerFilesPerSecond;
+    private Map<String, Double> statsIoServerMbPerSecond;
+    private int statsIoLatencyTargetMs;
+    private boolean statsIoSpreadScans;
+    private String statsMojangSessionServerUrl;
+    private int statsMojangRequestsPerMinute;
+    private int statsUsernameCacheSize;
+    private boolean statsHistoryEnabled;
+    private int statsHistoryHourlyRetentionDays;
+    private int statsHistoryDailyRetentionDays;
+    private int statsReaderConnections;
+    private boolean statsShardingEnabled;
+    private int statsTopCacheSize;
+    private int statsTopCacheKeys;
+    private int statsTopCachePromoteAfter;
+    private int statsColumnsMax;
+    private boolean statsColumnsPreload;
+    private boolean statsBackupEnabled;
+    private int statsBackupIntervalHours;
+    private int statsBackupKeep;
+    private int statsBackupPagesPerStep;
+    private int statsBackupStepPauseMs;
+    private boolean statsWatchEnabled;
+    private int statsWatchDebounceMs;
+    private int statsReconcileInterval;
+    private boolean statsPushEnabled;
+    private int statsPushReconcileInterval;
+    private boolean statsAdvancementsEnabled;
+    private boolean statsAdvancementsIncludeRecipes;
+    private Map<String, String> statsAdvancementPaths;
     private boolean statsApiEnabled;
     private int statsApiPort;
     private String statsApiKey;
@@ -203,6 +240,87 @@ public class Config {
                 });
             }
             
+            // ingest pipeline settings
+            CommentedConfigurationNode ingestNode = statsNode.node("ingest");
+            statsParserThreads = ingestNode.node("parser-threads").getInt(0);
+            statsIngestQueueSize = ingestNode.node("queue-size").getInt(256);
+            statsBatchFiles = ingestNode.node("batch-files").getInt(500);
+            statsBatchBytes = ingestNode.node("batch-bytes").getLong(16L * 1024 * 1024);
+            statsBatchMaxLatencyMs = ingestNode.node("batch-max-latency-ms").getLong(1000);
+            
+            // stat file read budgets, so ingest doesn't take the disk from the game servers
+            CommentedConfigurationNode ioNode = statsNode.node("io");
+            statsIoMaxFilesPerSecond = ioNode.node("max-files-per-second").getInt(0);
+            statsIoMaxMbPerSecond = ioNode.node("max-mb-per-second").getDouble(0);
+            statsIoLatencyTargetMs = ioNode.node("latency-target-ms").getInt(0);
+            statsIoSpreadScans = ioNode.node("spread-scans").getBoolean(false);
+            statsIoServerFilesPerSecond = new HashMap<>();
+            statsIoServerMbPerSecond = new HashMap<>();
+            ioNode.node("servers").childrenMap().forEach((key, value) -> {
+                if (!value.node("max-files-per-second").virtual()) {
+                    statsIoServerFilesPerSecond.put(key.toString(), value.node("max-files-per-second").getInt(0));
+                }
+                if (!value.node("max-mb-per-second").virtual()) {
+                    statsIoServerMbPerSecond.put(key.toString(), value.node("max-mb-per-second").getDouble(0));
+                }
+            });
+            
+            // username lookup settings
+            CommentedConfigurationNode mojangNode = statsNode.node("mojang");
+            statsMojangSessionServerUrl = mojangNode.node("session-server-url")
+                .getString("https://sessionserver.mojang.com/session/minecraft/profile/");
+            statsMojangRequestsPerMinute = mojangNode.node("requests-per-minute").getInt(60);
+            statsUsernameCacheSize = mojangNode.node("username-cache-size").getInt(10000);
+            
+            // stat history settings
+            CommentedConfigurationNode historyNode = statsNode.node("history");
+            statsHistoryEnabled = historyNode.node("enabled").getBoolean(true);
+            statsHistoryHourlyRetentionDays = historyNode.node("hourly-retention-days").getInt(7);
+            statsHistoryDailyRetentionDays = historyNode.node("daily-retention-days").getInt(0);
+            
+            // read-only connections for the api, alongside the single writer
+            statsReaderConnections = statsNode.node("database", "reader-connections").getInt(4);
+            statsShardingEnabled = statsNode.node("database", "sharded").getBoolean(false);
+            
+            // in-memory leaderboards for the most requested stat keys
+            CommentedConfigurationNode topCacheNode = statsNode.node("top-cache");
+            statsTopCacheSize = topCacheNode.node("size").getInt(100);
+            statsTopCacheKeys = topCacheNode.node("max-keys").getInt(32);
+            statsTopCachePromoteAfter = topCacheNode.node("promote-after").getInt(3);
+            
+            // whole stat columns in memory, the first place leaderboards are answered from
+            CommentedConfigurationNode columnsNode = statsNode.node("columns");
+            statsColumnsMax = columnsNode.node("max-columns").getInt(32);
+            statsColumnsPreload = columnsNode.node("preload").getBoolean(true);
+            
+            // online snapshots of the stats database
+            CommentedConfigurationNode backupNode = statsNode.node("backup");
+            statsBackupEnabled = backupNode.node("enabled").getBoolean(false);
+            statsBackupIntervalHours = backupNode.node("interval-hours").getInt(24);
+            statsBackupKeep = backupNode.node("keep").getInt(7);
+            statsBackupPagesPerStep = backupNode.node("pages-per-step").getInt(256);
+            statsBackupStepPauseMs = backupNode.node("step-pause-ms").getInt(5);
+            
+            // watch mode settings
+            CommentedConfigurationNode watchNode = statsNode.node("watch");
+            statsWatchEnabled = watchNode.node("enabled").getBoolean(false);
+            statsWatchDebounceMs = watchNode.node("debounce-ms").getInt(2000);
+            statsReconcileInterval = watchNode.node("reconcile-interval").getInt(120);
+            
+            // values pushed by the backend plugin
+            CommentedConfigurationNode pushNode = statsNode.node("push");
+            statsPushEnabled = pushNode.node("enabled").getBoolean(true);
+            statsPushReconcileInterval = pushNode.node("reconcile-interval").getInt(0);
+            
+            // advancement files, read with the stat files
+            CommentedConfigurationNode advancementsNode = statsNode.node("advancements");
+            statsAdvancementsEnabled = advancementsNode.node("enabled").getBoolean(false);
+            statsAdvancementsIncludeRecipes = advancementsNode.node("include-recipes").getBoolean(false);
+            statsAdvancementPaths = new HashMap<>();
+            advancementsNode.node("servers").childrenMap().forEach((key, value) -> {
+                statsAdvancementPaths.put(key.toString(), value.getString(""));
+            });
+            
             // api settings
             CommentedConfigurationNode apiNode = statsNode.node("api");
             statsApiEnabled = apiNode.node("enabled").getBoolean(false);
@@ -400,6 +518,41 @@ public class Config {
     public boolean isStatsEnabled() { return statsEnabled; }
     public int getStatsUpdateInterval() { return statsUpdateInterval; }
     public Map<String, String> getStatsServerPaths() { return statsServerPaths; }
+    public int getStatsParserThreads() { return statsParserThreads; }
+    public int getStatsIngestQueueSize() { return statsIngestQueueSize; }
+    public int getStatsBatchFiles() { return statsBatchFiles; }
+    public long getStatsBatchBytes() { return statsBatchBytes; }
+    public long getStatsBatchMaxLatencyMs() { return statsBatchMaxLatencyMs; }
+    public int getStatsIoMaxFilesPerSecond(String server) { return statsIoServerFilesPerSecond.getOrDefault(server, statsIoMaxFilesPerSecond); }
+    public double getStatsIoMaxMbPerSecond(String server) { return statsIoServerMbPerSecond.getOrDefault(server, statsIoMaxMbPerSecond); }
+    public int getStatsIoLatencyTargetMs() { return statsIoLatencyTargetMs; }
+    public boolean isStatsIoSpreadScans() { return statsIoSpreadScans; }
+    public String getStatsMojangSessionServerUrl() { return statsMojangSessionServerUrl; }
+    public int getStatsMojangRequestsPerMinute() { return statsMojangRequestsPerMinute; }
+    public int getStatsUsernameCacheSize() { return statsUsernameCacheSize; }
+    public boolean isStatsHistoryEnabled() { return statsHistoryEnabled; }
+    public int getStatsHistoryHourlyRetentionDays() { return statsHistoryHourlyRetentionDays; }
+    public int getStatsHistoryDailyRetentionDays() { return statsHistoryDailyRetentionDays; }
+    public int getStatsReaderConnections() { return statsReaderConnections; }
+    public boolean isStatsShardingEnabled() { return statsShardingEnabled; }
+    public int getStatsTopCacheSize() { return statsTopCacheSize; }
+    public int getStatsTopCacheKeys() { return statsTopCacheKeys; }
+    public int getStatsTopCachePromoteAfter() { return statsTopCachePromoteAfter; }
+    public int getStatsColumnsMax() { return statsColumnsMax; }
+    public boolean isStatsColumnsPreload() { return statsColumnsPreload; }
+    public boolean isStatsBackupEnabled() { return statsBackupEnabled; }
+    public int getStatsBackupIntervalHours() { return statsBackupIntervalHours; }
+    public int getStatsBackupKeep() { return statsBackupKeep; }
+    public int getStatsBackupPagesPerStep() { return statsBackupPagesPerStep; }
+    public int getStatsBackupStepPauseMs() { return statsBackupStepPauseMs; }
+    public boolean isStatsWatchEnabled() { return statsWatchEnabled; }
+    public int getStatsWatchDebounceMs() { return statsWatchDebounceMs; }
+    public int getStatsReconcileInterval() { return statsReconcileInterval; }
+    public boolean isStatsPushEnabled() { return statsPushEnabled; }
+    public int getStatsPushReconcileInterval() { return statsPushReconcileInterval; }
+    public boolean isStatsAdvancementsEnabled() { return statsAdvancementsEnabled; }
+    public boolean isStatsAdvancementsIncludeRecipes() { return statsAdvancementsIncludeRecipes; }
+    public Map<String, String> getStatsAdvancementPaths() { return statsAdvancementPaths; }
     public boolean isStatsApiEnabled() { return statsApiEnabled; }
     public int getStatsApiPort() { return statsApiPort; }
     public String getStatsApiKey() { return statsApiKey; }
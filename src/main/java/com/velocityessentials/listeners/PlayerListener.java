@@ -24,6 +24,11 @@ public class PlayerListener {
     public void onPlayerChooseInitialServer(PlayerChooseInitialServerEvent event) {
         Player player = event.getPlayer();
         
+        // keep the stats username cache current - saves a session server lookup later
+        if (plugin.getStatsSystem() != null) {
+            plugin.getStatsSystem().rememberUsername(player.getUniqueId(), player.getUsername());
+        }
+        
         // check for server switch (player reconnecting quickly) - not ideal, but presumably a server swap will always be faster than someone timing out and logging back in
         PlayerTracker.DisconnectInfo switchInfo = plugin.getPlayerTracker().checkForSwitch(player);
         
@@ -4,8 +4,10 @@ import com.google.common.io.ByteArrayDataInput;
 import com.google.common.io.ByteStreams;
 import com.velocityessentials.VelocityEssentials;
 import com.velocityessentials.relay.ChatBroadcaster;
+import com.velocityessentials.stats.StatsPushReceiver;
 import com.velocitypowered.api.event.Subscribe;
 import com.velocitypowered.api.event.connection.PluginMessageEvent;
+import com.velocitypowered.api.proxy.ServerConnection;
 
 public class PluginMessageListener {
     private final VelocityEssentials plugin;
@@ -27,6 +29,7 @@ public class PluginMessageListener {
             case "chat" -> chatBroadcaster.handleChatMessage(in); 
             case "afk_status" -> handleAFKStatus(in);
             case "afk_status_message" -> handleAFKStatusWithMessage(in);
+            case StatsPushReceiver.SUBCHANNEL -> handleStatsPush(event, in);
             default -> {
                 if (plugin.getConfig().isDebug()) {
                     plugin.getLogger().info("Unknown subchannel: " + subchannel);
@@ -53,6 +56,18 @@ public class PluginMessageListener {
         }
     }
 
+    private void handleStatsPush(PluginMessageEvent event, ByteArrayDataInput in) {
+        // A client could send the same bytes - only a backend server's connection may write stats
+        if (!(event.getSource() instanceof ServerConnection connection)) {
+            return;
+        }
+        
+        StatsPushReceiver receiver = plugin.getStatsSystem() != null ? plugin.getStatsSystem().getPushReceiver() : null;
+        if (receiver != null) {
+            receiver.receive(connection.getServerInfo().getName(), in);
+        }
+    }
+
     private void handleAFKStatusWithMessage(ByteArrayDataInput in) {
         String uuid = in.readUTF();
         String playerName = in.readUTF();
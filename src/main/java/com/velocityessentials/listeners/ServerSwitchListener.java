@@ -23,6 +23,10 @@ public class ServerSwitchListener {
         
         if (currentServer == null) return;
         
+        if (plugin.getStatsSystem() != null) {
+            plugin.getStatsSystem().rememberUsername(player.getUniqueId(), player.getUsername());
+        }
+        
         RegisteredServer previousServer = event.getPreviousServer();
         String currentServerName = currentServer.getServerInfo().getName();
         
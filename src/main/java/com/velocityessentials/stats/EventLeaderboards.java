@@ -0,0 +1,190 @@
+package com.velocityessentials.stats;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * live rankings for every active event
+ * rebuilt from event_baselines and player_stats when an event activates (or the proxy starts),
+ * then kept current by feeding it the writer's committed stat changes
+ */
+public class EventLeaderboards {
+    private final StatsDictionary dictionary;
+    private final Map<Integer, LiveEvent> events = new ConcurrentHashMap<>();
+    // stat id -> events tracking it, swapped whole whenever an event starts or stops
+    private volatile Map<Integer, List<LiveEvent>> byStat = Map.of();
+
+    // a committed player_stats change - oldValue is 0 when the row did not exist, newValue 0 when it was dropped.
+    // baseline is where an event that has none for the row starts counting
+    public record Change(int playerId, int serverId, int statId, long oldValue, long newValue, long baseline) {}
+
+    public static final class LiveEvent {
+        private final int id;
+        private final String name;
+        private final int statId;
+        // (player, server) -> baseline and current value, progress is the sum of the differences per player
+        private final Map<Long, Long> baselines = new HashMap<>();
+        private final Map<Long, Long> current = new HashMap<>();
+        private final RankTree ranking = new RankTree();
+
+        LiveEvent(int id, String name, int statId) {
+            this.id = id;
+            this.name = name;
+            this.statId = statId;
+        }
+
+        public int getId() { return id; }
+        public String getName() { return name; }
+
+        public synchronized List<RankTree.Entry> top(int limit) {
+            return ranking.top(limit);
+        }
+
+        // null if the player has no baseline in this event
+        public synchronized RankTree.Entry entry(int playerId) {
+            Long score = ranking.score(playerId);
+            return score == null ? null : new RankTree.Entry(playerId, score, ranking.rank(playerId));
+        }
+
+        public synchronized int participants() {
+            return ranking.size();
+        }
+
+        synchronized boolean hasBaseline(int playerId, int serverId) {
+            return baselines.containsKey(key(playerId, serverId));
+        }
+
+        synchronized void apply(Change change) {
+            long key = key(change.playerId(), change.serverId());
+            Long baseline = baselines.get(key);
+            if (baseline == null) {
+                // first seen mid-event - the writer stored the same baseline in event_baselines
+                baselines.put(key, change.baseline());
+                baseline = change.baseline();
+            }
+
+            long previous = current.getOrDefault(key, baseline);
+            current.put(key, change.newValue());
+
+            Long progress = ranking.score(change.playerId());
+            ranking.put(change.playerId(), (progress != null ? progress : 0) + change.newValue() - previous);
+        }
+    }
+
+    public EventLeaderboards(StatsDictionary dictionary) {
+        this.dictionary = dictionary;
+    }
+
+    /**
+     * (re)builds the ranking of an active event from the database
+     */
+    public synchronized void activate(Connection conn, int eventId) throws SQLException {
+        String name;
+        String statKey;
+        try (PreparedStatement ps = conn.prepareStatement("SELECT name, stat_key FROM events WHERE id = ?")) {
+            ps.setInt(1, eventId);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (!rs.next()) {
+                    return;
+                }
+                name = rs.getString("name");
+                statKey = rs.getString("stat_key");
+            }
+        }
+
+        // Nobody may have this stat yet - give it an id now so the writer recognises it later.
+        // the dictionary commits on its own, so inside a transaction the caller must have done it
+        if (dictionary.statId(statKey) == null) {
+            if (!conn.getAutoCommit()) {
+                throw new SQLException("No stat id for " + statKey);
+            }
+            dictionary.ensure(conn, List.of(statKey), List.of(), List.of());
+        }
+
+        LiveEvent event = new LiveEvent(eventId, name, dictionary.statId(statKey));
+        Map<Integer, Long> progress = new HashMap<>();
+
+        try (PreparedStatement ps = conn.prepareStatement(
+                "SELECT eb.player_id, eb.server_id, eb.baseline_value, COALESCE(ps.stat_value, 0) AS stat_value " +
+                "FROM event_baselines eb " +
+                "LEFT JOIN player_stats ps ON ps.player_id = eb.player_id AND ps.server_id = eb.server_id AND ps.stat_id = ? " +
+                "WHERE eb.event_id = ?")) {
+            ps.setInt(1, event.statId);
+            ps.setInt(2, eventId);
+
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    int playerId = rs.getInt("player_id");
+                    long key = key(playerId, rs.getInt("server_id"));
+                    long baseline = rs.getLong("baseline_value");
+                    long value = rs.getLong("stat_value");
+
+                    event.baselines.put(key, baseline);
+                    event.current.put(key, value);
+                    progress.merge(playerId, value - baseline, Long::sum);
+                }
+            }
+        }
+
+        progress.forEach(event.ranking::put);
+
+        events.put(eventId, event);
+        rebuildIndex();
+    }
+
+    public synchronized void remove(int eventId) {
+        if (events.remove(eventId) != null) {
+            rebuildIndex();
+        }
+    }
+
+    public LiveEvent get(String eventName) {
+        for (LiveEvent event : events.values()) {
+            if (event.name.equalsIgnoreCase(eventName)) {
+                return event;
+            }
+        }
+        return null;
+    }
+
+    public Collection<LiveEvent> getActive() {
+        return events.values();
+    }
+
+    // writer side - cheap check for every changed row
+    List<LiveEvent> eventsFor(int statId) {
+        return byStat.get(statId);
+    }
+
+    /**
+     * applies changes the writer has committed - takes the same lock as activate so a rebuild
+     * never interleaves with an update
+     */
+    synchronized void apply(List<Change> changes) {
+        for (Change change : changes) {
+            List<LiveEvent> tracking = byStat.get(change.statId());
+            if (tracking == null) {
+                continue;
+            }
+            for (LiveEvent event : tracking) {
+                event.apply(change);
+            }
+        }
+    }
+
+    private void rebuildIndex() {
+        Map<Integer, List<LiveEvent>> index = new HashMap<>();
+        for (LiveEvent event : events.values()) {
+            index.computeIfAbsent(event.statId, k -> new ArrayList<>()).add(event);
+        }
+        byStat = index;
+    }
+
+    private static long key(int playerId, int serverId) {
+        return ((long) playerId << 32) | (serverId & 0xffffffffL);
+    }
+}
@@ -0,0 +1,247 @@
+package com.velocityessentials.stats;
+
+import com.velocityessentials.VelocityEssentials;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * in-memory copy of every pending and active event
+ * keeps one timer armed for the next start or end, so nothing touches the database
+ * until a transition is actually due
+ */
+public class EventRegistry {
+    // how long a failed transition waits before it is tried again
+    private static final long RETRY_SECONDS = 30;
+
+    private final VelocityEssentials plugin;
+    private final DataSource dataSource;
+    private final ScheduledExecutorService scheduler;
+    private final Transition onStart;
+    private final Transition onEnd;
+    // held around every transition, so a start snapshots rows the writers have finished with
+    private final Lock transitionLock;
+
+    private final Map<Integer, Event> events = new HashMap<>();
+    private ScheduledFuture<?> timer;
+    private long timerAt = Long.MAX_VALUE;
+    // set while transitions run so a newly added event can't start a second, overlapping tick
+    private boolean firing;
+    private boolean closed;
+
+    public enum Status { PENDING, ACTIVE }
+
+    public static final class Event {
+        private final int id;
+        private final String name;
+        private final String statKey;
+        private final long startTime;
+        private final long endTime;
+        private volatile Status status;
+
+        Event(int id, String name, String statKey, long startTime, long endTime, Status status) {
+            this.id = id;
+            this.name = name;
+            this.statKey = statKey;
+            this.startTime = startTime;
+            this.endTime = endTime;
+            this.status = status;
+        }
+
+        public int getId() { return id; }
+        public String getName() { return name; }
+        public String getStatKey() { return statKey; }
+        public long getStartTime() { return startTime; }
+        public long getEndTime() { return endTime; }
+        public Status getStatus() { return status; }
+
+        // epoch second of the next transition
+        long nextTransition() {
+            return status == Status.PENDING ? startTime : endTime;
+        }
+    }
+
+    @FunctionalInterface
+    public interface Transition {
+        void apply(Connection conn, Event event) throws SQLException;
+    }
+
+    public EventRegistry(VelocityEssentials plugin, DataSource dataSource, Lock transitionLock,
+                         Transition onStart, Transition onEnd) {
+        this.plugin = plugin;
+        this.dataSource = dataSource;
+        // own thread so a long stats scan never holds up a start or end
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "VE-Stats-Events");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.onStart = onStart;
+        this.onEnd = onEnd;
+        this.transitionLock = transitionLock;
+    }
+
+    /**
+     * loads every event that hasn't finished - anything already due fires on the first tick
+     */
+    public synchronized void load(Connection conn) throws SQLException {
+        events.clear();
+        try (PreparedStatement ps = conn.prepareStatement(
+                "SELECT id, name, stat_key, start_time, end_time, status FROM events " +
+                "WHERE status IN ('pending', 'active')")) {
+
+            ResultSet rs = ps.executeQuery();
+            while (rs.next()) {
+                Status status = "active".equals(rs.getString("status")) ? Status.ACTIVE : Status.PENDING;
+                Event event = new Event(rs.getInt("id"), rs.getString("name"), rs.getString("stat_key"),
+                    rs.getLong("start_time"), rs.getLong("end_time"), status);
+                events.put(event.id, event);
+            }
+        }
+
+        plugin.getLogger().info("Loaded " + events.size() + " pending/active events");
+        reschedule(0);
+    }
+
+    public synchronized void add(int id, String name, String statKey, long startTime, long endTime) {
+        events.put(id, new Event(id, name, statKey, startTime, endTime, Status.PENDING));
+        reschedule(0);
+    }
+
+    public synchronized Collection<Event> getEvents() {
+        return List.copyOf(events.values());
+    }
+
+    public void shutdown() {
+        synchronized (this) {
+            closed = true;
+            if (timer != null) {
+                timer.cancel(false);
+            }
+        }
+
+        // let a transition that is already running finish before the pool goes away
+        scheduler.shutdown();
+        try {
+            scheduler.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // arms the timer for the earliest transition (no sooner than notBefore), replacing it only if
+    // that moved earlier or the timer already fired
+    private void reschedule(long notBefore) {
+        if (closed || firing) {
+            return;
+        }
+
+        long next = Long.MAX_VALUE;
+        for (Event event : events.values()) {
+            next = Math.min(next, Math.max(notBefore, event.nextTransition()));
+        }
+
+        if (timer != null && !timer.isDone()) {
+            if (timerAt <= next) {
+                return;
+            }
+            timer.cancel(false);
+        }
+
+        timer = null;
+        timerAt = next;
+        if (next == Long.MAX_VALUE) {
+            return;
+        }
+
+        long delayMillis = Math.max(0, next * 1000 - System.currentTimeMillis());
+        timer = scheduler.schedule(this::fire, delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private void fire() {
+        List<Event> due = new ArrayList<>();
+        synchronized (this) {
+            timer = null;
+            firing = true;
+            long now = Instant.now().getEpochSecond();
+            for (Event event : events.values()) {
+                if (event.nextTransition() <= now) {
+                    due.add(event);
+                }
+            }
+        }
+
+        boolean failed = false;
+        try {
+            if (!due.isEmpty()) {
+                due.sort(Comparator.comparingLong(Event::nextTransition));
+                // before the connection - a paused writer may be holding the only one
+                transitionLock.lock();
+                try (Connection conn = dataSource.getConnection()) {
+                    for (Event event : due) {
+                        failed |= !transition(conn, event);
+                    }
+                } finally {
+                    transitionLock.unlock();
+                }
+            }
+        } catch (SQLException | RuntimeException e) {
+            plugin.getLogger().error("Failed to process event transitions", e);
+            failed = true;
+        } finally {
+            synchronized (this) {
+                firing = false;
+                reschedule(failed ? Instant.now().getEpochSecond() + RETRY_SECONDS : 0);
+            }
+        }
+    }
+
+    private boolean transition(Connection conn, Event event) {
+        try {
+            if (event.status == Status.PENDING) {
+                apply(conn, onStart, event);
+                event.status = Status.ACTIVE;
+                plugin.getLogger().info("Event " + event.name + " started");
+            }
+
+            // an event whose end already passed (proxy was down) finishes straight after starting
+            if (event.status == Status.ACTIVE && event.endTime <= Instant.now().getEpochSecond()) {
+                apply(conn, onEnd, event);
+                synchronized (this) {
+                    events.remove(event.id);
+                }
+                plugin.getLogger().info("Event " + event.name + " finished");
+            }
+            return true;
+
+        } catch (SQLException e) {
+            // left as it was, retried shortly
+            plugin.getLogger().error("Failed to transition event " + event.name, e);
+            return false;
+        }
+    }
+
+    // one transaction per step, so a failed step leaves nothing behind for its retry to trip over
+    private static void apply(Connection conn, Transition transition, Event event) throws SQLException {
+        conn.setAutoCommit(false);
+        try {
+            transition.apply(conn, event);
+            conn.commit();
+        } catch (SQLException | RuntimeException e) {
+            conn.rollback();
+            throw e;
+        } finally {
+            conn.setAutoCommit(true);
+        }
+    }
+}
@@ -0,0 +1,173 @@
+package com.velocityessentials.stats;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * bookkeeping for one ingest cycle
+ * tracks per-server counters and lets the caller wait until every submitted file is done
+ */
+public class IngestCycle {
+    private final long startTime = System.currentTimeMillis();
+    private final Counts totals = new Counts();
+    private final Map<String, Counts> servers = new ConcurrentHashMap<>();
+    private final AtomicInteger commits = new AtomicInteger();
+    private final Object lock = new Object();
+    private int outstanding;
+
+    public static class Counts {
+        public final AtomicInteger scanned = new AtomicInteger();
+        public final AtomicInteger skipped = new AtomicInteger();
+        public final AtomicInteger ingested = new AtomicInteger();
+        public final AtomicInteger failed = new AtomicInteger();
+        public final AtomicLong rowsChanged = new AtomicLong();
+        public final AtomicLong rowsUnchanged = new AtomicLong();
+        public final AtomicLong rowsDeleted = new AtomicLong();
+        // files whose bytes were actually read (changed mtime or size)
+        public final AtomicInteger read = new AtomicInteger();
+        public final AtomicLong bytesRead = new AtomicLong();
+        public final AtomicLong listNanos = new AtomicLong();
+        public final AtomicLong readNanos = new AtomicLong();
+        public final AtomicLong parseNanos = new AtomicLong();
+        public final AtomicLong dbNanos = new AtomicLong();
+        // time parsers spent waiting for the server's read budget
+        public final AtomicLong throttleNanos = new AtomicLong();
+        // the server's read budget as the cycle finished, null for the totals
+        public volatile IngestGovernor.Limits limits;
+        // parser pickup -> commit, for every file that was read
+        public final Latencies latencies = new Latencies();
+    }
+
+    public static class Latencies {
+        private long[] nanos = new long[64];
+        private int size;
+
+        synchronized void add(long value) {
+            if (size == nanos.length) {
+                nanos = Arrays.copyOf(nanos, size * 2);
+            }
+            nanos[size++] = value;
+        }
+
+        public synchronized int count() {
+            return size;
+        }
+
+        // nearest-rank percentile, 0 when nothing was recorded
+        public synchronized long percentile(double percentile) {
+            if (size == 0) {
+                return 0;
+            }
+            long[] sorted = Arrays.copyOf(nanos, size);
+            Arrays.sort(sorted);
+            int rank = (int) Math.ceil(percentile / 100.0 * size);
+            return sorted[Math.max(0, Math.min(size - 1, rank - 1))];
+        }
+    }
+
+    // called once per file before it is handed to the parsers
+    void register(String serverName) {
+        synchronized (lock) {
+            outstanding++;
+        }
+        totals.scanned.incrementAndGet();
+        server(serverName).scanned.incrementAndGet();
+    }
+
+    void skipped(String serverName) {
+        totals.skipped.incrementAndGet();
+        server(serverName).skipped.incrementAndGet();
+        complete();
+    }
+
+    void ingested(String serverName) {
+        totals.ingested.incrementAndGet();
+        server(serverName).ingested.incrementAndGet();
+        complete();
+    }
+
+    void failed(String serverName) {
+        totals.failed.incrementAndGet();
+        server(serverName).failed.incrementAndGet();
+        complete();
+    }
+
+    void rows(String serverName, int changed, int unchanged, int deleted) {
+        for (Counts counts : List.of(totals, server(serverName))) {
+            counts.rowsChanged.addAndGet(changed);
+            counts.rowsUnchanged.addAndGet(unchanged);
+            counts.rowsDeleted.addAndGet(deleted);
+        }
+    }
+
+    void listed(String serverName, long nanos) {
+        totals.listNanos.addAndGet(nanos);
+        server(serverName).listNanos.addAndGet(nanos);
+    }
+
+    void read(String serverName, long bytes, long readNanos, long parseNanos) {
+        for (Counts counts : List.of(totals, server(serverName))) {
+            counts.read.incrementAndGet();
+            counts.bytesRead.addAndGet(bytes);
+            counts.readNanos.addAndGet(readNanos);
+            counts.parseNanos.addAndGet(parseNanos);
+        }
+    }
+
+    void throttled(String serverName, long nanos) {
+        totals.throttleNanos.addAndGet(nanos);
+        server(serverName).throttleNanos.addAndGet(nanos);
+    }
+
+    void limits(String serverName, IngestGovernor.Limits limits) {
+        server(serverName).limits = limits;
+    }
+
+    // serverName == null for batch-wide work (id registration, the commit itself) that only counts towards the totals
+    void database(String serverName, long nanos) {
+        totals.dbNanos.addAndGet(nanos);
+        if (serverName != null) {
+            server(serverName).dbNanos.addAndGet(nanos);
+        }
+    }
+
+    void latency(String serverName, long nanos) {
+        totals.latencies.add(nanos);
+        server(serverName).latencies.add(nanos);
+    }
+
+    // a writer transaction that contained at least one of this cycle's files
+    void committed() {
+        commits.incrementAndGet();
+    }
+
+    public void await() throws InterruptedException {
+        synchronized (lock) {
+            while (outstanding > 0) {
+                lock.wait();
+            }
+        }
+    }
+
+    public long getStartTime() { return startTime; }
+    public Counts getTotals() { return totals; }
+    public Map<String, Counts> getServers() { return servers; }
+    public int getCommits() { return commits.get(); }
+
+    private Counts server(String serverName) {
+        return servers.computeIfAbsent(serverName, k -> new Counts());
+    }
+
+    private void complete() {
+        synchronized (lock) {
+            outstanding--;
+            if (outstanding <= 0) {
+                lock.notifyAll();
+            }
+        }
+    }
+}
@@ -0,0 +1,187 @@
+package com.velocityessentials.stats;
+
+import com.google.gson.JsonObject;
+import com.velocityessentials.config.Config;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * read budgets for stat files, one per stats path - a token bucket for files and one for bytes.
+ * when reads get slower than latency-target-ms (the disk is busy with chunk saves) the file rate is
+ * halved, and it grows back a tenth at a time for every window of fast reads until the limit lifts.
+ * a full scan can also be paced so its reads spread over the scan interval
+ */
+public class IngestGovernor {
+    private static final long WINDOW_NANOS = 1_000_000_000L;
+    private static final double MIN_FILES_PER_SECOND = 1;
+
+    private final Config config;
+    private final long latencyTargetNanos;
+    private final Map<String, Budget> budgets = new ConcurrentHashMap<>();
+
+    // the current limits of one server, 0 = unlimited
+    public record Limits(double filesPerSecond, double bytesPerSecond, double backoffFilesPerSecond,
+                         double spreadFilesPerSecond, double readLatencyMillis) {
+
+        JsonObject toJson() {
+            JsonObject json = new JsonObject();
+            json.addProperty("files_per_second", round(filesPerSecond));
+            json.addProperty("mb_per_second", round(bytesPerSecond / 1024 / 1024));
+            json.addProperty("backoff_files_per_second", round(backoffFilesPerSecond));
+            json.addProperty("spread_files_per_second", round(spreadFilesPerSecond));
+            json.addProperty("read_latency_ms", round(readLatencyMillis));
+            return json;
+        }
+    }
+
+    private final class Budget {
+        private final double maxFiles;
+        private final double maxBytes;
+        private double spreadFiles;
+        // set while reads are too slow, lifted once it has grown back to the rate it started from
+        private double backoffFiles;
+        private double backoffCeiling;
+        private double fileTokens;
+        private double byteTokens;
+        private long refilledAt = System.nanoTime();
+        private long windowStart;
+        private long windowReadNanos;
+        private int windowReads;
+        private double lastLatencyNanos;
+
+        Budget(String serverName) {
+            this.maxFiles = config.getStatsIoMaxFilesPerSecond(serverName);
+            this.maxBytes = config.getStatsIoMaxMbPerSecond(serverName) * 1024 * 1024;
+            this.fileTokens = filesPerSecond();
+            this.byteTokens = maxBytes;
+        }
+
+        // reserves one read of `bytes` and returns how long the caller has to wait for it
+        synchronized long reserve(long bytes) {
+            long now = System.nanoTime();
+            double files = filesPerSecond();
+            double elapsed = (now - refilledAt) / 1e9;
+            refilledAt = now;
+
+            long waitNanos = 0;
+            if (files > 0) {
+                // at most a second's worth builds up while idle
+                fileTokens = Math.min(Math.max(1, files), fileTokens + elapsed * files) - 1;
+                if (fileTokens < 0) {
+                    waitNanos = (long) (-fileTokens / files * 1e9);
+                }
+            }
+            if (maxBytes > 0) {
+                byteTokens = Math.min(maxBytes, byteTokens + elapsed * maxBytes) - bytes;
+                if (byteTokens < 0) {
+                    waitNanos = Math.max(waitNanos, (long) (-byteTokens / maxBytes * 1e9));
+                }
+            }
+            return waitNanos;
+        }
+
+        synchronized void record(long readNanos) {
+            long now = System.nanoTime();
+            if (windowReads == 0) {
+                // a window starts with its first read, so idle time between scans doesn't look like a slow rate
+                windowStart = now - readNanos;
+            }
+            windowReadNanos += readNanos;
+            windowReads++;
+
+            long windowNanos = now - windowStart;
+            if (windowNanos < WINDOW_NANOS) {
+                return;
+            }
+
+            double average = (double) windowReadNanos / windowReads;
+            lastLatencyNanos = average;
+            if (latencyTargetNanos > 0 && average > latencyTargetNanos) {
+                // multiplicative decrease from whatever rate reads are getting now
+                double current = filesPerSecond() > 0 ? filesPerSecond() : windowReads / (windowNanos / 1e9);
+                if (backoffFiles == 0) {
+                    backoffCeiling = current;
+                }
+                backoffFiles = Math.max(MIN_FILES_PER_SECOND, current / 2);
+            } else if (backoffFiles > 0) {
+                // additive increase
+                backoffFiles += backoffCeiling / 10;
+                if (backoffFiles >= backoffCeiling) {
+                    backoffFiles = 0;
+                }
+            }
+
+            windowStart = now;
+            windowReadNanos = 0;
+            windowReads = 0;
+        }
+
+        synchronized double filesPerSecond() {
+            double files = 0;
+            for (double limit : new double[] { maxFiles, spreadFiles, backoffFiles }) {
+                if (limit > 0) {
+                    files = files > 0 ? Math.min(files, limit) : limit;
+                }
+            }
+            return files;
+        }
+
+        synchronized Limits limits() {
+            return new Limits(filesPerSecond(), maxBytes, backoffFiles, spreadFiles, lastLatencyNanos / 1_000_000);
+        }
+    }
+
+    public IngestGovernor(Config config) {
+        this.config = config;
+        this.latencyTargetNanos = config.getStatsIoLatencyTargetMs() * 1_000_000L;
+    }
+
+    /**
+     * blocks until the server's budget allows reading a file of `bytes`, returns how long it waited
+     */
+    public long acquire(String serverName, long bytes) throws InterruptedException {
+        long waitNanos = budget(serverName).reserve(bytes);
+        if (waitNanos > 0) {
+            Thread.sleep(waitNanos / 1_000_000, (int) (waitNanos % 1_000_000));
+        }
+        return waitNanos;
+    }
+
+    // how long the read itself took, excluding the wait - drives the backoff
+    public void record(String serverName, long readNanos) {
+        budget(serverName).record(readNanos);
+    }
+
+    /**
+     * paces the reads of a full scan so `files` would take `windowMillis` - 0 to stop pacing
+     */
+    public void spread(String serverName, int files, long windowMillis) {
+        Budget budget = budget(serverName);
+        synchronized (budget) {
+            budget.spreadFiles = windowMillis > 0 && files > 0 ?
+                Math.max(MIN_FILES_PER_SECOND, files / (windowMillis / 1000.0)) : 0;
+        }
+    }
+
+    public Limits limits(String serverName) {
+        return budget(serverName).limits();
+    }
+
+    public JsonObject toJson() {
+        JsonObject json = new JsonObject();
+        for (Map.Entry<String, Budget> entry : new TreeMap<>(budgets).entrySet()) {
+            json.add(entry.getKey(), entry.getValue().limits().toJson());
+        }
+        return json;
+    }
+
+    private Budget budget(String serverName) {
+        return budgets.computeIfAbsent(serverName, Budget::new);
+    }
+
+    private static double round(double value) {
+        return Math.round(value * 100) / 100.0;
+    }
+}
@@ -0,0 +1,111 @@
+package com.velocityessentials.stats;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * persistent record of every stat file that has been ingested
+ * keyed by server + uuid, so unchanged files can be skipped without being read
+ * advancement files are keyed advancements/<uuid> next to the stat files of the same server
+ */
+public class IngestManifest {
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    public record Entry(long mtime, long size, long hash) {}
+
+    public void createTable(Connection conn) throws SQLException {
+        conn.createStatement().execute("""
+            CREATE TABLE IF NOT EXISTS ingest_manifest (
+                server_name TEXT,
+                uuid TEXT,
+                mtime INTEGER,
+                size INTEGER,
+                content_hash INTEGER,
+                PRIMARY KEY (server_name, uuid)
+            )
+            """);
+    }
+
+    public int load(Connection conn) throws SQLException {
+        entries.clear();
+
+        try (PreparedStatement ps = conn.prepareStatement(
+            "SELECT server_name, uuid, mtime, size, content_hash FROM ingest_manifest")) {
+
+            ResultSet rs = ps.executeQuery();
+            while (rs.next()) {
+                entries.put(key(rs.getString("server_name"), rs.getString("uuid")),
+                    new Entry(rs.getLong("mtime"), rs.getLong("size"), rs.getLong("content_hash")));
+            }
+        }
+
+        return entries.size();
+    }
+
+    // cheap check - metadata only, no file read
+    public boolean isUnchanged(String serverName, String uuid, long mtime, long size) {
+        Entry entry = entries.get(key(serverName, uuid));
+        return entry != null && entry.mtime() == mtime && entry.size() == size;
+    }
+
+    // file was touched but the content is identical to what we last ingested
+    public boolean hasSameContent(String serverName, String uuid, long hash) {
+        Entry entry = entries.get(key(serverName, uuid));
+        return entry != null && entry.hash() == hash;
+    }
+
+    // writes the row only - the caller publishes it once its transaction has committed
+    public void record(Connection conn, String serverName, String uuid, Entry entry) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement(
+            "INSERT OR REPLACE INTO ingest_manifest (server_name, uuid, mtime, size, content_hash) " +
+            "VALUES (?, ?, ?, ?, ?)")) {
+
+            ps.setString(1, serverName);
+            ps.setString(2, uuid);
+            ps.setLong(3, entry.mtime());
+            ps.setLong(4, entry.size());
+            ps.setLong(5, entry.hash());
+            ps.executeUpdate();
+        }
+    }
+
+    // a rolled back row must not make the next scan skip the file
+    public void publish(String serverName, String uuid, Entry entry) {
+        entries.put(key(serverName, uuid), entry);
+    }
+
+    // every file of the server is read again on the next scan
+    public void forgetServer(Connection conn, String serverName) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement("DELETE FROM ingest_manifest WHERE server_name = ?")) {
+            ps.setString(1, serverName);
+            ps.executeUpdate();
+        }
+
+        entries.keySet().removeIf(key -> key.startsWith(serverName + "/"));
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public static long hash(byte[] content) {
+        try {
+            // first 64 bits of sha-256 - collisions are not a realistic concern at this scale
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(content);
+            return ByteBuffer.wrap(digest).getLong();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    private static String key(String serverName, String uuid) {
+        return serverName + "/" + uuid;
+    }
+}
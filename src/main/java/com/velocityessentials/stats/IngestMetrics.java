@@ -0,0 +1,137 @@
+package com.velocityessentials.stats;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * ring buffer of recent ingest cycles
+ * every finished cycle is frozen into a snapshot with a per-server breakdown, so the api and
+ * /ve stats status can show where the time goes without keeping the live counters around
+ */
+public class IngestMetrics {
+    private static final int HISTORY = 50;
+
+    private final Deque<CycleMetrics> cycles = new ArrayDeque<>(HISTORY);
+
+    public record ServerMetrics(int listed, int skipped, int read, int ingested, int failed, long bytesRead,
+                                long listMillis, long readMillis, long parseMillis, long dbMillis,
+                                long rowsChanged, long rowsUnchanged, long rowsDeleted,
+                                double p50Millis, double p99Millis, long throttleMillis, IngestGovernor.Limits limits) {
+
+        static ServerMetrics of(IngestCycle.Counts counts) {
+            return new ServerMetrics(
+                counts.scanned.get(), counts.skipped.get(), counts.read.get(), counts.ingested.get(), counts.failed.get(),
+                counts.bytesRead.get(),
+                millis(counts.listNanos.get()), millis(counts.readNanos.get()),
+                millis(counts.parseNanos.get()), millis(counts.dbNanos.get()),
+                counts.rowsChanged.get(), counts.rowsUnchanged.get(), counts.rowsDeleted.get(),
+                counts.latencies.percentile(50) / 1_000_000.0, counts.latencies.percentile(99) / 1_000_000.0,
+                millis(counts.throttleNanos.get()), counts.limits);
+        }
+
+        JsonObject toJson() {
+            JsonObject json = new JsonObject();
+            json.addProperty("files_listed", listed);
+            json.addProperty("files_skipped", skipped);
+            json.addProperty("files_read", read);
+            json.addProperty("files_ingested", ingested);
+            json.addProperty("files_failed", failed);
+            json.addProperty("bytes_read", bytesRead);
+            json.addProperty("list_ms", listMillis);
+            json.addProperty("read_ms", readMillis);
+            json.addProperty("parse_ms", parseMillis);
+            json.addProperty("db_ms", dbMillis);
+            json.addProperty("rows_changed", rowsChanged);
+            json.addProperty("rows_unchanged", rowsUnchanged);
+            json.addProperty("rows_deleted", rowsDeleted);
+            json.addProperty("latency_p50_ms", round(p50Millis));
+            json.addProperty("latency_p99_ms", round(p99Millis));
+            json.addProperty("throttled_ms", throttleMillis);
+            if (limits != null) {
+                json.add("budget", limits.toJson());
+            }
+            return json;
+        }
+    }
+
+    // trigger is "scan" for full scans and "watch" for watcher batches
+    public record CycleMetrics(String trigger, long startTime, long durationMillis, int commits, long mojangLookups,
+                               ServerMetrics totals, Map<String, ServerMetrics> servers) {
+
+        JsonObject toJson() {
+            JsonObject json = new JsonObject();
+            json.addProperty("trigger", trigger);
+            json.addProperty("start_time", startTime);
+            json.addProperty("duration_ms", durationMillis);
+            json.addProperty("commits", commits);
+            json.addProperty("mojang_lookups", mojangLookups);
+            json.add("totals", totals.toJson());
+
+            JsonObject serverJson = new JsonObject();
+            servers.forEach((name, metrics) -> serverJson.add(name, metrics.toJson()));
+            json.add("servers", serverJson);
+            return json;
+        }
+    }
+
+    public CycleMetrics record(IngestCycle cycle, String trigger, long mojangLookups) {
+        Map<String, ServerMetrics> servers = new TreeMap<>();
+        cycle.getServers().forEach((name, counts) -> servers.put(name, ServerMetrics.of(counts)));
+
+        CycleMetrics metrics = new CycleMetrics(trigger, cycle.getStartTime(),
+            System.currentTimeMillis() - cycle.getStartTime(), cycle.getCommits(), mojangLookups,
+            ServerMetrics.of(cycle.getTotals()), servers);
+
+        synchronized (cycles) {
+            if (cycles.size() == HISTORY) {
+                cycles.removeFirst();
+            }
+            cycles.addLast(metrics);
+        }
+
+        return metrics;
+    }
+
+    /**
+     * most recent first, optionally only one trigger type (null for all)
+     */
+    public List<CycleMetrics> recent(String trigger, int limit) {
+        List<CycleMetrics> result = new ArrayList<>();
+        synchronized (cycles) {
+            var iterator = cycles.descendingIterator();
+            while (iterator.hasNext() && result.size() < limit) {
+                CycleMetrics metrics = iterator.next();
+                if (trigger == null || trigger.equals(metrics.trigger())) {
+                    result.add(metrics);
+                }
+            }
+        }
+        return result;
+    }
+
+    public JsonObject toJson(String trigger, int limit) {
+        JsonArray array = new JsonArray();
+        for (CycleMetrics metrics : recent(trigger, limit)) {
+            array.add(metrics.toJson());
+        }
+
+        JsonObject json = new JsonObject();
+        json.add("cycles", array);
+        return json;
+    }
+
+    private static long millis(long nanos) {
+        return nanos / 1_000_000;
+    }
+
+    private static double round(double value) {
+        return Math.round(value * 100) / 100.0;
+    }
+}
@@ -0,0 +1,90 @@
+package com.velocityessentials.stats;
+
+import com.google.gson.JsonObject;
+import com.zaxxer.hikari.metrics.IMetricsTracker;
+import com.zaxxer.hikari.metrics.MetricsTrackerFactory;
+import com.zaxxer.hikari.metrics.PoolStats;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * how long callers wait for a connection from one pool
+ * hikari reports every acquisition, the last 1024 waits are kept for percentiles
+ */
+public class PoolWaitTracker implements MetricsTrackerFactory, IMetricsTracker {
+    private static final int SAMPLES = 1024;
+
+    private final AtomicLong acquired = new AtomicLong();
+    private final AtomicLong waitNanos = new AtomicLong();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+    private final AtomicLong timeouts = new AtomicLong();
+    private final long[] recent = new long[SAMPLES];
+    private int next;
+    private int filled;
+    private volatile PoolStats poolStats;
+
+    @Override
+    public IMetricsTracker create(String poolName, PoolStats poolStats) {
+        this.poolStats = poolStats;
+        return this;
+    }
+
+    @Override
+    public void recordConnectionAcquiredNanos(long elapsedAcquiredNanos) {
+        acquired.incrementAndGet();
+        waitNanos.addAndGet(elapsedAcquiredNanos);
+        maxWaitNanos.accumulateAndGet(elapsedAcquiredNanos, Math::max);
+
+        synchronized (recent) {
+            recent[next] = elapsedAcquiredNanos;
+            next = (next + 1) % SAMPLES;
+            filled = Math.min(filled + 1, SAMPLES);
+        }
+    }
+
+    @Override
+    public void recordConnectionTimeout() {
+        timeouts.incrementAndGet();
+    }
+
+    // nearest-rank percentile of the recent waits, 0 when nothing was recorded
+    public long percentile(double percentile) {
+        long[] sorted;
+        synchronized (recent) {
+            sorted = Arrays.copyOf(recent, filled);
+        }
+        if (sorted.length == 0) {
+            return 0;
+        }
+        Arrays.sort(sorted);
+        int rank = (int) Math.ceil(percentile / 100.0 * sorted.length);
+        return sorted[Math.max(0, Math.min(sorted.length - 1, rank - 1))];
+    }
+
+    public long getAcquired() { return acquired.get(); }
+    public long getTimeouts() { return timeouts.get(); }
+
+    public JsonObject toJson() {
+        JsonObject json = new JsonObject();
+        long count = acquired.get();
+        json.addProperty("acquired", count);
+        json.addProperty("timeouts", timeouts.get());
+        json.addProperty("wait_avg_ms", count == 0 ? 0 : round(waitNanos.get() / (double) count / 1_000_000));
+        json.addProperty("wait_p50_ms", round(percentile(50) / 1_000_000.0));
+        json.addProperty("wait_p99_ms", round(percentile(99) / 1_000_000.0));
+        json.addProperty("wait_max_ms", round(maxWaitNanos.get() / 1_000_000.0));
+
+        PoolStats stats = poolStats;
+        if (stats != null) {
+            json.addProperty("active", stats.getActiveConnections());
+            json.addProperty("idle", stats.getIdleConnections());
+            json.addProperty("waiting", stats.getPendingThreads());
+        }
+        return json;
+    }
+
+    private static double round(double value) {
+        return Math.round(value * 100) / 100.0;
+    }
+}
@@ -0,0 +1,206 @@
+package com.velocityessentials.stats;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * order-statistic treap of (player, score), highest score first
+ * every node knows its subtree size, so updates, top-n and rank lookups are all O(log n).
+ * not thread safe - callers lock around it
+ */
+public class RankTree {
+    private final Map<Integer, Long> scores = new HashMap<>();
+    private Node root;
+
+    public record Entry(int playerId, long score, int rank) {}
+
+    private static final class Node {
+        final int playerId;
+        final long score;
+        final int priority = ThreadLocalRandom.current().nextInt();
+        Node left;
+        Node right;
+        int size = 1;
+
+        Node(int playerId, long score) {
+            this.playerId = playerId;
+            this.score = score;
+        }
+    }
+
+    public void put(int playerId, long score) {
+        Long old = scores.put(playerId, score);
+        if (old != null) {
+            if (old == score) {
+                return;
+            }
+            root = delete(root, old, playerId);
+        }
+        root = insert(root, new Node(playerId, score));
+    }
+
+    public void remove(int playerId) {
+        Long old = scores.remove(playerId);
+        if (old != null) {
+            root = delete(root, old, playerId);
+        }
+    }
+
+    public Long score(int playerId) {
+        return scores.get(playerId);
+    }
+
+    public int size() {
+        return scores.size();
+    }
+
+    public void clear() {
+        scores.clear();
+        root = null;
+    }
+
+    /**
+     * competition rank like sql's RANK() - 1 + the number of players with a strictly higher score
+     */
+    public int rank(int playerId) {
+        Long score = scores.get(playerId);
+        return score == null ? -1 : countAbove(score) + 1;
+    }
+
+    public List<Entry> top(int limit) {
+        List<Entry> result = new ArrayList<>(Math.min(limit, size()));
+        collect(root, limit, result);
+        return result;
+    }
+
+    // lowest score, null when empty
+    public Entry last() {
+        Node node = root;
+        if (node == null) {
+            return null;
+        }
+        while (node.right != null) {
+            node = node.right;
+        }
+        return new Entry(node.playerId, node.score, countAbove(node.score) + 1);
+    }
+
+    private void collect(Node node, int limit, List<Entry> result) {
+        if (node == null || result.size() >= limit) {
+            return;
+        }
+
+        collect(node.left, limit, result);
+        if (result.size() < limit) {
+            // ties share the rank of the first player with that score
+            int rank = !result.isEmpty() && result.get(result.size() - 1).score() == node.score ?
+                result.get(result.size() - 1).rank() : result.size() + 1;
+            result.add(new Entry(node.playerId, node.score, rank));
+        }
+        collect(node.right, limit, result);
+    }
+
+    private int countAbove(long score) {
+        int count = 0;
+        Node node = root;
+        while (node != null) {
+            if (node.score > score) {
+                count += size(node.left) + 1;
+                node = node.right;
+            } else {
+                node = node.left;
+            }
+        }
+        return count;
+    }
+
+    // ordering: score descending, then player id ascending so every key is unique
+    private static int compare(long score, int playerId, Node node) {
+        if (score != node.score) {
+            return score > node.score ? -1 : 1;
+        }
+        return Integer.compare(playerId, node.playerId);
+    }
+
+    private static Node insert(Node node, Node added) {
+        if (node == null) {
+            return added;
+        }
+
+        if (compare(added.score, added.playerId, node) < 0) {
+            node.left = insert(node.left, added);
+            if (node.left.priority > node.priority) {
+                node = rotateRight(node);
+            }
+        } else {
+            node.right = insert(node.right, added);
+            if (node.right.priority > node.priority) {
+                node = rotateLeft(node);
+            }
+        }
+
+        update(node);
+        return node;
+    }
+
+    private static Node delete(Node node, long score, int playerId) {
+        if (node == null) {
+            return null;
+        }
+
+        int cmp = compare(score, playerId, node);
+        if (cmp < 0) {
+            node.left = delete(node.left, score, playerId);
+        } else if (cmp > 0) {
+            node.right = delete(node.right, score, playerId);
+        } else {
+            if (node.left == null) {
+                return node.right;
+            }
+            if (node.right == null) {
+                return node.left;
+            }
+
+            // rotate the higher-priority child up and keep sinking the node until it is a leaf
+            if (node.left.priority > node.right.priority) {
+                node = rotateRight(node);
+                node.right = delete(node.right, score, playerId);
+            } else {
+                node = rotateLeft(node);
+                node.left = delete(node.left, score, playerId);
+            }
+        }
+
+        update(node);
+        return node;
+    }
+
+    private static Node rotateRight(Node node) {
+        Node left = node.left;
+        node.left = left.right;
+        left.right = node;
+        update(node);
+        update(left);
+        return left;
+    }
+
+    private static Node rotateLeft(Node node) {
+        Node right = node.right;
+        node.right = right.left;
+        right.left = node;
+        update(node);
+        update(right);
+        return right;
+    }
+
+    private static void update(Node node) {
+        node.size = 1 + size(node.left) + size(node.right);
+    }
+
+    private static int size(Node node) {
+        return node == null ? 0 : node.size;
+    }
+}
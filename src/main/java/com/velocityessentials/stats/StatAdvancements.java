@@ -0,0 +1,319 @@
+package com.velocityessentials.stats;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.OffsetDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * completed advancements from world/advancements, read through the same manifest, parsers and writer as
+ * the stat files. only finished advancements are stored, one (advancement_id, player_id, server_id,
+ * completed_at) row each - the row is the completion flag and completed_at is when its last criterion was met.
+ * advancement keys get their own dictionary so they never show up among the stat keys
+ */
+public class StatAdvancements {
+    // criteria are saved as "2024-01-05 18:23:45 +0100"
+    private static final DateTimeFormatter CRITERION_TIME = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss Z");
+    private static final String RECIPES = "minecraft:recipes/";
+
+    private final boolean includeRecipes;
+    private final Map<String, Integer> ids = new ConcurrentHashMap<>();
+    // the same keys in order, so a prefix is a contiguous range
+    private final NavigableMap<String, Integer> sortedKeys = new ConcurrentSkipListMap<>();
+
+    // how many players finished one advancement, on any server
+    public record Completion(String key, int players) {}
+
+    // a player's earliest completion, or their count of completed advancements and when they reached it
+    public record PlayerEntry(int playerId, long value, long completedAt) {}
+
+    public StatAdvancements(boolean includeRecipes) {
+        this.includeRecipes = includeRecipes;
+    }
+
+    public void createTables(Connection conn) throws SQLException {
+        try (Statement st = conn.createStatement()) {
+            st.execute("""
+                CREATE TABLE IF NOT EXISTS advancement_keys (
+                    id INTEGER PRIMARY KEY,
+                    key TEXT NOT NULL UNIQUE
+                )
+                """);
+            // keyed advancement first so completion counts and first completers are a range scan
+            st.execute("""
+                CREATE TABLE IF NOT EXISTS player_advancements (
+                    advancement_id INTEGER NOT NULL,
+                    player_id INTEGER NOT NULL,
+                    server_id INTEGER NOT NULL,
+                    completed_at INTEGER NOT NULL,
+                    PRIMARY KEY (advancement_id, player_id, server_id)
+                ) WITHOUT ROWID
+                """);
+            st.execute("CREATE INDEX IF NOT EXISTS idx_advancements_player ON player_advancements(player_id, server_id)");
+        }
+    }
+
+    public int load(Connection conn) throws SQLException {
+        ids.clear();
+        sortedKeys.clear();
+        try (Statement st = conn.createStatement();
+             ResultSet rs = st.executeQuery("SELECT id, key FROM advancement_keys")) {
+            while (rs.next()) {
+                ids.put(rs.getString(2), rs.getInt(1));
+            }
+        }
+        sortedKeys.putAll(ids);
+        return ids.size();
+    }
+
+    // null when the advancement has never been completed by anyone
+    public Integer id(String key) { return ids.get(key); }
+    public int count() { return ids.size(); }
+
+    // every key starting with prefix, in order
+    public NavigableMap<String, Integer> keys(String prefix) {
+        return sortedKeys.subMap(prefix, true, prefix + Character.MAX_VALUE, false);
+    }
+
+    /**
+     * the finished advancements of one file as key -> completion time in epoch seconds, null if the file is malformed
+     */
+    public StatValues decode(byte[] content) {
+        StatValues completed = new StatValues(32);
+        try (JsonReader reader = new JsonReader(new InputStreamReader(new ByteArrayInputStream(content), StandardCharsets.UTF_8))) {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                String key = reader.nextName();
+                // DataVersion sits next to the advancements
+                if (reader.peek() != JsonToken.BEGIN_OBJECT || (!includeRecipes && key.startsWith(RECIPES))) {
+                    reader.skipValue();
+                    continue;
+                }
+
+                long completedAt = readAdvancement(reader);
+                if (completedAt >= 0) {
+                    completed.add(key, completedAt);
+                }
+            }
+            reader.endObject();
+            return completed;
+
+        } catch (IOException | IllegalStateException | DateTimeParseException e) {
+            return null;
+        }
+    }
+
+    // the time of the latest criterion, -1 while the advancement isn't done
+    private static long readAdvancement(JsonReader reader) throws IOException {
+        boolean done = false;
+        long latest = 0;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if (name.equals("done")) {
+                done = reader.nextBoolean();
+            } else if (name.equals("criteria") && reader.peek() == JsonToken.BEGIN_OBJECT) {
+                reader.beginObject();
+                while (reader.hasNext()) {
+                    reader.nextName();
+                    latest = Math.max(latest, OffsetDateTime.parse(reader.nextString(), CRITERION_TIME).toEpochSecond());
+                }
+                reader.endObject();
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return done ? latest : -1;
+    }
+
+    /**
+     * makes sure every key has an id - its own transaction, so not while the connection is inside another
+     */
+    public void ensure(Connection conn, Collection<String> keys) throws SQLException {
+        Map<String, Integer> created = new HashMap<>();
+        boolean autoCommit = conn.getAutoCommit();
+        conn.setAutoCommit(false);
+        try (PreparedStatement insert = conn.prepareStatement("INSERT OR IGNORE INTO advancement_keys (key) VALUES (?)");
+             PreparedStatement select = conn.prepareStatement("SELECT id FROM advancement_keys WHERE key = ?")) {
+            for (String key : keys) {
+                if (ids.containsKey(key) || created.containsKey(key)) {
+                    continue;
+                }
+
+                insert.setString(1, key);
+                insert.executeUpdate();
+                select.setString(1, key);
+                try (ResultSet rs = select.executeQuery()) {
+                    if (rs.next()) {
+                        created.put(key, rs.getInt(1));
+                    }
+                }
+            }
+            conn.commit();
+        } catch (SQLException e) {
+            conn.rollback();
+            throw e;
+        } finally {
+            conn.setAutoCommit(autoCommit);
+        }
+
+        ids.putAll(created);
+        sortedKeys.putAll(created);
+    }
+
+    // the writer's statements, prepared once per batch
+    static class Statements implements AutoCloseable {
+        final PreparedStatement select;
+        final PreparedStatement upsert;
+        final PreparedStatement delete;
+
+        Statements(Connection conn) throws SQLException {
+            select = conn.prepareStatement(
+                "SELECT advancement_id, completed_at FROM player_advancements WHERE player_id = ? AND server_id = ?");
+            upsert = conn.prepareStatement(
+                "INSERT INTO player_advancements (advancement_id, player_id, server_id, completed_at) VALUES (?, ?, ?, ?) " +
+                "ON CONFLICT (advancement_id, player_id, server_id) DO UPDATE SET completed_at = excluded.completed_at");
+            delete = conn.prepareStatement(
+                "DELETE FROM player_advancements WHERE advancement_id = ? AND player_id = ? AND server_id = ?");
+        }
+
+        void clear() throws SQLException {
+            upsert.clearBatch();
+            delete.clearBatch();
+        }
+
+        @Override
+        public void close() throws SQLException {
+            select.close();
+            upsert.close();
+            delete.close();
+        }
+    }
+
+    /**
+     * replaces one player's advancements on one server with those of the file - revoked ones are deleted.
+     * returns { changed, unchanged, deleted }
+     */
+    int[] write(Statements statements, int playerId, int serverId, StatValues completed) throws SQLException {
+        Map<Integer, Long> previous = new HashMap<>();
+        statements.select.setInt(1, playerId);
+        statements.select.setInt(2, serverId);
+        try (ResultSet rs = statements.select.executeQuery()) {
+            while (rs.next()) {
+                previous.put(rs.getInt(1), rs.getLong(2));
+            }
+        }
+
+        int changed = 0;
+        for (int i = 0; i < completed.size(); i++) {
+            Integer id = ids.get(completed.key(i));
+            if (id == null) {
+                throw new SQLException("No id for advancement " + completed.key(i));
+            }
+
+            Long old = previous.remove(id);
+            if (old != null && old == completed.value(i)) {
+                continue;
+            }
+            statements.upsert.setInt(1, id);
+            statements.upsert.setInt(2, playerId);
+            statements.upsert.setInt(3, serverId);
+            statements.upsert.setLong(4, completed.value(i));
+            statements.upsert.addBatch();
+            changed++;
+        }
+
+        for (int id : previous.keySet()) {
+            statements.delete.setInt(1, id);
+            statements.delete.setInt(2, playerId);
+            statements.delete.setInt(3, serverId);
+            statements.delete.addBatch();
+        }
+
+        if (changed > 0) {
+            statements.upsert.executeBatch();
+        }
+        if (!previous.isEmpty()) {
+            statements.delete.executeBatch();
+        }
+        return new int[] { changed, completed.size() - changed, previous.size() };
+    }
+
+    /**
+     * completion counts of the keys starting with prefix, in key order
+     */
+    public List<Completion> completions(Connection conn, String prefix, int limit) throws SQLException {
+        List<Completion> completions = new ArrayList<>();
+        try (PreparedStatement ps = conn.prepareStatement(
+                "SELECT COUNT(DISTINCT player_id) FROM player_advancements WHERE advancement_id = ?")) {
+            for (Map.Entry<String, Integer> key : keys(prefix).entrySet()) {
+                if (completions.size() >= limit) {
+                    break;
+                }
+                ps.setInt(1, key.getValue());
+                try (ResultSet rs = ps.executeQuery()) {
+                    completions.add(new Completion(key.getKey(), rs.next() ? rs.getInt(1) : 0));
+                }
+            }
+        }
+        return completions;
+    }
+
+    /**
+     * the first players to finish an advancement - a player who finished it on several servers counts with the earliest
+     */
+    public List<PlayerEntry> firstCompleters(Connection conn, int advancementId, int limit) throws SQLException {
+        List<PlayerEntry> players = new ArrayList<>();
+        try (PreparedStatement ps = conn.prepareStatement(
+                "SELECT player_id, MIN(completed_at) AS first FROM player_advancements WHERE advancement_id = ? " +
+                "GROUP BY player_id ORDER BY first, player_id LIMIT ?")) {
+            ps.setInt(1, advancementId);
+            ps.setInt(2, limit);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    players.add(new PlayerEntry(rs.getInt(1), rs.getLong(2), rs.getLong(2)));
+                }
+            }
+        }
+        return players;
+    }
+
+    /**
+     * players with the most distinct advancements finished across servers - ties go to whoever got there first
+     */
+    public List<PlayerEntry> mostCompleted(Connection conn, int limit) throws SQLException {
+        List<PlayerEntry> players = new ArrayList<>();
+        try (PreparedStatement ps = conn.prepareStatement(
+                "SELECT player_id, COUNT(DISTINCT advancement_id) AS completed, MAX(completed_at) AS latest " +
+                "FROM player_advancements GROUP BY player_id ORDER BY completed DESC, latest, player_id LIMIT ?")) {
+            ps.setInt(1, limit);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    players.add(new PlayerEntry(rs.getInt(1), rs.getLong(2), rs.getLong(3)));
+                }
+            }
+        }
+        return players;
+    }
+}
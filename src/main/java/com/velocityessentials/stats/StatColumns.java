@@ -0,0 +1,388 @@
+package com.velocityessentials.stats;
+
+import com.google.gson.JsonObject;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * cross-server stat totals held in memory a column at a time - one long[] per stat, indexed by player id
+ * (the dictionary hands ids out densely), so a leaderboard is one scan over a primitive array.
+ * at most max-columns stats are resident, the least recently used one makes room for the next.
+ * like the top cache, the writer hands over every committed total of a resident stat.
+ * next to the values every column keeps them sorted, so a player's rank is a binary search
+ */
+public class StatColumns {
+    // marks a player without a total for the stat
+    private static final long ABSENT = Long.MIN_VALUE;
+
+    private final DataSource readers;
+    private final StatsDictionary dictionary;
+    private final int maxColumns;
+    private final Map<Integer, Column> columns = new ConcurrentHashMap<>();
+    private final AtomicLong clock = new AtomicLong();
+    private final AtomicLong loads = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    // where one player stands in a stat - rank is shared by ties, like the leaderboards
+    public record Standing(long score, int rank, int players) {}
+
+    private static final class Column {
+        private long[] values = new long[0];
+        private int players;
+        // every present value in ascending order, the first `players` slots are used
+        private long[] sorted = new long[0];
+        private volatile boolean loaded;
+        private volatile long lastUsed;
+
+        synchronized void load(DataSource readers, int statId, int capacity) throws SQLException {
+            if (loaded) {
+                return;
+            }
+
+            long[] fresh = new long[Math.max(16, capacity)];
+            Arrays.fill(fresh, ABSENT);
+            int count = 0;
+            try (Connection conn = readers.getConnection();
+                 PreparedStatement ps = conn.prepareStatement(
+                     "SELECT player_id, total FROM player_stat_totals WHERE stat_id = ?")) {
+                ps.setInt(1, statId);
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        int playerId = rs.getInt(1);
+                        fresh = fit(fresh, playerId);
+                        fresh[playerId] = rs.getLong(2);
+                        count++;
+                    }
+                }
+            }
+
+            long[] ordered = new long[Math.max(16, count)];
+            int filled = 0;
+            for (long value : fresh) {
+                if (value != ABSENT) {
+                    ordered[filled++] = value;
+                }
+            }
+            Arrays.sort(ordered, 0, filled);
+
+            values = fresh;
+            sorted = ordered;
+            players = count;
+            loaded = true;
+        }
+
+        synchronized void set(int playerId, long total) {
+            if (!loaded) {
+                return;
+            }
+            values = fit(values, playerId);
+            long old = values[playerId];
+            values[playerId] = total;
+            if (old == ABSENT) {
+                insert(total);
+            } else if (old != total) {
+                move(old, total);
+            }
+        }
+
+        // competition rank like sql's RANK() - 1 + the number of players with a strictly higher score
+        synchronized Standing standing(int playerId) {
+            if (playerId >= values.length || values[playerId] == ABSENT) {
+                return null;
+            }
+            long score = values[playerId];
+            return new Standing(score, players - after(score) + 1, players);
+        }
+
+        private void insert(long value) {
+            if (players == sorted.length) {
+                sorted = Arrays.copyOf(sorted, Math.max(16, players + (players >> 1)));
+            }
+            int at = after(value);
+            System.arraycopy(sorted, at, sorted, at + 1, players - at);
+            sorted[at] = value;
+            players++;
+        }
+
+        // only the slots between the old and the new value shift, a small change moves little
+        private void move(long old, long value) {
+            if (value > old) {
+                int from = after(old - 1);
+                int to = after(value) - 1;
+                System.arraycopy(sorted, from + 1, sorted, from, to - from);
+                sorted[to] = value;
+            } else {
+                int from = after(old) - 1;
+                int to = after(value);
+                System.arraycopy(sorted, to, sorted, to + 1, from - to);
+                sorted[to] = value;
+            }
+        }
+
+        // index of the first sorted value above `value`
+        private int after(long value) {
+            int low = 0;
+            int high = players;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (sorted[mid] <= value) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+
+        // top `limit` players, highest first (lower id first on a tie) - a bounded min-heap over the column
+        synchronized List<RankTree.Entry> top(int limit) {
+            int size = Math.min(limit, players);
+            if (size <= 0) {
+                return List.of();
+            }
+
+            long[] heapScores = new long[size];
+            int[] heapIds = new int[size];
+            int filled = 0;
+            for (int playerId = 0; playerId < values.length; playerId++) {
+                long value = values[playerId];
+                if (value == ABSENT) {
+                    continue;
+                }
+                if (filled < size) {
+                    heapScores[filled] = value;
+                    heapIds[filled] = playerId;
+                    siftUp(heapScores, heapIds, filled++);
+                } else if (value > heapScores[0]) {
+                    // ids only grow during the scan, so an equal score never beats the heap
+                    heapScores[0] = value;
+                    heapIds[0] = playerId;
+                    siftDown(heapScores, heapIds, filled);
+                }
+            }
+
+            RankTree.Entry[] top = new RankTree.Entry[filled];
+            for (int i = filled - 1; i >= 0; i--) {
+                top[i] = new RankTree.Entry(heapIds[0], heapScores[0], i + 1);
+                heapScores[0] = heapScores[i];
+                heapIds[0] = heapIds[i];
+                siftDown(heapScores, heapIds, i);
+            }
+            return Arrays.asList(top);
+        }
+
+        synchronized long bytes() {
+            return (long) (values.length + sorted.length) * Long.BYTES;
+        }
+
+        synchronized void invalidate() {
+            loaded = false;
+            values = new long[0];
+            sorted = new long[0];
+            players = 0;
+        }
+    }
+
+    public StatColumns(DataSource readers, StatsDictionary dictionary, int maxColumns) {
+        this.readers = readers;
+        this.dictionary = dictionary;
+        this.maxColumns = maxColumns;
+    }
+
+    public boolean isEnabled() {
+        return maxColumns > 0;
+    }
+
+    /**
+     * the top players of a stat from its column, loading it first if it isn't resident -
+     * null when the column store is turned off
+     */
+    public List<RankTree.Entry> top(int statId, int limit) throws SQLException {
+        if (!isEnabled()) {
+            return null;
+        }
+        return column(statId).top(limit);
+    }
+
+    /**
+     * a player's rank in a stat from its column in O(log n), loading the column first if needed -
+     * null when the column store is turned off or the player has no total for the stat
+     */
+    public Standing standing(int statId, int playerId) throws SQLException {
+        if (!isEnabled()) {
+            return null;
+        }
+        return column(statId).standing(playerId);
+    }
+
+    /**
+     * loads the columns of the stats most players have, up to max-columns - returns how many were loaded
+     */
+    public int preload() throws SQLException {
+        if (!isEnabled()) {
+            return 0;
+        }
+
+        List<Integer> statIds = new ArrayList<>();
+        try (Connection conn = readers.getConnection();
+             PreparedStatement ps = conn.prepareStatement(
+                 "SELECT stat_id FROM player_stat_totals GROUP BY stat_id ORDER BY COUNT(*) DESC LIMIT ?")) {
+            ps.setInt(1, maxColumns);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    statIds.add(rs.getInt(1));
+                }
+            }
+        }
+
+        for (int statId : statIds) {
+            column(statId);
+        }
+        return statIds.size();
+    }
+
+    boolean isResident(int statId) {
+        return columns.containsKey(statId);
+    }
+
+    /**
+     * totals the writer has committed, applied after the commit so a load never misses one
+     */
+    void apply(List<StatTotals.Change> changes) {
+        for (StatTotals.Change change : changes) {
+            Column column = columns.get(change.statId());
+            if (column != null) {
+                column.set(change.playerId(), change.total());
+            }
+        }
+    }
+
+    // every resident column loads again on its next read
+    void invalidate() {
+        for (Column column : columns.values()) {
+            column.invalidate();
+        }
+    }
+
+    public long getResidentBytes() {
+        long bytes = 0;
+        for (Column column : columns.values()) {
+            bytes += column.bytes();
+        }
+        return bytes;
+    }
+
+    public int getResidentColumns() {
+        return columns.size();
+    }
+
+    public JsonObject toJson() {
+        JsonObject json = new JsonObject();
+        json.addProperty("resident", columns.size());
+        json.addProperty("max", maxColumns);
+        json.addProperty("bytes", getResidentBytes());
+        json.addProperty("loads", loads.get());
+        json.addProperty("evictions", evictions.get());
+        return json;
+    }
+
+    // the resident column of a stat, made resident (before it loads, so the writer already feeds it) if needed
+    private Column column(int statId) throws SQLException {
+        Column column = columns.get(statId);
+        if (column == null) {
+            column = admit(statId);
+        }
+        column.lastUsed = clock.incrementAndGet();
+
+        if (!column.loaded) {
+            loads.incrementAndGet();
+            column.load(readers, statId, dictionary.playerCount() + 1);
+        }
+        return column;
+    }
+
+    private synchronized Column admit(int statId) {
+        Column existing = columns.get(statId);
+        if (existing != null) {
+            return existing;
+        }
+
+        while (columns.size() >= maxColumns) {
+            int oldest = -1;
+            long oldestUse = Long.MAX_VALUE;
+            for (Map.Entry<Integer, Column> entry : columns.entrySet()) {
+                if (entry.getValue().lastUsed < oldestUse) {
+                    oldest = entry.getKey();
+                    oldestUse = entry.getValue().lastUsed;
+                }
+            }
+            columns.remove(oldest);
+            evictions.incrementAndGet();
+        }
+
+        Column column = new Column();
+        columns.put(statId, column);
+        return column;
+    }
+
+    private static long[] fit(long[] values, int playerId) {
+        if (playerId < values.length) {
+            return values;
+        }
+        int length = Math.max(playerId + 1, values.length + (values.length >> 1));
+        long[] grown = Arrays.copyOf(values, length);
+        Arrays.fill(grown, values.length, length, ABSENT);
+        return grown;
+    }
+
+    private static void siftUp(long[] scores, int[] ids, int index) {
+        while (index > 0) {
+            int parent = (index - 1) / 2;
+            if (!worse(scores, ids, index, parent)) {
+                return;
+            }
+            swap(scores, ids, index, parent);
+            index = parent;
+        }
+    }
+
+    private static void siftDown(long[] scores, int[] ids, int size) {
+        int index = 0;
+        while (true) {
+            int left = index * 2 + 1;
+            if (left >= size) {
+                return;
+            }
+            int worst = left + 1 < size && worse(scores, ids, left + 1, left) ? left + 1 : left;
+            if (!worse(scores, ids, worst, index)) {
+                return;
+            }
+            swap(scores, ids, worst, index);
+            index = worst;
+        }
+    }
+
+    // lower score, or the same score with a higher player id
+    private static boolean worse(long[] scores, int[] ids, int a, int b) {
+        return scores[a] < scores[b] || (scores[a] == scores[b] && ids[a] > ids[b]);
+    }
+
+    private static void swap(long[] scores, int[] ids, int a, int b) {
+        long score = scores[a];
+        scores[a] = scores[b];
+        scores[b] = score;
+        int id = ids[a];
+        ids[a] = ids[b];
+        ids[b] = id;
+    }
+}
@@ -0,0 +1,112 @@
+package com.velocityessentials.stats;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * append-only stat deltas bucketed by hour, rolled up into days once they age out
+ * rows are (stat_id, bucket, player_id, delta) with the bucket stored as hours/days since the epoch,
+ * so every column is a small integer and sqlite's varint record format keeps a row to a handful of bytes
+ */
+public class StatHistory {
+    public static final long HOUR = 3600;
+    public static final long DAY = 86400;
+
+    static final String UPSERT_HOURLY =
+        "INSERT INTO stat_history_hourly (stat_id, bucket, player_id, delta) VALUES (?, ?, ?, ?) " +
+        "ON CONFLICT (stat_id, bucket, player_id) DO UPDATE SET delta = delta + excluded.delta";
+
+    public void createTables(Connection conn) throws SQLException {
+        // keyed stat first so windowed sums and leaderboards are a range scan over just the window
+        try (Statement st = conn.createStatement()) {
+            st.execute("""
+                CREATE TABLE IF NOT EXISTS stat_history_hourly (
+                    stat_id INTEGER NOT NULL,
+                    bucket INTEGER NOT NULL,
+                    player_id INTEGER NOT NULL,
+                    delta INTEGER NOT NULL,
+                    PRIMARY KEY (stat_id, bucket, player_id)
+                ) WITHOUT ROWID
+                """);
+            st.execute("""
+                CREATE TABLE IF NOT EXISTS stat_history_daily (
+                    stat_id INTEGER NOT NULL,
+                    bucket INTEGER NOT NULL,
+                    player_id INTEGER NOT NULL,
+                    delta INTEGER NOT NULL,
+                    PRIMARY KEY (stat_id, bucket, player_id)
+                ) WITHOUT ROWID
+                """);
+        }
+    }
+
+    /**
+     * folds hourly rows older than hourlyRetentionDays into daily rows and drops daily rows
+     * older than dailyRetentionDays (0 keeps them forever). returns the number of hourly rows rolled up
+     */
+    public int rollup(Connection conn, long nowSeconds, int hourlyRetentionDays, int dailyRetentionDays) throws SQLException {
+        // cut on a day boundary so no day is ever split between the two tables
+        long cutoffDay = nowSeconds / DAY - Math.max(1, hourlyRetentionDays);
+        long cutoffHour = cutoffDay * (DAY / HOUR);
+
+        boolean autoCommit = conn.getAutoCommit();
+        conn.setAutoCommit(false);
+        try {
+            try (PreparedStatement ps = conn.prepareStatement("""
+                    INSERT INTO stat_history_daily (stat_id, bucket, player_id, delta)
+                    SELECT stat_id, bucket / 24, player_id, SUM(delta)
+                    FROM stat_history_hourly
+                    WHERE bucket < ?
+                    GROUP BY stat_id, bucket / 24, player_id
+                    ON CONFLICT (stat_id, bucket, player_id) DO UPDATE SET delta = delta + excluded.delta
+                    """)) {
+                ps.setLong(1, cutoffHour);
+                ps.executeUpdate();
+            }
+
+            int rolled;
+            try (PreparedStatement ps = conn.prepareStatement("DELETE FROM stat_history_hourly WHERE bucket < ?")) {
+                ps.setLong(1, cutoffHour);
+                rolled = ps.executeUpdate();
+            }
+
+            if (dailyRetentionDays > 0) {
+                try (PreparedStatement ps = conn.prepareStatement("DELETE FROM stat_history_daily WHERE bucket < ?")) {
+                    ps.setLong(1, nowSeconds / DAY - dailyRetentionDays);
+                    ps.executeUpdate();
+                }
+            }
+
+            conn.commit();
+            return rolled;
+
+        } catch (SQLException e) {
+            conn.rollback();
+            throw e;
+        } finally {
+            conn.setAutoCommit(autoCommit);
+        }
+    }
+
+    /**
+     * sql for every (player_id, bucket_start, delta) of one stat since a point in time, bucket_start in epoch seconds.
+     * binds: stat_id, from hour, stat_id, from day. rolled-up history only has day resolution, so a window
+     * reaching back that far snaps to the start of its first day
+     */
+    static final String WINDOW_ROWS = """
+        SELECT player_id, bucket * 3600 AS bucket_start, delta FROM stat_history_hourly
+        WHERE stat_id = ? AND bucket >= ?
+        UNION ALL
+        SELECT player_id, bucket * 86400 AS bucket_start, delta FROM stat_history_daily
+        WHERE stat_id = ? AND bucket >= ?
+        """;
+
+    static void bindWindow(PreparedStatement ps, int firstIndex, int statId, long sinceSeconds) throws SQLException {
+        ps.setInt(firstIndex, statId);
+        ps.setLong(firstIndex + 1, Math.floorDiv(sinceSeconds, HOUR));
+        ps.setInt(firstIndex + 2, statId);
+        ps.setLong(firstIndex + 3, Math.floorDiv(sinceSeconds, DAY));
+    }
+}
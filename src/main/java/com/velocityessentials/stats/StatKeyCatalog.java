@@ -0,0 +1,218 @@
+package com.velocityessentials.stats;
+
+import com.google.gson.JsonObject;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * every stat key with how many players have it and the min, max and sum of their cross-server totals.
+ * summed once from player_stat_totals on start, after that the writer marks the keys each commit touched
+ * and a marked key is summed again from its (stat_id, total) index range when it's next asked for -
+ * player_stats is never read. keys are looked up by prefix in the dictionary's sorted keys
+ */
+public class StatKeyCatalog {
+    // a key nobody has yet still completes, it just has no players
+    private static final KeyStats EMPTY = new KeyStats();
+    // a prefix matching a single group is completed this many segments deep at most
+    private static final int MAX_DESCENT = 4;
+
+    private static final String SUMMARY =
+        "SELECT COUNT(*), MIN(total), MAX(total), SUM(total) FROM player_stat_totals WHERE stat_id = ? AND total > 0";
+
+    private final DataSource readers;
+    private final StatsDictionary dictionary;
+    private final Map<Integer, KeyStats> stats = new ConcurrentHashMap<>();
+    private final AtomicLong refreshes = new AtomicLong();
+
+    public record Summary(String key, int players, long min, long max, long sum) {
+
+        public JsonObject toJson() {
+            JsonObject json = new JsonObject();
+            json.addProperty("key", key);
+            json.addProperty("players", players);
+            json.addProperty("min", min);
+            json.addProperty("max", max);
+            json.addProperty("sum", sum);
+            json.addProperty("average", players > 0 ? Math.round(100.0 * sum / players) / 100.0 : 0);
+            if (StatsDictionary.isCategory(key)) {
+                json.addProperty("category", true);
+            }
+            return json;
+        }
+    }
+
+    private static final class KeyStats {
+        private int players;
+        private long min;
+        private long max;
+        private long sum;
+        // a commit touched the key since it was last summed
+        private boolean stale;
+        private long version;
+
+        synchronized void set(ResultSet rs, int column) throws SQLException {
+            players = rs.getInt(column);
+            min = rs.getLong(column + 1);
+            max = rs.getLong(column + 2);
+            sum = rs.getLong(column + 3);
+        }
+
+        synchronized Summary summary(String key) {
+            return new Summary(key, players, min, max, sum);
+        }
+    }
+
+    public StatKeyCatalog(DataSource readers, StatsDictionary dictionary) {
+        this.readers = readers;
+        this.dictionary = dictionary;
+    }
+
+    /**
+     * sums every key from the totals, replacing whatever the catalog held - on start and after the totals
+     * are rebuilt, both while nothing else writes
+     */
+    public int load(Connection conn) throws SQLException {
+        stats.clear();
+        try (Statement st = conn.createStatement();
+             ResultSet rs = st.executeQuery(
+                 "SELECT stat_id, COUNT(*), MIN(total), MAX(total), SUM(total) FROM player_stat_totals " +
+                 "WHERE total > 0 GROUP BY stat_id")) {
+            while (rs.next()) {
+                KeyStats key = new KeyStats();
+                key.set(rs, 2);
+                stats.put(rs.getInt(1), key);
+            }
+        }
+        return stats.size();
+    }
+
+    /**
+     * keys whose totals a commit changed, marked right after it
+     */
+    void changed(Set<Integer> statIds) {
+        for (int statId : statIds) {
+            KeyStats key = stats.computeIfAbsent(statId, id -> new KeyStats());
+            synchronized (key) {
+                key.stale = true;
+                key.version++;
+            }
+        }
+    }
+
+    /**
+     * the summary of one key, null if it has never been seen
+     */
+    public Summary summary(String statKey) throws SQLException {
+        Integer statId = dictionary.statId(statKey);
+        return statId != null ? summary(statKey, statId) : null;
+    }
+
+    /**
+     * keys starting with `prefix` in key order, at most `limit` of them
+     */
+    public List<Summary> list(String prefix, int limit) throws SQLException {
+        List<Summary> summaries = new ArrayList<>();
+        for (Map.Entry<String, Integer> key : dictionary.statKeys(prefix).entrySet()) {
+            if (summaries.size() >= limit) {
+                break;
+            }
+            summaries.add(summary(key.getKey(), key.getValue()));
+        }
+        return summaries;
+    }
+
+    public int count(String prefix) {
+        return dictionary.statKeys(prefix).size();
+    }
+
+    /**
+     * tab completions for a partly typed key, one namespace segment at a time - "minecraft:" offers
+     * "minecraft:mined:", "minecraft:custom:" and so on rather than thousands of keys. a prefix that
+     * matches nothing falls back to keys containing it
+     */
+    public List<String> complete(String typed, int limit, boolean categories) {
+        String prefix = typed.toLowerCase();
+        List<String> completions = segments(prefix, limit, categories);
+        // nothing to choose between yet - go a segment deeper
+        for (int depth = 0; depth < MAX_DESCENT && completions.size() == 1 && completions.get(0).endsWith(":"); depth++) {
+            completions = segments(completions.get(0), limit, categories);
+        }
+        if (!completions.isEmpty()) {
+            return completions;
+        }
+
+        List<String> matches = new ArrayList<>();
+        for (String key : dictionary.statKeys()) {
+            if (key.contains(prefix) && (categories || !StatsDictionary.isCategory(key))) {
+                matches.add(key);
+                if (matches.size() >= limit) {
+                    break;
+                }
+            }
+        }
+        return matches;
+    }
+
+    // keys under prefix cut after their next ':', so each namespace shows up once
+    private List<String> segments(String prefix, int limit, boolean categories) {
+        Set<String> segments = new LinkedHashSet<>();
+        for (String key : dictionary.statKeys(prefix).keySet()) {
+            if (!categories && StatsDictionary.isCategory(key)) {
+                continue;
+            }
+            int next = key.indexOf(':', prefix.length());
+            segments.add(next < 0 ? key : key.substring(0, next + 1));
+            if (segments.size() >= limit) {
+                break;
+            }
+        }
+        return new ArrayList<>(segments);
+    }
+
+    public JsonObject toJson() {
+        JsonObject json = new JsonObject();
+        json.addProperty("keys", dictionary.statCount());
+        json.addProperty("refreshes", refreshes.get());
+        return json;
+    }
+
+    private Summary summary(String statKey, int statId) throws SQLException {
+        KeyStats key = stats.getOrDefault(statId, EMPTY);
+        long version;
+        synchronized (key) {
+            if (!key.stale) {
+                return key.summary(statKey);
+            }
+            version = key.version;
+        }
+
+        refreshes.incrementAndGet();
+        try (Connection conn = readers.getConnection();
+             PreparedStatement ps = conn.prepareStatement(SUMMARY)) {
+            ps.setInt(1, statId);
+            try (ResultSet rs = ps.executeQuery()) {
+                rs.next();
+                synchronized (key) {
+                    key.set(rs, 1);
+                    // a commit marked after the read started may be missing from it - sum it again next time
+                    if (key.version == version) {
+                        key.stale = false;
+                    }
+                    return key.summary(statKey);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package com.velocityessentials.stats;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * each player's stat summed across every server, kept current by the writer
+ * so leaderboards read a (stat_id, total) index instead of grouping player_stats on every request
+ */
+public class StatTotals {
+    // a committed player_stat_totals value
+    public record Change(int statId, int playerId, long total) {}
+
+    // the writer adds the change in a player_stats row, a deleted row adds minus its old value
+    static final String UPSERT =
+        "INSERT INTO player_stat_totals (stat_id, player_id, total) VALUES (?, ?, ?) " +
+        "ON CONFLICT (stat_id, player_id) DO UPDATE SET total = total + excluded.total";
+
+    static final String SELECT =
+        "SELECT total FROM player_stat_totals WHERE stat_id = ? AND player_id = ?";
+
+    static final String TOP =
+        "SELECT player_id, total FROM player_stat_totals WHERE stat_id = ? ORDER BY total DESC LIMIT ?";
+
+    /**
+     * creates the table, filling it from player_stats the first time so existing databases don't start empty
+     */
+    public boolean createTable(Connection conn) throws SQLException {
+        boolean exists;
+        try (PreparedStatement ps = conn.prepareStatement(
+                "SELECT 1 FROM sqlite_master WHERE type = 'table' AND name = 'player_stat_totals'")) {
+            exists = ps.executeQuery().next();
+        }
+
+        try (Statement st = conn.createStatement()) {
+            st.execute("""
+                CREATE TABLE IF NOT EXISTS player_stat_totals (
+                    stat_id INTEGER NOT NULL,
+                    player_id INTEGER NOT NULL,
+                    total INTEGER NOT NULL,
+                    PRIMARY KEY (stat_id, player_id)
+                ) WITHOUT ROWID
+                """);
+            st.execute("CREATE INDEX IF NOT EXISTS idx_totals_top ON player_stat_totals(stat_id, total DESC)");
+
+            if (exists) {
+                return false;
+            }
+
+            st.execute("""
+                INSERT INTO player_stat_totals (stat_id, player_id, total)
+                SELECT stat_id, player_id, SUM(stat_value) FROM player_stats
+                GROUP BY stat_id, player_id
+                """);
+            return true;
+        }
+    }
+
+    /**
+     * gives every category that has stats an id and sums the totals of the ones that didn't have one yet -
+     * after that the writer keeps them current like any other stat. returns the number of new categories
+     */
+    public int fillCategories(Connection conn, StatsDictionary dictionary) throws SQLException {
+        Set<String> missing = new HashSet<>();
+        for (String statKey : dictionary.statKeys()) {
+            String category = StatsDictionary.category(statKey);
+            if (category != null && dictionary.statId(category) == null) {
+                missing.add(category);
+            }
+        }
+
+        if (missing.isEmpty()) {
+            return 0;
+        }
+
+        dictionary.ensure(conn, missing, List.of(), List.of());
+
+        boolean autoCommit = conn.getAutoCommit();
+        conn.setAutoCommit(false);
+        try {
+            for (String category : missing) {
+                sumCategory(conn, dictionary, category);
+            }
+            conn.commit();
+        } catch (SQLException e) {
+            conn.rollback();
+            throw e;
+        } finally {
+            conn.setAutoCommit(autoCommit);
+        }
+
+        return missing.size();
+    }
+
+    /**
+     * sums every total again from player_stats, for when a shard was committed without the
+     * stats.db commit carrying its totals. runs in the caller's transaction
+     */
+    static void rebuild(Connection conn, StatsDictionary dictionary) throws SQLException {
+        try (Statement st = conn.createStatement()) {
+            st.executeUpdate("DELETE FROM player_stat_totals");
+            st.executeUpdate("""
+                INSERT INTO player_stat_totals (stat_id, player_id, total)
+                SELECT stat_id, player_id, SUM(stat_value) FROM player_stats
+                GROUP BY stat_id, player_id
+                """);
+        }
+
+        for (String statKey : dictionary.statKeys()) {
+            if (StatsDictionary.isCategory(statKey)) {
+                sumCategory(conn, dictionary, statKey);
+            }
+        }
+    }
+
+    private static void sumCategory(Connection conn, StatsDictionary dictionary, String category) throws SQLException {
+        List<Integer> statIds = dictionary.resolve(category);
+        if (statIds.isEmpty()) {
+            return;
+        }
+
+        String placeholders = String.join(",", Collections.nCopies(statIds.size(), "?"));
+        try (PreparedStatement ps = conn.prepareStatement(
+                "INSERT INTO player_stat_totals (stat_id, player_id, total) " +
+                "SELECT ?, player_id, SUM(total) FROM player_stat_totals " +
+                "WHERE stat_id IN (" + placeholders + ") GROUP BY player_id " +
+                "ON CONFLICT (stat_id, player_id) DO UPDATE SET total = excluded.total")) {
+            ps.setInt(1, dictionary.statId(category));
+            for (int i = 0; i < statIds.size(); i++) {
+                ps.setInt(i + 2, statIds.get(i));
+            }
+            ps.executeUpdate();
+        }
+    }
+
+    static long total(PreparedStatement select, int statId, int playerId) throws SQLException {
+        select.setInt(1, statId);
+        select.setInt(2, playerId);
+        try (ResultSet rs = select.executeQuery()) {
+            return rs.next() ? rs.getLong(1) : 0;
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package com.velocityessentials.stats;
+
+import java.util.Arrays;
+
+/**
+ * decoded stats of one file as parallel key/value arrays - no boxed longs, no map entries
+ */
+public class StatValues {
+    private String[] keys;
+    private long[] values;
+    private int size;
+
+    public StatValues() {
+        this(64);
+    }
+
+    public StatValues(int capacity) {
+        keys = new String[capacity];
+        values = new long[capacity];
+    }
+
+    public void add(String key, long value) {
+        if (size == keys.length) {
+            int capacity = keys.length * 2;
+            keys = Arrays.copyOf(keys, capacity);
+            values = Arrays.copyOf(values, capacity);
+        }
+
+        keys[size] = key;
+        values[size] = value;
+        size++;
+    }
+
+    public int size() { return size; }
+    public String key(int index) { return keys[index]; }
+    public long value(int index) { return values[index]; }
+}
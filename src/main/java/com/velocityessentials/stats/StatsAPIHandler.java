@@ -10,7 +10,10 @@ import com.velocityessentials.VelocityEssentials;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.net.InetSocketAddress;
+import java.net.URLDecoder;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.Executors;
 
 public class StatsAPIHandler {
@@ -34,6 +37,12 @@ public class StatsAPIHandler {
         server.createContext("/api/stats/top/", new TopPlayersHandler());
         server.createContext("/api/stats/event/", new EventHandler());
         server.createContext("/api/stats/all", new AllStatsHandler());
+        server.createContext("/api/stats/status", new StatusHandler());
+        server.createContext("/api/stats/history/", new HistoryHandler());
+        server.createContext("/api/stats/total/", new TotalHandler());
+        server.createContext("/api/stats/rank/", new RankHandler());
+        server.createContext("/api/stats/keys", new KeysHandler());
+        server.createContext("/api/stats/advancements", new AdvancementsHandler());
         server.createContext("/health", new HealthHandler());
         
         server.start();
@@ -53,6 +62,51 @@ public class StatsAPIHandler {
         }
     }
     
+    // first value of a query parameter, or null
+    private String queryParam(HttpExchange exchange, String name) {
+        String query = exchange.getRequestURI().getQuery();
+        if (query == null) {
+            return null;
+        }
+        
+        for (String param : query.split("&")) {
+            String[] kv = param.split("=", 2);
+            if (kv[0].equals(name) && kv.length > 1) {
+                return kv[1];
+            }
+        }
+        return null;
+    }
+    
+    // comma separated values of a query parameter, url decoded - empty when it isn't given
+    private List<String> listParam(HttpExchange exchange, String name) {
+        String value = queryParam(exchange, name);
+        List<String> values = new ArrayList<>();
+        if (value == null) {
+            return values;
+        }
+        
+        for (String part : URLDecoder.decode(value, StandardCharsets.UTF_8).split(",")) {
+            if (!part.isBlank()) {
+                values.add(part.trim());
+            }
+        }
+        return values;
+    }
+    
+    private int intParam(HttpExchange exchange, String name, int defaultValue) {
+        String value = queryParam(exchange, name);
+        if (value == null) {
+            return defaultValue;
+        }
+        
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+    
     private boolean checkAuth(HttpExchange exchange) {
         String auth = exchange.getRequestHeaders().getFirst("Authorization");
         return auth != null && auth.equals("Bearer " + apiKey);
@@ -78,7 +132,9 @@ public class StatsAPIHandler {
                 return;
             }
             
-            JsonObject stats = statsSystem.getPlayerStats(username);
+            // ?fields=minecraft:custom:minecraft:jump,...&stat=minecraft:mined:&server=survival&aggregate=true
+            JsonObject stats = statsSystem.getPlayerStats(username, listParam(exchange, "fields"),
+                listParam(exchange, "stat"), listParam(exchange, "server"), "true".equals(queryParam(exchange, "aggregate")));
             sendResponse(exchange, 200, stats);
         }
     }
@@ -110,7 +166,11 @@ public class StatsAPIHandler {
                 }
             }
             
-            JsonObject topPlayers = statsSystem.getTopPlayers(statKey, limit);
+            // ?hours=N ranks by what was gained in that window instead of the all-time value
+            int hours = intParam(exchange, "hours", 0);
+            JsonObject topPlayers = hours > 0 ? 
+                statsSystem.getTopPlayers(statKey, limit, hours) : 
+                statsSystem.getTopPlayers(statKey, limit);
             sendResponse(exchange, 200, topPlayers);
         }
     }
@@ -128,7 +188,15 @@ public class StatsAPIHandler {
             String path = exchange.getRequestURI().getPath();
             String eventName = path.substring("/api/stats/event/".length());
             
-            JsonObject leaderboard = statsSystem.getEventLeaderboard(eventName);
+            // ?player=Name gives that player's live rank instead of the leaderboard
+            String player = queryParam(exchange, "player");
+            if (player != null) {
+                sendResponse(exchange, 200, statsSystem.getEventRank(eventName, player));
+                return;
+            }
+            
+            int limit = Math.max(1, Math.min(1000, intParam(exchange, "limit", 100)));
+            JsonObject leaderboard = statsSystem.getEventLeaderboard(eventName, limit);
             sendResponse(exchange, 200, leaderboard);
         }
     }
@@ -150,6 +218,160 @@ public class StatsAPIHandler {
         }
     }
     
+    class TotalHandler implements HttpHandler {
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            if (!checkAuth(exchange)) {
+                JsonObject error = new JsonObject();
+                error.addProperty("error", "Unauthorized");
+                sendResponse(exchange, 401, error);
+                return;
+            }
+            
+            // /api/stats/total/{username}/{stat-key or pattern}, e.g. minecraft:mined:*
+            String path = exchange.getRequestURI().getPath();
+            String[] parts = path.substring("/api/stats/total/".length()).split("/", 2);
+            
+            if (parts.length < 2 || parts[0].isEmpty() || parts[1].isEmpty()) {
+                JsonObject error = new JsonObject();
+                error.addProperty("error", "Username and stat selector required");
+                sendResponse(exchange, 400, error);
+                return;
+            }
+            
+            JsonObject total = statsSystem.getStatTotal(parts[0], parts[1]);
+            sendResponse(exchange, 200, total);
+        }
+    }
+    
+    class RankHandler implements HttpHandler {
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            if (!checkAuth(exchange)) {
+                JsonObject error = new JsonObject();
+                error.addProperty("error", "Unauthorized");
+                sendResponse(exchange, 401, error);
+                return;
+            }
+            
+            // /api/stats/rank/{username}/{stat-key or category}
+            String path = exchange.getRequestURI().getPath();
+            String[] parts = path.substring("/api/stats/rank/".length()).split("/", 2);
+            
+            if (parts.length < 2 || parts[0].isEmpty() || parts[1].isEmpty()) {
+                JsonObject error = new JsonObject();
+                error.addProperty("error", "Username and stat key required");
+                sendResponse(exchange, 400, error);
+                return;
+            }
+            
+            JsonObject rank = statsSystem.getStatRank(parts[0], parts[1]);
+            sendResponse(exchange, 200, rank);
+        }
+    }
+    
+    class KeysHandler implements HttpHandler {
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            if (!checkAuth(exchange)) {
+                JsonObject error = new JsonObject();
+                error.addProperty("error", "Unauthorized");
+                sendResponse(exchange, 401, error);
+                return;
+            }
+            
+            // /api/stats/keys?prefix=minecraft:mined:&limit=100
+            String prefix = queryParam(exchange, "prefix");
+            int limit = Math.max(1, Math.min(1000, intParam(exchange, "limit", 100)));
+            // encodeURIComponent escapes the colons
+            JsonObject keys = statsSystem.getStatKeys(prefix != null ? URLDecoder.decode(prefix, StandardCharsets.UTF_8) : "", limit);
+            sendResponse(exchange, 200, keys);
+        }
+    }
+    
+    class AdvancementsHandler implements HttpHandler {
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            if (!checkAuth(exchange)) {
+                JsonObject error = new JsonObject();
+                error.addProperty("error", "Unauthorized");
+                sendResponse(exchange, 401, error);
+                return;
+            }
+            
+            String path = exchange.getRequestURI().getPath();
+            int limit = Math.max(1, Math.min(1000, intParam(exchange, "limit", 100)));
+            
+            // /api/stats/advancements/first?key=minecraft:story/enter_the_end&limit=10
+            if (path.equals("/api/stats/advancements/first")) {
+                String key = queryParam(exchange, "key");
+                if (key == null || key.isEmpty()) {
+                    JsonObject error = new JsonObject();
+                    error.addProperty("error", "Advancement key required");
+                    sendResponse(exchange, 400, error);
+                    return;
+                }
+                sendResponse(exchange, 200, statsSystem.getFirstCompleters(URLDecoder.decode(key, StandardCharsets.UTF_8), limit));
+                return;
+            }
+            
+            // /api/stats/advancements/top?limit=10
+            if (path.equals("/api/stats/advancements/top")) {
+                sendResponse(exchange, 200, statsSystem.getAdvancementLeaders(limit));
+                return;
+            }
+            
+            // /api/stats/advancements?prefix=minecraft:nether/&limit=100
+            String prefix = queryParam(exchange, "prefix");
+            JsonObject advancements = statsSystem.getAdvancements(prefix != null ? URLDecoder.decode(prefix, StandardCharsets.UTF_8) : "", limit);
+            sendResponse(exchange, 200, advancements);
+        }
+    }
+    
+    class HistoryHandler implements HttpHandler {
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            if (!checkAuth(exchange)) {
+                JsonObject error = new JsonObject();
+                error.addProperty("error", "Unauthorized");
+                sendResponse(exchange, 401, error);
+                return;
+            }
+            
+            // /api/stats/history/{username}/{stat-key}?hours=168
+            String path = exchange.getRequestURI().getPath();
+            String[] parts = path.substring("/api/stats/history/".length()).split("/", 2);
+            
+            if (parts.length < 2 || parts[0].isEmpty() || parts[1].isEmpty()) {
+                JsonObject error = new JsonObject();
+                error.addProperty("error", "Username and stat key required");
+                sendResponse(exchange, 400, error);
+                return;
+            }
+            
+            int hours = Math.max(1, intParam(exchange, "hours", 168));
+            JsonObject history = statsSystem.getStatHistory(parts[0], parts[1], hours);
+            sendResponse(exchange, 200, history);
+        }
+    }
+    
+    class StatusHandler implements HttpHandler {
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            if (!checkAuth(exchange)) {
+                JsonObject error = new JsonObject();
+                error.addProperty("error", "Unauthorized");
+                sendResponse(exchange, 401, error);
+                return;
+            }
+            
+            // ?trigger=scan|watch&limit=N
+            int limit = Math.max(1, Math.min(50, intParam(exchange, "limit", 10)));
+            JsonObject status = statsSystem.getIngestStatus(queryParam(exchange, "trigger"), limit);
+            sendResponse(exchange, 200, status);
+        }
+    }
+    
     class HealthHandler implements HttpHandler {
         @Override
         public void handle(HttpExchange exchange) throws IOException {
@@ -0,0 +1,328 @@
+package com.velocityessentials.stats;
+
+import com.google.gson.JsonObject;
+import com.velocityessentials.VelocityEssentials;
+import org.sqlite.SQLiteConnection;
+import org.sqlite.SQLiteDataSource;
+import org.sqlite.core.DB;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * online snapshots of stats.db and every shard through sqlite's backup api. one read transaction pins all
+ * the files, so the copy is consistent while the writers keep committing to their wal - nothing waits for it.
+ * pages are copied a step at a time with a pause in between, zipped into backups/ and the oldest pruned.
+ * a restore is unpacked next to the database and swapped in before it opens on the next start
+ */
+public class StatsBackup {
+    private static final String DIRECTORY = "backups";
+    private static final String RESTORE_DIRECTORY = "stats-restore";
+    private static final String DATABASE = "stats.db";
+    private static final String MARKER = "snapshot";
+    private static final String PREFIX = "stats-";
+    private static final String SUFFIX = ".zip";
+    private static final DateTimeFormatter NAME_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd_HH-mm-ss");
+
+    private final VelocityEssentials plugin;
+    private final Path dataDirectory;
+    private final Path directory;
+    private final StatsShards shards;
+    private final SQLiteDataSource source;
+    private final AtomicBoolean running = new AtomicBoolean();
+    // progress of the running backup - the file being copied and its pages
+    private volatile String copying;
+    private volatile int pagesLeft;
+    private volatile int pageCount;
+    private volatile Snapshot last;
+    private volatile String lastError;
+
+    public record Snapshot(String name, int files, long databaseBytes, long archiveBytes,
+                           long copyMillis, long totalMillis, long finishedAt) {}
+
+    public StatsBackup(VelocityEssentials plugin, Path dataDirectory, StatsShards shards) {
+        this.plugin = plugin;
+        this.dataDirectory = dataDirectory;
+        this.directory = dataDirectory.resolve(DIRECTORY);
+        this.shards = shards;
+        this.source = shards.dataSource(dataDirectory.resolve(DATABASE));
+    }
+
+    /**
+     * moves a staged restore into place - has to run before anything opens stats.db or a shard.
+     * returns the snapshot that was restored, null if none was staged
+     */
+    public static String applyStaged(Path dataDirectory) throws IOException {
+        Path staged = dataDirectory.resolve(RESTORE_DIRECTORY);
+        // the marker is written last, once every file in the snapshot has been checked
+        if (!Files.exists(staged.resolve(MARKER))) {
+            return null;
+        }
+
+        String name = Files.readString(staged.resolve(MARKER)).trim();
+
+        // each step can run again if the proxy stops halfway - the marker goes last
+        if (Files.exists(staged.resolve(DATABASE))) {
+            // the wal and shm of the old database would be replayed on top of the restored one
+            for (String suffix : List.of("", "-wal", "-shm")) {
+                Files.deleteIfExists(dataDirectory.resolve(DATABASE + suffix));
+            }
+            Files.move(staged.resolve(DATABASE), dataDirectory.resolve(DATABASE));
+        }
+        if (Files.exists(staged.resolve(StatsShards.DIRECTORY))) {
+            deleteTree(dataDirectory.resolve(StatsShards.DIRECTORY));
+            Files.move(staged.resolve(StatsShards.DIRECTORY), dataDirectory.resolve(StatsShards.DIRECTORY));
+        }
+        deleteTree(staged);
+        return name;
+    }
+
+    /**
+     * takes a snapshot now - null if one is already being taken
+     */
+    public Snapshot run() throws SQLException, IOException {
+        if (!running.compareAndSet(false, true)) {
+            return null;
+        }
+
+        long start = System.currentTimeMillis();
+        String name = PREFIX + LocalDateTime.now().format(NAME_FORMAT);
+        Path partial = directory.resolve(name + ".partial");
+        try {
+            Files.createDirectories(partial);
+            Map<String, Path> copies = copy(partial);
+            long copyMillis = System.currentTimeMillis() - start;
+
+            long databaseBytes = 0;
+            for (Path copy : copies.values()) {
+                databaseBytes += Files.size(copy);
+            }
+
+            // written beside the final name and moved over it, so a listed snapshot is always complete
+            Path archive = directory.resolve(name + SUFFIX);
+            Path writing = directory.resolve(name + SUFFIX + ".partial");
+            try (ZipOutputStream zip = new ZipOutputStream(Files.newOutputStream(writing))) {
+                for (Map.Entry<String, Path> copy : copies.entrySet()) {
+                    zip.putNextEntry(new ZipEntry(copy.getKey()));
+                    Files.copy(copy.getValue(), zip);
+                    zip.closeEntry();
+                }
+            }
+            Files.move(writing, archive, StandardCopyOption.ATOMIC_MOVE);
+
+            Snapshot snapshot = new Snapshot(name + SUFFIX, copies.size(), databaseBytes, Files.size(archive),
+                copyMillis, System.currentTimeMillis() - start, System.currentTimeMillis());
+            last = snapshot;
+            lastError = null;
+            prune();
+            return snapshot;
+
+        } catch (SQLException | IOException e) {
+            lastError = e.getMessage();
+            throw e;
+        } finally {
+            deleteTree(partial);
+            Files.deleteIfExists(directory.resolve(name + SUFFIX + ".partial"));
+            copying = null;
+            running.set(false);
+        }
+    }
+
+    /**
+     * unpacks a snapshot to be swapped in on the next start, after checking every file in it
+     */
+    public void stage(String name) throws SQLException, IOException {
+        if (!list().contains(name)) {
+            throw new IOException("No stats snapshot named " + name);
+        }
+
+        Path staged = dataDirectory.resolve(RESTORE_DIRECTORY);
+        deleteTree(staged);
+        Files.createDirectories(staged.resolve(StatsShards.DIRECTORY));
+
+        try {
+            List<Path> files = new ArrayList<>();
+            try (ZipInputStream zip = new ZipInputStream(Files.newInputStream(directory.resolve(name)))) {
+                ZipEntry entry;
+                while ((entry = zip.getNextEntry()) != null) {
+                    // only the layout this class writes - nothing can land outside the staging directory
+                    String entryName = entry.getName();
+                    boolean shard = entryName.startsWith(StatsShards.DIRECTORY + "/") &&
+                        entryName.indexOf('/', StatsShards.DIRECTORY.length() + 1) < 0 && !entryName.contains("..");
+                    if (!entryName.equals(DATABASE) && !shard) {
+                        throw new IOException("Unexpected file in stats snapshot: " + entryName);
+                    }
+
+                    Path target = staged.resolve(entryName);
+                    Files.copy(zip, target, StandardCopyOption.REPLACE_EXISTING);
+                    files.add(target);
+                }
+            }
+
+            if (!Files.exists(staged.resolve(DATABASE))) {
+                throw new IOException("Stats snapshot " + name + " has no " + DATABASE);
+            }
+            for (Path file : files) {
+                check(file);
+            }
+            Files.writeString(staged.resolve(MARKER), name);
+        } catch (SQLException | IOException e) {
+            deleteTree(staged);
+            throw e;
+        }
+    }
+
+    // snapshot file names, newest first
+    public List<String> list() throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return List.of();
+        }
+
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.map(file -> file.getFileName().toString())
+                .filter(file -> file.startsWith(PREFIX) && file.endsWith(SUFFIX))
+                .sorted(Comparator.reverseOrder())
+                .toList();
+        }
+    }
+
+    public Snapshot getLast() {
+        return last;
+    }
+
+    public boolean isRunning() {
+        return running.get();
+    }
+
+    public JsonObject toJson() {
+        JsonObject json = new JsonObject();
+        json.addProperty("running", running.get());
+        String file = copying;
+        if (file != null) {
+            json.addProperty("copying", file);
+            int count = pageCount;
+            json.addProperty("percent", count > 0 ? 100 * (count - pagesLeft) / count : 0);
+        }
+
+        Snapshot snapshot = last;
+        if (snapshot != null) {
+            JsonObject lastJson = new JsonObject();
+            lastJson.addProperty("name", snapshot.name());
+            lastJson.addProperty("files", snapshot.files());
+            lastJson.addProperty("database_bytes", snapshot.databaseBytes());
+            lastJson.addProperty("archive_bytes", snapshot.archiveBytes());
+            lastJson.addProperty("copy_ms", snapshot.copyMillis());
+            lastJson.addProperty("total_ms", snapshot.totalMillis());
+            lastJson.addProperty("finished_at", snapshot.finishedAt());
+            json.add("last", lastJson);
+        }
+        if (lastError != null) {
+            json.addProperty("error", lastError);
+        }
+        return json;
+    }
+
+    // backs every attached file up into the target directory, zip entry name -> copy
+    private Map<String, Path> copy(Path target) throws SQLException {
+        Map<String, String> schemas = new LinkedHashMap<>();
+        schemas.put("main", DATABASE);
+        for (Map.Entry<String, Path> shard : shards.getSchemas().entrySet()) {
+            schemas.put(shard.getKey(), StatsShards.DIRECTORY + "/" + shard.getValue().getFileName());
+        }
+
+        int pagesPerStep = Math.max(1, plugin.getConfig().getStatsBackupPagesPerStep());
+        int pause = Math.max(0, plugin.getConfig().getStatsBackupStepPauseMs());
+        DB.ProgressObserver observer = (remaining, pages) -> {
+            pagesLeft = remaining;
+            pageCount = pages;
+            if (pause > 0 && remaining > 0) {
+                try {
+                    Thread.sleep(pause);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        };
+
+        Map<String, Path> copies = new LinkedHashMap<>();
+        try (Connection conn = source.getConnection()) {
+            // reading each schema starts its read transaction - every step copies from that one snapshot
+            conn.setAutoCommit(false);
+            try (Statement st = conn.createStatement()) {
+                for (String schema : schemas.keySet()) {
+                    st.executeQuery("SELECT COUNT(*) FROM " + schema + ".sqlite_master").close();
+                }
+            }
+
+            for (Map.Entry<String, String> schema : schemas.entrySet()) {
+                Path copy = target.resolve(schema.getKey() + ".db");
+                copying = schema.getValue();
+                pagesLeft = 0;
+                pageCount = 0;
+
+                int rc = conn.unwrap(SQLiteConnection.class).getDatabase().backup(schema.getKey(), copy.toString(), observer, 100, 50, pagesPerStep);
+                if (rc != 0) {
+                    throw new SQLException("Backup of " + schema.getValue() + " failed with sqlite error " + rc);
+                }
+                copies.put(schema.getValue(), copy);
+            }
+
+            conn.rollback();
+        }
+        return copies;
+    }
+
+    private void prune() throws IOException {
+        int keep = plugin.getConfig().getStatsBackupKeep();
+        if (keep <= 0) {
+            return;
+        }
+
+        List<String> snapshots = list();
+        for (String old : snapshots.subList(Math.min(keep, snapshots.size()), snapshots.size())) {
+            Files.deleteIfExists(directory.resolve(old));
+        }
+    }
+
+    private static void check(Path file) throws SQLException {
+        try (Connection conn = DriverManager.getConnection("jdbc:sqlite:" + file.toAbsolutePath());
+             Statement st = conn.createStatement();
+             ResultSet rs = st.executeQuery("PRAGMA quick_check")) {
+            String result = rs.next() ? rs.getString(1) : null;
+            if (!"ok".equals(result)) {
+                throw new SQLException(file.getFileName() + " failed its integrity check: " + result);
+            }
+        }
+    }
+
+    private static void deleteTree(Path root) throws IOException {
+        if (!Files.exists(root)) {
+            return;
+        }
+
+        try (Stream<Path> paths = Files.walk(root)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(path);
+            }
+        }
+    }
+}
@@ -0,0 +1,423 @@
+package com.velocityessentials.stats;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * allocation-light decoder for vanilla stat files
+ * scans the utf-8 bytes directly and resolves every "category:key" to a pooled string without
+ * building a JsonObject tree, a char copy of the file, or even the name strings themselves.
+ * anything unusual (escapes, fractions, odd nesting) falls back to a streaming JsonReader
+ */
+public class StatsDecoder {
+    // "category:key" strings shared by every parser thread
+    private final Map<String, String> keyPool = new ConcurrentHashMap<>();
+    private final ThreadLocal<Scanner> scanners = ThreadLocal.withInitial(Scanner::new);
+
+    public interface StatSink {
+        void accept(String statKey, long value);
+    }
+
+    /**
+     * decodes the "stats" object of a stat file
+     * returns null if the file has no stats section
+     */
+    public StatValues decode(byte[] content) throws IOException {
+        // an entry is never shorter than ~24 bytes ("minecraft:x":1,) so this is sized once for the whole file
+        StatValues values = new StatValues(Math.max(16, content.length / 24));
+
+        Scanner scanner = scanners.get();
+        try {
+            return scanner.scan(content, values) ? values : null;
+        } catch (FallbackException e) {
+            values = new StatValues();
+            return decodeStreaming(content, values::add) ? values : null;
+        }
+    }
+
+    /**
+     * token-by-token fallback - still no tree, but goes through a reader and allocates the names
+     */
+    public boolean decodeStreaming(byte[] content, StatSink sink) throws IOException {
+        try (JsonReader reader = new JsonReader(
+                new InputStreamReader(new ByteArrayInputStream(content), StandardCharsets.UTF_8))) {
+
+            if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+                return false;
+            }
+
+            boolean found = false;
+            reader.beginObject();
+            while (reader.hasNext()) {
+                if (reader.nextName().equals("stats") && reader.peek() == JsonToken.BEGIN_OBJECT) {
+                    reader.beginObject();
+                    while (reader.hasNext()) {
+                        String category = reader.nextName();
+                        if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+                            reader.skipValue();
+                            continue;
+                        }
+
+                        reader.beginObject();
+                        while (reader.hasNext()) {
+                            String statKey = pooled(category + ":" + reader.nextName());
+                            if (reader.peek() == JsonToken.NUMBER) {
+                                sink.accept(statKey, reader.nextLong());
+                            } else {
+                                reader.skipValue();
+                            }
+                        }
+                        reader.endObject();
+                    }
+                    reader.endObject();
+                    found = true;
+                } else {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+
+            return found;
+        }
+    }
+
+    public int pooledKeys() {
+        return keyPool.size();
+    }
+
+    private String pooled(String statKey) {
+        String existing = keyPool.putIfAbsent(statKey, statKey);
+        return existing != null ? existing : statKey;
+    }
+
+    // thrown (without a stack trace) whenever the byte scanner sees something it doesn't handle
+    private static final class FallbackException extends RuntimeException {
+        static final FallbackException INSTANCE = new FallbackException();
+
+        private FallbackException() {
+            super(null, null, false, false);
+        }
+    }
+
+    /**
+     * per-thread byte scanner - its lookup tables map raw name bytes straight to pooled strings
+     */
+    private final class Scanner {
+        private final ByteTable<Category> categories = new ByteTable<>();
+        private byte[] buf;
+        private int pos;
+        private int nameStart;
+        private int nameEnd;
+        private int nameHash;
+
+        boolean scan(byte[] content, StatValues values) {
+            buf = content;
+            pos = 0;
+
+            try {
+                skipWhitespace();
+                expect('{');
+                skipWhitespace();
+
+                boolean found = false;
+                if (peek() == '}') {
+                    return false;
+                }
+
+                while (true) {
+                    readName();
+                    skipWhitespace();
+                    expect(':');
+                    skipWhitespace();
+
+                    if (nameIs("stats") && peek() == '{') {
+                        readStats(values);
+                        found = true;
+                    } else {
+                        skipValue();
+                    }
+
+                    skipWhitespace();
+                    if (peek() == ',') {
+                        pos++;
+                        skipWhitespace();
+                        continue;
+                    }
+                    expect('}');
+                    return found;
+                }
+            } catch (ArrayIndexOutOfBoundsException e) {
+                throw FallbackException.INSTANCE;
+            } finally {
+                buf = null;
+            }
+        }
+
+        private void readStats(StatValues values) {
+            expect('{');
+            skipWhitespace();
+            if (peek() == '}') {
+                pos++;
+                return;
+            }
+
+            while (true) {
+                readName();
+                Category category = categories.get(buf, nameStart, nameEnd, nameHash);
+                if (category == null) {
+                    String name = new String(buf, nameStart, nameEnd - nameStart, StandardCharsets.UTF_8);
+                    category = new Category(name);
+                    categories.put(Arrays.copyOfRange(buf, nameStart, nameEnd), nameHash, category);
+                }
+
+                skipWhitespace();
+                expect(':');
+                skipWhitespace();
+
+                if (peek() == '{') {
+                    readCategory(category, values);
+                } else {
+                    skipValue();
+                }
+
+                skipWhitespace();
+                if (peek() == ',') {
+                    pos++;
+                    skipWhitespace();
+                    continue;
+                }
+                expect('}');
+                return;
+            }
+        }
+
+        private void readCategory(Category category, StatValues values) {
+            expect('{');
+            skipWhitespace();
+            if (peek() == '}') {
+                pos++;
+                return;
+            }
+
+            while (true) {
+                readName();
+                String statKey = category.keys.get(buf, nameStart, nameEnd, nameHash);
+                if (statKey == null) {
+                    String name = new String(buf, nameStart, nameEnd - nameStart, StandardCharsets.UTF_8);
+                    statKey = pooled(category.name + ":" + name);
+                    category.keys.put(Arrays.copyOfRange(buf, nameStart, nameEnd), nameHash, statKey);
+                }
+
+                skipWhitespace();
+                expect(':');
+                skipWhitespace();
+                values.add(statKey, readLong());
+
+                skipWhitespace();
+                if (peek() == ',') {
+                    pos++;
+                    skipWhitespace();
+                    continue;
+                }
+                expect('}');
+                return;
+            }
+        }
+
+        // leaves the name's byte range and hash in nameStart/nameEnd/nameHash
+        private void readName() {
+            expect('"');
+            nameStart = pos;
+            int hash = 0;
+
+            while (true) {
+                byte b = buf[pos];
+                if (b == '"') {
+                    break;
+                }
+                if (b == '\\') {
+                    throw FallbackException.INSTANCE;
+                }
+                hash = 31 * hash + b;
+                pos++;
+            }
+
+            nameEnd = pos;
+            nameHash = hash;
+            pos++;
+        }
+
+        private long readLong() {
+            boolean negative = false;
+            if (peek() == '-') {
+                negative = true;
+                pos++;
+            }
+
+            int start = pos;
+            long value = 0;
+            while (pos < buf.length && buf[pos] >= '0' && buf[pos] <= '9') {
+                value = value * 10 + (buf[pos] - '0');
+                pos++;
+            }
+
+            // fractions, exponents, overlong numbers and non-numbers go to the slow path
+            if (pos == start || pos - start > 18 || (pos < buf.length && (buf[pos] == '.' || buf[pos] == 'e' || buf[pos] == 'E'))) {
+                throw FallbackException.INSTANCE;
+            }
+
+            return negative ? -value : value;
+        }
+
+        private void skipValue() {
+            byte b = peek();
+
+            if (b == '"') {
+                pos++;
+                while (buf[pos] != '"') {
+                    if (buf[pos] == '\\') {
+                        pos++;
+                    }
+                    pos++;
+                }
+                pos++;
+                return;
+            }
+
+            if (b == '{' || b == '[') {
+                int depth = 0;
+                do {
+                    byte c = buf[pos];
+                    if (c == '"') {
+                        skipValue();
+                        continue;
+                    }
+                    if (c == '{' || c == '[') {
+                        depth++;
+                    } else if (c == '}' || c == ']') {
+                        depth--;
+                    }
+                    pos++;
+                } while (depth > 0);
+                return;
+            }
+
+            // number or literal
+            while (pos < buf.length) {
+                byte c = buf[pos];
+                if (c == ',' || c == '}' || c == ']' || c == ' ' || c == '\n' || c == '\r' || c == '\t') {
+                    return;
+                }
+                pos++;
+            }
+        }
+
+        private boolean nameIs(String name) {
+            int length = nameEnd - nameStart;
+            if (length != name.length()) {
+                return false;
+            }
+            for (int i = 0; i < length; i++) {
+                if (buf[nameStart + i] != name.charAt(i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private void skipWhitespace() {
+            while (pos < buf.length) {
+                byte b = buf[pos];
+                if (b != ' ' && b != '\n' && b != '\r' && b != '\t') {
+                    return;
+                }
+                pos++;
+            }
+        }
+
+        private byte peek() {
+            return buf[pos];
+        }
+
+        private void expect(char c) {
+            if (buf[pos] != c) {
+                throw FallbackException.INSTANCE;
+            }
+            pos++;
+        }
+    }
+
+    private static final class Category {
+        final String name;
+        final ByteTable<String> keys = new ByteTable<>();
+
+        Category(String name) {
+            this.name = name;
+        }
+    }
+
+    /**
+     * open-addressing table keyed on raw bytes, so lookups never allocate
+     */
+    private static final class ByteTable<V> {
+        private byte[][] keys = new byte[64][];
+        private int[] hashes = new int[64];
+        private Object[] values = new Object[64];
+        private int size;
+
+        @SuppressWarnings("unchecked")
+        V get(byte[] buf, int from, int to, int hash) {
+            int mask = keys.length - 1;
+            for (int i = hash & mask; keys[i] != null; i = (i + 1) & mask) {
+                if (hashes[i] == hash && Arrays.equals(keys[i], 0, keys[i].length, buf, from, to)) {
+                    return (V) values[i];
+                }
+            }
+            return null;
+        }
+
+        void put(byte[] key, int hash, V value) {
+            if ((size + 1) * 2 > keys.length) {
+                resize();
+            }
+
+            int mask = keys.length - 1;
+            int i = hash & mask;
+            while (keys[i] != null) {
+                i = (i + 1) & mask;
+            }
+
+            keys[i] = key;
+            hashes[i] = hash;
+            values[i] = value;
+            size++;
+        }
+
+        private void resize() {
+            byte[][] oldKeys = keys;
+            int[] oldHashes = hashes;
+            Object[] oldValues = values;
+
+            keys = new byte[oldKeys.length * 2][];
+            hashes = new int[oldKeys.length * 2];
+            values = new Object[oldKeys.length * 2];
+            size = 0;
+
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != null) {
+                    @SuppressWarnings("unchecked")
+                    V value = (V) oldValues[i];
+                    put(oldKeys[i], oldHashes[i], value);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,216 @@
+package com.velocityessentials.stats;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.regex.Pattern;
+
+/**
+ * in-memory mirror of the stat_keys, servers and players dictionaries
+ * player_stats only stores the small integer ids, this maps them back and forth
+ */
+public class StatsDictionary {
+    private final Map<String, Integer> statIds = new ConcurrentHashMap<>();
+    private final Map<String, Integer> serverIds = new ConcurrentHashMap<>();
+    private final Map<String, Integer> playerIds = new ConcurrentHashMap<>();
+    // the same stat keys in order, so a prefix is a contiguous range
+    private final NavigableMap<String, Integer> sortedStats = new ConcurrentSkipListMap<>();
+    // stat id -> id of its category key, for stats that belong to one
+    private final Map<Integer, Integer> categoryIds = new ConcurrentHashMap<>();
+
+    public void load(Connection conn) throws SQLException {
+        load(conn, "SELECT id, key FROM stat_keys", statIds);
+        load(conn, "SELECT id, name FROM servers", serverIds);
+        load(conn, "SELECT id, uuid FROM players", playerIds);
+
+        sortedStats.clear();
+        categoryIds.clear();
+        publishStats(statIds);
+    }
+
+    private void load(Connection conn, String sql, Map<String, Integer> target) throws SQLException {
+        target.clear();
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            ResultSet rs = ps.executeQuery();
+            while (rs.next()) {
+                target.put(rs.getString(2), rs.getInt(1));
+            }
+        }
+    }
+
+    // lookups return null when the value has never been stored
+    public Integer statId(String statKey) { return statIds.get(statKey); }
+    public Integer serverId(String serverName) { return serverIds.get(serverName); }
+    public Integer playerId(String uuid) { return playerIds.get(uuid); }
+
+    public Integer categoryId(int statId) { return categoryIds.get(statId); }
+    public Collection<String> statKeys() { return sortedStats.keySet(); }
+    // every key starting with prefix, in order
+    public NavigableMap<String, Integer> statKeys(String prefix) {
+        return sortedStats.subMap(prefix, true, prefix + Character.MAX_VALUE, false);
+    }
+
+    public int statCount() { return statIds.size(); }
+    public int playerCount() { return playerIds.size(); }
+
+    /**
+     * makes sure every given stat key, server and player has an id, inserting the missing ones
+     * runs in its own transaction and only publishes the new ids once it has committed,
+     * so it must not be called while the connection is inside another transaction
+     */
+    public void ensure(Connection conn, Collection<String> statKeys, Collection<String> serverNames,
+                       Collection<String> uuids) throws SQLException {
+        Map<String, Integer> newStats = new HashMap<>();
+        Map<String, Integer> newServers = new HashMap<>();
+        Map<String, Integer> newPlayers = new HashMap<>();
+
+        boolean autoCommit = conn.getAutoCommit();
+        conn.setAutoCommit(false);
+        try {
+            ensure(conn, statKeys, statIds, newStats,
+                "INSERT OR IGNORE INTO stat_keys (key) VALUES (?)", "SELECT id FROM stat_keys WHERE key = ?");
+            ensure(conn, serverNames, serverIds, newServers,
+                "INSERT OR IGNORE INTO servers (name) VALUES (?)", "SELECT id FROM servers WHERE name = ?");
+            ensure(conn, uuids, playerIds, newPlayers,
+                "INSERT OR IGNORE INTO players (uuid) VALUES (?)", "SELECT id FROM players WHERE uuid = ?");
+            conn.commit();
+        } catch (SQLException e) {
+            conn.rollback();
+            throw e;
+        } finally {
+            conn.setAutoCommit(autoCommit);
+        }
+
+        statIds.putAll(newStats);
+        serverIds.putAll(newServers);
+        playerIds.putAll(newPlayers);
+        publishStats(newStats);
+    }
+
+    private void publishStats(Map<String, Integer> stats) {
+        sortedStats.putAll(stats);
+        // a category can arrive in the same batch as its first stat, so link after every id is known
+        for (Map.Entry<String, Integer> stat : stats.entrySet()) {
+            String category = category(stat.getKey());
+            Integer categoryId = category != null ? statIds.get(category) : null;
+            if (categoryId != null) {
+                categoryIds.put(stat.getValue(), categoryId);
+            }
+        }
+        for (Map.Entry<String, Integer> stat : stats.entrySet()) {
+            if (isCategory(stat.getKey())) {
+                linkCategory(stat.getKey(), stat.getValue());
+            }
+        }
+    }
+
+    private void linkCategory(String categoryKey, int categoryId) {
+        for (int statId : resolve(categoryKey)) {
+            categoryIds.put(statId, categoryId);
+        }
+    }
+
+    /**
+     * the category key a stat is summed into - "minecraft:mined:minecraft:stone" belongs to "minecraft:mined:*".
+     * minecraft:custom mixes centimetres, ticks and counts so it gets no category
+     */
+    public static String category(String statKey) {
+        if (isCategory(statKey)) {
+            return null;
+        }
+
+        int first = statKey.indexOf(':');
+        int second = first < 0 ? -1 : statKey.indexOf(':', first + 1);
+        if (second < 0) {
+            return null;
+        }
+
+        String type = statKey.substring(0, second);
+        return type.equals("minecraft:custom") ? null : type + ":*";
+    }
+
+    // category keys hold pre-summed totals, they never have rows in player_stats
+    public static boolean isCategory(String statKey) {
+        return statKey.endsWith(":*");
+    }
+
+    /**
+     * stat ids matching a selector - a plain key, or a pattern where * matches anything
+     * ("minecraft:mined:*", "minecraft:custom:minecraft:*_one_cm"). the part before the first *
+     * narrows the sorted keys to a range, only that range is matched against the rest.
+     * category keys are left out so nothing is counted twice
+     */
+    public List<Integer> resolve(String selector) {
+        List<Integer> ids = new ArrayList<>();
+        int wildcard = selector.indexOf('*');
+        if (wildcard < 0) {
+            Integer id = statIds.get(selector);
+            if (id != null) {
+                ids.add(id);
+            }
+            return ids;
+        }
+
+        String prefix = selector.substring(0, wildcard);
+        Pattern pattern = wildcard == selector.length() - 1 ? null : glob(selector);
+
+        for (Map.Entry<String, Integer> stat : statKeys(prefix).entrySet()) {
+            String key = stat.getKey();
+            if (!isCategory(key) && (pattern == null || pattern.matcher(key).matches())) {
+                ids.add(stat.getValue());
+            }
+        }
+        return ids;
+    }
+
+    private static Pattern glob(String selector) {
+        List<String> parts = new ArrayList<>();
+        for (String part : selector.split("\\*", -1)) {
+            parts.add(Pattern.quote(part));
+        }
+        return Pattern.compile(String.join(".*", parts));
+    }
+
+    private void ensure(Connection conn, Collection<String> values, Map<String, Integer> cache,
+                        Map<String, Integer> created, String insertSql, String selectSql) throws SQLException {
+        PreparedStatement insert = null;
+        PreparedStatement select = null;
+
+        try {
+            for (String value : values) {
+                if (cache.containsKey(value) || created.containsKey(value)) {
+                    continue;
+                }
+
+                if (insert == null) {
+                    insert = conn.prepareStatement(insertSql);
+                    select = conn.prepareStatement(selectSql);
+                }
+
+                insert.setString(1, value);
+                insert.executeUpdate();
+
+                select.setString(1, value);
+                try (ResultSet rs = select.executeQuery()) {
+                    if (rs.next()) {
+                        created.put(value, rs.getInt(1));
+                    }
+                }
+            }
+        } finally {
+            if (insert != null) {
+                insert.close();
+                select.close();
+            }
+        }
+    }
+}
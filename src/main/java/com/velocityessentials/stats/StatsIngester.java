@@ -0,0 +1,1164 @@
+package com.velocityessentials.stats;
+
+import com.velocityessentials.VelocityEssentials;
+import com.zaxxer.hikari.HikariDataSource;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+
+/**
+ * staged stats ingestion pipeline
+ * a bounded pool of parser workers reads and decodes stat files from every server in parallel,
+ * a writer thread per storage file (stats.db, plus one per shard) drains the decoded files into sqlite in large transactions
+ */
+public class StatsIngester {
+    // what decode() returns for a well-formed stat file without a stats section
+    private static final StatValues NO_STATS = new StatValues(0);
+
+    private final VelocityEssentials plugin;
+    private final StatsSystem statsSystem;
+    private final HikariDataSource dataSource;
+    private final StatsShards shards;
+    private final IngestManifest manifest;
+    private final StatsDictionary dictionary;
+    private final EventLeaderboards leaderboards;
+    private final TopPlayersCache topPlayers;
+    private final StatColumns columns;
+    private final StatKeyCatalog catalog;
+    private final StatAdvancements advancements;
+    // server -> its advancements folder, files listed there are advancement files
+    private final Map<String, Path> advancementPaths;
+    private final StatsDecoder decoder = new StatsDecoder();
+    private final IngestMetrics metrics = new IngestMetrics();
+    private final IngestGovernor governor;
+    private final boolean historyEnabled;
+
+    private final ExecutorService parsers;
+    private final Semaphore parseSlots;
+    private final int parseSlotCount;
+    private final Lane mainLane;
+    private final Map<String, Lane> shardLanes = new HashMap<>();
+    // writers share it for a whole batch (shard rows and their aggregates) - rebuilding the totals
+    // and starting events take it alone, so they never see rows whose aggregates aren't committed yet
+    private final ReentrantReadWriteLock totalsLock = new ReentrantReadWriteLock();
+    // held from a stats.db commit until its changes reach the caches
+    private final ReentrantLock aggregateLock = new ReentrantLock();
+    private volatile boolean totalsStale;
+    private final int batchFiles;
+    private final long batchBytes;
+    private final long batchMaxLatencyNanos;
+    private volatile boolean running = true;
+
+    enum FileKind {
+        STATS,
+        // stats holds advancement key -> completion time, always written to stats.db
+        ADVANCEMENTS;
+
+        // both files of a player share the server's manifest, advancements under their own key
+        String manifestKey(String uuid) {
+            return this == ADVANCEMENTS ? "advancements/" + uuid : uuid;
+        }
+    }
+
+    // a decoded stat file waiting for the writer - stats == null means only the manifest needs updating,
+    // manifestEntry == null means a backend pushed the values: only those keys are written, nothing is deleted
+    record ParsedFile(IngestCycle cycle, FileKind kind, String serverName, String uuid, String username,
+                      long lastModified, StatValues stats, IngestManifest.Entry manifestEntry, long startNanos) {
+
+        boolean pushed() {
+            return manifestEntry == null;
+        }
+
+        // what counts towards batch-bytes - a pushed value is about as big as its line in a file
+        long bytes() {
+            return pushed() ? stats.size() * 48L : manifestEntry.size();
+        }
+    }
+
+    // one writer thread and its queue - rows == null writes player_stats to stats.db itself
+    private final class Lane {
+        final String name;
+        final HikariDataSource rows;
+        final BlockingQueue<ParsedFile> queue;
+        final Thread thread;
+
+        Lane(String name, HikariDataSource rows, String threadName) {
+            this.name = name;
+            this.rows = rows;
+            // parsers block once the writer falls this far behind
+            this.queue = new ArrayBlockingQueue<>(Math.max(1, plugin.getConfig().getStatsIngestQueueSize()));
+            this.thread = new Thread(() -> writeLoop(this), threadName);
+            this.thread.setDaemon(true);
+        }
+    }
+
+    public StatsIngester(VelocityEssentials plugin, StatsSystem statsSystem,
+                         HikariDataSource dataSource, StatsShards shards, IngestManifest manifest, StatsDictionary dictionary,
+                         EventLeaderboards leaderboards, TopPlayersCache topPlayers, StatColumns columns,
+                         StatKeyCatalog catalog, StatAdvancements advancements, Map<String, Path> advancementPaths) {
+        this.plugin = plugin;
+        this.statsSystem = statsSystem;
+        this.dataSource = dataSource;
+        this.shards = shards;
+        this.manifest = manifest;
+        this.dictionary = dictionary;
+        this.leaderboards = leaderboards;
+        this.topPlayers = topPlayers;
+        this.columns = columns;
+        this.catalog = catalog;
+        this.advancements = advancements;
+        this.advancementPaths = advancementPaths;
+        this.governor = new IngestGovernor(plugin.getConfig());
+
+        int parserThreads = plugin.getConfig().getStatsParserThreads();
+        if (parserThreads <= 0) {
+            parserThreads = Runtime.getRuntime().availableProcessors();
+        }
+
+        this.parsers = Executors.newFixedThreadPool(parserThreads, namedThreads("VE-Stats-Parser"));
+        // listing blocks once every parser has a couple of files in hand
+        this.parseSlotCount = parserThreads * 2;
+        this.parseSlots = new Semaphore(parseSlotCount);
+
+        this.historyEnabled = plugin.getConfig().isStatsHistoryEnabled();
+        this.batchFiles = Math.max(1, plugin.getConfig().getStatsBatchFiles());
+        this.batchBytes = Math.max(1, plugin.getConfig().getStatsBatchBytes());
+        this.batchMaxLatencyNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, plugin.getConfig().getStatsBatchMaxLatencyMs()));
+
+        this.mainLane = new Lane("stats.db", null, "VE-Stats-Writer");
+        for (String server : shards.getServers()) {
+            shardLanes.put(server, new Lane(server, shards.getWriter(server), "VE-Stats-Writer-" + server));
+        }
+        mainLane.thread.start();
+        shardLanes.values().forEach(lane -> lane.thread.start());
+
+        plugin.getLogger().info("Stats ingester started with " + parserThreads + " parser threads" +
+            (shardLanes.isEmpty() ? "" : " and " + shardLanes.size() + " shard writers"));
+    }
+
+    /**
+     * lists every configured stats directory, feeds the files through the pipeline
+     * and blocks until the writer has committed all of them. with spreadMillis > 0 the reads
+     * are paced so that reading every listed file would take about that long
+     */
+    public IngestCycle runCycle(Map<String, Path> serverStatsPaths, long spreadMillis) throws InterruptedException {
+        IngestCycle cycle = new IngestCycle();
+        long mojangLookups = statsSystem.getMojangLookups();
+        Map<String, List<Path>> listed = new LinkedHashMap<>();
+
+        for (Map.Entry<String, Path> entry : serverStatsPaths.entrySet()) {
+            String serverName = entry.getKey();
+            Path statsPath = entry.getValue();
+
+            if (!Files.exists(statsPath)) {
+                plugin.getLogger().warn("Stats path not found for " + serverName + ": " + statsPath);
+                continue;
+            }
+            list(cycle, serverName, statsPath, listed);
+        }
+        // a missing advancements folder only means the world has none yet
+        for (Map.Entry<String, Path> entry : advancementPaths.entrySet()) {
+            if (Files.isDirectory(entry.getValue())) {
+                list(cycle, entry.getKey(), entry.getValue(), listed);
+            }
+        }
+
+        // servers are read one after another, so each gets the pace of the whole scan
+        int total = listed.values().stream().mapToInt(List::size).sum();
+        try {
+            for (Map.Entry<String, List<Path>> entry : listed.entrySet()) {
+                governor.spread(entry.getKey(), total, spreadMillis);
+                for (Path statFile : entry.getValue()) {
+                    submit(cycle, entry.getKey(), statFile);
+                }
+            }
+            cycle.await();
+            return record(cycle, "scan", mojangLookups);
+        } finally {
+            listed.keySet().forEach(serverName -> governor.spread(serverName, 0, 0));
+        }
+    }
+
+    private void list(IngestCycle cycle, String serverName, Path directory, Map<String, List<Path>> listed) {
+        long listStart = System.nanoTime();
+        try (Stream<Path> files = Files.list(directory)) {
+            listed.computeIfAbsent(serverName, k -> new ArrayList<>()).addAll(files
+                .filter(p -> p.toString().endsWith(".json"))
+                .toList());
+            cycle.listed(serverName, System.nanoTime() - listStart);
+
+        } catch (IOException e) {
+            plugin.getLogger().error("Failed to read stats directory for " + serverName + ": " + directory, e);
+        }
+    }
+
+    /**
+     * feeds an explicit set of files (server -> files) through the pipeline and blocks until they are written
+     */
+    public IngestCycle ingestFiles(Map<String, ? extends Collection<Path>> filesByServer) throws InterruptedException {
+        IngestCycle cycle = new IngestCycle();
+        long mojangLookups = statsSystem.getMojangLookups();
+
+        for (Map.Entry<String, ? extends Collection<Path>> entry : filesByServer.entrySet()) {
+            for (Path statFile : entry.getValue()) {
+                submit(cycle, entry.getKey(), statFile);
+            }
+        }
+
+        cycle.await();
+        return record(cycle, "watch", mojangLookups);
+    }
+
+    /**
+     * values a backend pushed for one player, queued like a file that only holds those keys.
+     * blocks while the server's writer is backed up
+     */
+    void push(IngestCycle cycle, String serverName, String uuid, String username, StatValues stats, long bytes)
+            throws InterruptedException {
+        cycle.register(serverName);
+        cycle.read(serverName, bytes, 0, 0);
+        laneFor(serverName).queue.put(new ParsedFile(cycle, FileKind.STATS, serverName, uuid, username,
+            System.currentTimeMillis() / 1000, stats, null, System.nanoTime()));
+    }
+
+    // a window of pushes, recorded once everything in it is written
+    void recordPushes(IngestCycle cycle) throws InterruptedException {
+        cycle.await();
+        record(cycle, "push", statsSystem.getMojangLookups());
+    }
+
+    public IngestMetrics getMetrics() {
+        return metrics;
+    }
+
+    public IngestGovernor getGovernor() {
+        return governor;
+    }
+
+    private IngestCycle record(IngestCycle cycle, String trigger, long mojangLookups) {
+        for (String serverName : cycle.getServers().keySet()) {
+            cycle.limits(serverName, governor.limits(serverName));
+        }
+        metrics.record(cycle, trigger, statsSystem.getMojangLookups() - mojangLookups);
+        return cycle;
+    }
+
+    private void submit(IngestCycle cycle, String serverName, Path statFile) throws InterruptedException {
+        String uuidString = statFile.getFileName().toString().replace(".json", "");
+
+        // Validate UUID format
+        try {
+            UUID.fromString(uuidString);
+        } catch (IllegalArgumentException e) {
+            return;
+        }
+
+        Path advancementPath = advancementPaths.get(serverName);
+        FileKind kind = advancementPath != null && advancementPath.equals(statFile.getParent()) ?
+            FileKind.ADVANCEMENTS : FileKind.STATS;
+
+        cycle.register(serverName);
+        parseSlots.acquire();
+
+        try {
+            parsers.execute(() -> {
+                try {
+                    parse(cycle, kind, serverName, uuidString, statFile);
+                } finally {
+                    parseSlots.release();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            parseSlots.release();
+            cycle.failed(serverName);
+        }
+    }
+
+    private void parse(IngestCycle cycle, FileKind kind, String serverName, String uuidString, Path statFile) {
+        long startNanos = System.nanoTime();
+        String manifestKey = kind.manifestKey(uuidString);
+        // advancements aren't sharded - they live in stats.db with the other per-player aggregates
+        Lane lane = kind == FileKind.ADVANCEMENTS ? mainLane : laneFor(serverName);
+        try {
+            BasicFileAttributes attrs = Files.readAttributes(statFile, BasicFileAttributes.class);
+            long mtime = attrs.lastModifiedTime().toMillis();
+
+            // Same mtime and size as last ingest - don't even open the file
+            if (manifest.isUnchanged(serverName, manifestKey, mtime, attrs.size())) {
+                cycle.skipped(serverName);
+                return;
+            }
+
+            // waits here while the server is over its read budget
+            long waitStart = System.nanoTime();
+            if (governor.acquire(serverName, attrs.size()) > 0) {
+                cycle.throttled(serverName, System.nanoTime() - waitStart);
+            }
+            long readStart = System.nanoTime();
+            byte[] content = Files.readAllBytes(statFile);
+            governor.record(serverName, System.nanoTime() - readStart);
+            long readNanos = System.nanoTime() - startNanos - (readStart - waitStart);
+            IngestManifest.Entry manifestEntry = new IngestManifest.Entry(mtime, content.length, IngestManifest.hash(content));
+
+            // Touched but identical - the writer just remembers the new mtime
+            if (manifest.hasSameContent(serverName, manifestKey, manifestEntry.hash())) {
+                cycle.read(serverName, content.length, readNanos, 0);
+                lane.queue.put(new ParsedFile(cycle, kind, serverName, uuidString, null, 0, null, manifestEntry, startNanos));
+                return;
+            }
+
+            long parseStart = System.nanoTime();
+            StatValues stats = kind == FileKind.ADVANCEMENTS ? advancements.decode(content) : decode(content);
+            cycle.read(serverName, content.length, readNanos, System.nanoTime() - parseStart);
+            // Well-formed but nothing to store - recorded like an identical file so it isn't read again next cycle
+            if (stats == NO_STATS) {
+                lane.queue.put(new ParsedFile(cycle, kind, serverName, uuidString, null, 0, null, manifestEntry, startNanos));
+                return;
+            }
+            if (stats == null) {
+                plugin.getLogger().warn("Skipping malformed " + (kind == FileKind.ADVANCEMENTS ? "advancements" : "stats") +
+                                        " file for " + uuidString + " on " + serverName);
+                cycle.failed(serverName);
+                return;
+            }
+
+            String username = kind == FileKind.STATS ? statsSystem.resolveUsername(uuidString) : null;
+            lane.queue.put(new ParsedFile(cycle, kind, serverName, uuidString, username, mtime / 1000, stats, manifestEntry, startNanos));
+
+        } catch (NoSuchFileException e) {
+            // removed between listing (or the watch event) and reading
+            cycle.skipped(serverName);
+        } catch (IOException e) {
+            plugin.getLogger().error("Failed to read stats file: " + statFile, e);
+            cycle.failed(serverName);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            cycle.failed(serverName);
+        } catch (RuntimeException e) {
+            plugin.getLogger().error("Failed to parse stats file: " + statFile, e);
+            cycle.failed(serverName);
+        }
+    }
+
+    // null for a malformed file, NO_STATS for a valid one without a stats section
+    private StatValues decode(byte[] content) {
+        try {
+            StatValues stats = decoder.decode(content);
+            return stats != null ? stats : NO_STATS;
+        } catch (IOException | IllegalStateException | NumberFormatException e) {
+            // MalformedJsonException is an IOException - the bytes are already in memory, so this is bad content
+            return null;
+        }
+    }
+
+    // ===== WRITER =====
+
+    private Lane laneFor(String serverName) {
+        return shardLanes.getOrDefault(serverName, mainLane);
+    }
+
+    private void writeLoop(Lane lane) {
+        List<ParsedFile> batch = new ArrayList<>(Math.min(batchFiles, 1024));
+
+        while (running || !lane.queue.isEmpty()) {
+            try {
+                ParsedFile first = lane.queue.poll(1, TimeUnit.SECONDS);
+                if (first == null) {
+                    continue;
+                }
+
+                batch.add(first);
+                fillBatch(lane.queue, batch, first.bytes());
+                writeBatch(lane, batch);
+
+            } catch (InterruptedException e) {
+                if (!running) {
+                    break;
+                }
+            } catch (RuntimeException e) {
+                plugin.getLogger().error("Stats writer failed on a batch of " + batch.size() + " files", e);
+                batch.forEach(file -> file.cycle().failed(file.serverName()));
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * keeps taking files until the batch hits its file or byte limit, the first file has waited
+     * batch-max-latency-ms, or there is nothing left in flight to wait for
+     */
+    private void fillBatch(BlockingQueue<ParsedFile> queue, List<ParsedFile> batch, long bytes) throws InterruptedException {
+        long deadline = System.nanoTime() + batchMaxLatencyNanos;
+        List<ParsedFile> drained = new ArrayList<>();
+
+        while (batch.size() < batchFiles && bytes < batchBytes) {
+            queue.drainTo(drained, batchFiles - batch.size());
+            for (ParsedFile file : drained) {
+                batch.add(file);
+                bytes += file.bytes();
+            }
+
+            if (!drained.isEmpty()) {
+                drained.clear();
+                continue;
+            }
+
+            // No parser is holding a file, so waiting longer can't grow this batch
+            if (parseSlots.availablePermits() == parseSlotCount) {
+                return;
+            }
+
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                return;
+            }
+
+            ParsedFile next = queue.poll(Math.min(remaining, TimeUnit.MILLISECONDS.toNanos(50)), TimeUnit.NANOSECONDS);
+            if (next != null) {
+                batch.add(next);
+                bytes += next.bytes();
+            }
+        }
+    }
+
+    private void writeBatch(Lane lane, List<ParsedFile> batch) {
+        List<ParsedFile> written;
+        totalsLock.readLock().lock();
+        try {
+            written = lane.rows == null ? writeMainBatch(batch) : writeShardBatch(lane, batch);
+        } finally {
+            totalsLock.readLock().unlock();
+        }
+
+        if (totalsStale) {
+            try {
+                rebuildTotals();
+                plugin.getLogger().warn("Rebuilt stat totals after a shard got ahead of stats.db");
+            } catch (SQLException e) {
+                plugin.getLogger().error("Failed to rebuild stat totals, retrying after the next batch", e);
+            }
+        }
+
+        // a cycle only counts as done once its changes are visible everywhere
+        written.forEach(this::complete);
+    }
+
+    // stats.db holds the rows too - rows and aggregates of the whole batch share one commit
+    private List<ParsedFile> writeMainBatch(List<ParsedFile> batch) {
+        List<EventLeaderboards.Change> eventChanges = new ArrayList<>();
+        List<StatTotals.Change> totalChanges = new ArrayList<>();
+
+        aggregateLock.lock();
+        try {
+            List<ParsedFile> written = writeMainBatch(batch, eventChanges, totalChanges);
+            publish(eventChanges, totalChanges);
+            return written;
+        } finally {
+            aggregateLock.unlock();
+        }
+    }
+
+    // returns the files that were committed
+    private List<ParsedFile> writeMainBatch(List<ParsedFile> batch, List<EventLeaderboards.Change> eventChanges,
+                                            List<StatTotals.Change> totalChanges) {
+        try (Connection conn = dataSource.getConnection()) {
+            // New stat keys, servers and players get their ids before the batch transaction opens
+            long ensureStart = System.nanoTime();
+            ensureIds(conn, batch);
+            batchDatabaseTime(batch, System.nanoTime() - ensureStart);
+            // Player rows, stat diffs and manifest entries for the whole batch share one commit
+            conn.setAutoCommit(false);
+
+            try (RowStatements rows = new RowStatements(conn); StatStatements statements = new StatStatements(conn)) {
+                try {
+                    for (ParsedFile file : batch) {
+                        writeFile(conn, rows, statements, file);
+                    }
+                    long commitStart = System.nanoTime();
+                    conn.commit();
+                    batchDatabaseTime(batch, System.nanoTime() - commitStart);
+                    publishManifest(statements);
+                    eventChanges.addAll(statements.eventChanges);
+                    batch.stream().map(ParsedFile::cycle).distinct().forEach(IngestCycle::committed);
+                    readHotTotals(conn, statements, totalChanges);
+
+                } catch (SQLException e) {
+                    conn.rollback();
+                    rows.clear();
+                    statements.clear();
+
+                    if (batch.size() == 1) {
+                        throw e;
+                    }
+
+                    // one bad file shouldn't sink the whole batch - retry them one by one
+                    plugin.getLogger().warn("Stats batch of " + batch.size() + " files failed, retrying individually: " + e.getMessage());
+                    List<ParsedFile> written = new ArrayList<>();
+                    for (ParsedFile file : batch) {
+                        try {
+                            writeFile(conn, rows, statements, file);
+                            conn.commit();
+                            publishManifest(statements);
+                            file.cycle().committed();
+                            eventChanges.addAll(statements.eventChanges);
+                            readHotTotals(conn, statements, totalChanges);
+                        } catch (SQLException fileError) {
+                            conn.rollback();
+                            // whatever the failed file queued must not run with the next one
+                            rows.clear();
+                            plugin.getLogger().error("Failed to save stats for " + file.uuid(), fileError);
+                            file.cycle().failed(file.serverName());
+                            continue;
+                        } finally {
+                            statements.clear();
+                        }
+                        written.add(file);
+                    }
+                    return written;
+                }
+            }
+
+        } catch (SQLException e) {
+            plugin.getLogger().error("Failed to save stats batch", e);
+            batch.forEach(file -> file.cycle().failed(file.serverName()));
+            return List.of();
+        }
+
+        return batch;
+    }
+
+    /**
+     * the rows go to the server's own file, in parallel with every other shard, then the totals, history,
+     * events and manifest entries they produced are committed to stats.db. both sides count their commits,
+     * so a crash between the two shows up as a sequence mismatch and the totals get summed again
+     */
+    private List<ParsedFile> writeShardBatch(Lane lane, List<ParsedFile> batch) {
+        List<FileDiff> diffs;
+        try {
+            try (Connection conn = dataSource.getConnection()) {
+                long ensureStart = System.nanoTime();
+                ensureIds(conn, batch);
+                batchDatabaseTime(batch, System.nanoTime() - ensureStart);
+            }
+            diffs = writeShardRows(lane, batch);
+
+        } catch (SQLException e) {
+            if (batch.size() == 1) {
+                plugin.getLogger().error("Failed to save stats for " + batch.get(0).uuid(), e);
+                batch.get(0).cycle().failed(batch.get(0).serverName());
+                return List.of();
+            }
+
+            // nothing was committed - retry the files one by one
+            plugin.getLogger().warn("Stats batch of " + batch.size() + " files failed on the " + lane.name +
+                                    " shard, retrying individually: " + e.getMessage());
+            List<ParsedFile> written = new ArrayList<>();
+            for (ParsedFile file : batch) {
+                written.addAll(writeShardBatch(lane, List.of(file)));
+            }
+            return written;
+        }
+
+        try {
+            writeShardAggregates(lane, batch, diffs);
+        } catch (SQLException e) {
+            // the shard can't be rolled back any more - leave the files to the next scan and sum the totals again
+            plugin.getLogger().error("Failed to save stat totals for a batch already written to the " + lane.name + " shard", e);
+            totalsStale = true;
+            batch.forEach(file -> file.cycle().failed(file.serverName()));
+            return List.of();
+        }
+
+        return batch;
+    }
+
+    // one commit on the shard, the diffs line up with the batch
+    private List<FileDiff> writeShardRows(Lane lane, List<ParsedFile> batch) throws SQLException {
+        List<FileDiff> diffs = new ArrayList<>(batch.size());
+        try (Connection conn = lane.rows.getConnection()) {
+            conn.setAutoCommit(false);
+            try (RowStatements rows = new RowStatements(conn)) {
+                for (ParsedFile file : batch) {
+                    long start = System.nanoTime();
+                    diffs.add(file.stats() != null ? writeRows(rows, file) : null);
+                    file.cycle().database(file.serverName(), System.nanoTime() - start);
+                }
+                StatsShards.advance(conn);
+
+                long commitStart = System.nanoTime();
+                conn.commit();
+                batchDatabaseTime(batch, System.nanoTime() - commitStart);
+            } catch (SQLException e) {
+                // the statements close with the failed batch, a retry prepares its own
+                conn.rollback();
+                throw e;
+            }
+        }
+        return diffs;
+    }
+
+    private void writeShardAggregates(Lane lane, List<ParsedFile> batch, List<FileDiff> diffs) throws SQLException {
+        List<EventLeaderboards.Change> eventChanges = new ArrayList<>();
+        List<StatTotals.Change> totalChanges = new ArrayList<>();
+
+        // one lane at a time, so hot totals are read and applied in commit order
+        aggregateLock.lock();
+        try {
+            try (Connection conn = dataSource.getConnection()) {
+                conn.setAutoCommit(false);
+                try (StatStatements statements = new StatStatements(conn)) {
+                    try {
+                        for (int i = 0; i < batch.size(); i++) {
+                            ParsedFile file = batch.get(i);
+                            long start = System.nanoTime();
+                            writeAggregates(conn, statements, file, diffs.get(i));
+                            file.cycle().database(file.serverName(), System.nanoTime() - start);
+                        }
+                        StatsShards.advance(conn, lane.name);
+
+                        long commitStart = System.nanoTime();
+                        conn.commit();
+                        batchDatabaseTime(batch, System.nanoTime() - commitStart);
+                    } catch (SQLException e) {
+                        conn.rollback();
+                        statements.clear();
+                        throw e;
+                    }
+
+                    publishManifest(statements);
+                    batch.stream().map(ParsedFile::cycle).distinct().forEach(IngestCycle::committed);
+                    eventChanges.addAll(statements.eventChanges);
+                    readHotTotals(conn, statements, totalChanges);
+                }
+            }
+            publish(eventChanges, totalChanges);
+        } finally {
+            aggregateLock.unlock();
+        }
+    }
+
+    // Entries only reach the in-memory manifest once their rows are committed
+    private void publishManifest(StatStatements statements) {
+        for (ParsedFile file : statements.recorded) {
+            manifest.publish(file.serverName(), file.kind().manifestKey(file.uuid()), file.manifestEntry());
+        }
+        statements.recorded.clear();
+    }
+
+    // Only committed changes reach the live leaderboards and top caches, and only once the connection is back
+    private void publish(List<EventLeaderboards.Change> eventChanges, List<StatTotals.Change> totalChanges) {
+        if (!eventChanges.isEmpty()) {
+            leaderboards.apply(eventChanges);
+        }
+        if (!totalChanges.isEmpty()) {
+            topPlayers.apply(totalChanges);
+            columns.apply(totalChanges);
+        }
+    }
+
+    /**
+     * pauses every writer between batches - take it before a connection, the writers hold theirs while they wait
+     */
+    Lock writerPause() {
+        return totalsLock.writeLock();
+    }
+
+    /**
+     * sums every stat total again from the rows, with every writer paused - after a shard
+     * got ahead of stats.db, or a server's rows were dropped
+     */
+    void rebuildTotals() throws SQLException {
+        rebuildServer(null);
+    }
+
+    /**
+     * drops every stat row of one server and forgets its files, so the next scan ingests them again
+     * from scratch. the other servers' rows (and their shards) aren't touched
+     */
+    void rebuildServer(String serverName) throws SQLException {
+        totalsLock.writeLock().lock();
+        try (Connection conn = dataSource.getConnection()) {
+            // a shard is its own file, so its rows go first - if stats.db then fails, the totals stay stale
+            // and the next batch tries again
+            totalsStale = true;
+            if (serverName != null && shards.isSharded(serverName)) {
+                shards.clear(serverName);
+            }
+
+            conn.setAutoCommit(false);
+            try {
+                Integer serverId = serverName != null ? dictionary.serverId(serverName) : null;
+                if (serverId != null && !shards.isSharded(serverName)) {
+                    try (PreparedStatement ps = conn.prepareStatement("DELETE FROM main.player_stats WHERE server_id = ?")) {
+                        ps.setInt(1, serverId);
+                        ps.executeUpdate();
+                    }
+                }
+                if (serverId != null) {
+                    try (PreparedStatement ps = conn.prepareStatement("DELETE FROM player_advancements WHERE server_id = ?")) {
+                        ps.setInt(1, serverId);
+                        ps.executeUpdate();
+                    }
+                }
+                if (serverName != null) {
+                    manifest.forgetServer(conn, serverName);
+                }
+
+                StatTotals.rebuild(conn, dictionary);
+                shards.align(conn);
+                conn.commit();
+                totalsStale = false;
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+
+            catalog.load(conn);
+            topPlayers.invalidate();
+            columns.invalidate();
+            for (EventLeaderboards.LiveEvent event : leaderboards.getActive()) {
+                leaderboards.activate(conn, event.getId());
+            }
+        } finally {
+            totalsLock.writeLock().unlock();
+        }
+    }
+
+    private void ensureIds(Connection conn, List<ParsedFile> batch) throws SQLException {
+        Set<String> statKeys = new HashSet<>();
+        Set<String> advancementKeys = new HashSet<>();
+        Set<String> servers = new HashSet<>();
+        Set<String> uuids = new HashSet<>();
+
+        for (ParsedFile file : batch) {
+            StatValues stats = file.stats();
+            if (stats == null) {
+                continue;
+            }
+
+            servers.add(file.serverName());
+            uuids.add(file.uuid());
+            if (file.kind() == FileKind.ADVANCEMENTS) {
+                for (int i = 0; i < stats.size(); i++) {
+                    if (advancements.id(stats.key(i)) == null) {
+                        advancementKeys.add(stats.key(i));
+                    }
+                }
+                continue;
+            }
+            for (int i = 0; i < stats.size(); i++) {
+                String key = stats.key(i);
+                if (dictionary.statId(key) == null) {
+                    statKeys.add(key);
+                    // a new stat may also open a new category
+                    String category = StatsDictionary.category(key);
+                    if (category != null) {
+                        statKeys.add(category);
+                    }
+                }
+            }
+        }
+
+        if (!uuids.isEmpty()) {
+            dictionary.ensure(conn, statKeys, servers, uuids);
+        }
+        if (!advancementKeys.isEmpty()) {
+            advancements.ensure(conn, advancementKeys);
+        }
+    }
+
+    private void writeFile(Connection conn, RowStatements rows, StatStatements statements, ParsedFile file) throws SQLException {
+        long start = System.nanoTime();
+        try {
+            FileDiff diff = null;
+            if (file.kind() == FileKind.ADVANCEMENTS) {
+                if (file.stats() != null) {
+                    writeAdvancements(statements, file);
+                }
+            } else if (file.stats() != null) {
+                diff = writeRows(rows, file);
+            }
+            writeAggregates(conn, statements, file, diff);
+        } finally {
+            file.cycle().database(file.serverName(), System.nanoTime() - start);
+        }
+    }
+
+    private void writeAdvancements(StatStatements statements, ParsedFile file) throws SQLException {
+        Integer playerId = dictionary.playerId(file.uuid());
+        Integer serverId = dictionary.serverId(file.serverName());
+        if (playerId == null || serverId == null) {
+            throw new SQLException("No dictionary id for " + file.uuid() + " on " + file.serverName());
+        }
+
+        int[] rows = advancements.write(statements.advancements, playerId, serverId, file.stats());
+        file.cycle().rows(file.serverName(), rows[0], rows[1], rows[2]);
+    }
+
+    // only touch rows whose value actually moved - most of a veteran's 1,500 keys don't change between saves
+    private FileDiff writeRows(RowStatements rows, ParsedFile file) throws SQLException {
+        Integer playerId = dictionary.playerId(file.uuid());
+        Integer serverId = dictionary.serverId(file.serverName());
+        if (playerId == null || serverId == null) {
+            throw new SQLException("No dictionary id for " + file.uuid() + " on " + file.serverName());
+        }
+
+        Map<Integer, Long> previous = new HashMap<>();
+        // rows a backend pushed after this file was saved - the file is older than them, so it can't lower or drop them
+        Set<Integer> newer = new HashSet<>();
+
+        rows.select.setInt(1, playerId);
+        rows.select.setInt(2, serverId);
+        try (ResultSet rs = rows.select.executeQuery()) {
+            while (rs.next()) {
+                previous.put(rs.getInt(1), rs.getLong(2));
+                if (rs.getLong(3) > file.lastModified()) {
+                    newer.add(rs.getInt(1));
+                }
+            }
+        }
+
+        // The first file we see for a player on a server is their whole lifetime, not an hour's progress
+        FileDiff diff = new FileDiff(playerId, serverId, previous.isEmpty(), new ArrayList<>(), previous);
+
+        StatValues stats = file.stats();
+        for (int i = 0; i < stats.size(); i++) {
+            Integer statId = dictionary.statId(stats.key(i));
+            if (statId == null) {
+                throw new SQLException("No dictionary id for stat " + stats.key(i));
+            }
+
+            Long old = previous.remove(statId);
+            if (old != null && (old == stats.value(i) || (stats.value(i) < old && newer.contains(statId)))) {
+                continue;
+            }
+
+            rows.upsert.setInt(1, playerId);
+            rows.upsert.setInt(2, serverId);
+            rows.upsert.setInt(3, statId);
+            rows.upsert.setLong(4, stats.value(i));
+            rows.upsert.setLong(5, file.lastModified());
+            rows.upsert.addBatch();
+            diff.changed().add(new RowChange(statId, old, stats.value(i)));
+        }
+
+        // whatever is left in previous disappeared from the file - a push only names the keys that moved
+        if (file.pushed()) {
+            previous.clear();
+        } else {
+            previous.keySet().removeAll(newer);
+        }
+        for (int statId : previous.keySet()) {
+            rows.delete.setInt(1, playerId);
+            rows.delete.setInt(2, serverId);
+            rows.delete.setInt(3, statId);
+            rows.delete.addBatch();
+        }
+
+        if (!diff.changed().isEmpty()) {
+            rows.upsert.executeBatch();
+        }
+        if (!previous.isEmpty()) {
+            rows.delete.executeBatch();
+        }
+
+        file.cycle().rows(file.serverName(), diff.changed().size(), stats.size() - diff.changed().size(), previous.size());
+        return diff;
+    }
+
+    // everything in stats.db that follows from a file's row changes - diff is null when only the manifest moves
+    private void writeAggregates(Connection conn, StatStatements statements, ParsedFile file, FileDiff diff) throws SQLException {
+        if (diff != null) {
+            statements.player.setString(1, file.uuid());
+            statements.player.setString(2, file.username());
+            statements.player.setLong(3, file.lastModified());
+            statements.player.executeUpdate();
+
+            writeTotals(statements, file, diff);
+        }
+
+        // Recorded in the same transaction so a crash never marks unsaved stats as ingested
+        if (!file.pushed()) {
+            manifest.record(conn, file.serverName(), file.kind().manifestKey(file.uuid()), file.manifestEntry());
+            statements.recorded.add(file);
+        }
+    }
+
+    private void writeTotals(StatStatements statements, ParsedFile file, FileDiff diff) throws SQLException {
+        int playerId = diff.playerId();
+        boolean recordHistory = historyEnabled && !diff.firstSeen();
+        long bucket = file.lastModified() / StatHistory.HOUR;
+        int historyRows = 0;
+
+        // summed per file so a save touching 40 blocks is one category update, not 40
+        Map<Integer, Long> categoryDeltas = new HashMap<>();
+        for (RowChange change : diff.changed()) {
+            int statId = change.statId();
+            List<EventLeaderboards.LiveEvent> events = leaderboards.eventsFor(statId);
+            if (events != null) {
+                trackEventChange(statements, events, playerId, diff.serverId(), statId, change.oldValue(), change.newValue(), diff.firstSeen());
+            }
+
+            long delta = change.newValue() - (change.oldValue() != null ? change.oldValue() : 0);
+            addTotal(statements, statId, playerId, delta);
+            addCategoryDelta(categoryDeltas, statId, delta);
+
+            // Decreases are resets (world wipe, stat edit), not negative progress
+            if (recordHistory && delta > 0) {
+                statements.history.setInt(1, statId);
+                statements.history.setLong(2, bucket);
+                statements.history.setInt(3, playerId);
+                statements.history.setLong(4, delta);
+                statements.history.addBatch();
+                historyRows++;
+            }
+        }
+
+        for (Map.Entry<Integer, Long> removed : diff.removed().entrySet()) {
+            // a dropped row counts as 0 for an event, like the final results' LEFT JOIN
+            List<EventLeaderboards.LiveEvent> events = leaderboards.eventsFor(removed.getKey());
+            if (events != null) {
+                trackEventChange(statements, events, playerId, diff.serverId(), removed.getKey(), removed.getValue(), 0, true);
+            }
+            addTotal(statements, removed.getKey(), playerId, -removed.getValue());
+            addCategoryDelta(categoryDeltas, removed.getKey(), -removed.getValue());
+        }
+
+        for (Map.Entry<Integer, Long> category : categoryDeltas.entrySet()) {
+            addTotal(statements, category.getKey(), playerId, category.getValue());
+        }
+
+        if (!diff.changed().isEmpty() || !diff.removed().isEmpty()) {
+            statements.totals.executeBatch();
+        }
+        if (historyRows > 0) {
+            statements.history.executeBatch();
+        }
+    }
+
+    /**
+     * new totals of hot keys and resident columns, read after the commit - a key promoted (or column admitted)
+     * while the transaction was open is loaded from a snapshot that already has it, so nothing can slip between the two.
+     * a failed read must not look like a failed commit, so it only makes the caches reload
+     */
+    private void readHotTotals(Connection conn, StatStatements statements, List<StatTotals.Change> totalChanges) {
+        // the catalog only needs to know which keys moved, it reads their numbers when they're asked for
+        Set<Integer> changedStats = new HashSet<>();
+        for (long key : statements.changedTotals) {
+            changedStats.add((int) (key >>> 32));
+        }
+        catalog.changed(changedStats);
+
+        try {
+            for (long key : statements.changedTotals) {
+                int statId = (int) (key >>> 32);
+                int playerId = (int) key;
+                if (topPlayers.isHot(statId) || columns.isResident(statId)) {
+                    long total = StatTotals.total(statements.totalSelect, statId, playerId);
+                    totalChanges.add(new StatTotals.Change(statId, playerId, total));
+                }
+            }
+            // ends the read transaction
+            conn.commit();
+        } catch (SQLException e) {
+            plugin.getLogger().warn("Failed to read new stat totals, reloading top caches: " + e.getMessage());
+            topPlayers.invalidate();
+            columns.invalidate();
+        } finally {
+            statements.changedTotals.clear();
+        }
+    }
+
+    private void addCategoryDelta(Map<Integer, Long> categoryDeltas, int statId, long delta) {
+        Integer categoryId = dictionary.categoryId(statId);
+        if (categoryId != null && delta != 0) {
+            categoryDeltas.merge(categoryId, delta, Long::sum);
+        }
+    }
+
+    private void addTotal(StatStatements statements, int statId, int playerId, long delta) throws SQLException {
+        statements.changedTotals.add(((long) statId << 32) | (playerId & 0xffffffffL));
+        statements.totals.setInt(1, statId);
+        statements.totals.setInt(2, playerId);
+        statements.totals.setLong(3, delta);
+        statements.totals.addBatch();
+    }
+
+    // rebaseline: the old value says nothing about progress - the player's first file is their whole lifetime,
+    // a dropped row was never counted - so an event without a baseline for the row starts from the new value
+    private void trackEventChange(StatStatements statements, List<EventLeaderboards.LiveEvent> events,
+                                  int playerId, int serverId, int statId, Long old, long value,
+                                  boolean rebaseline) throws SQLException {
+        long oldValue = old != null ? old : 0;
+        long baseline = rebaseline ? value : oldValue;
+
+        // Rows created after the event started get their baseline the first time they change
+        for (EventLeaderboards.LiveEvent event : events) {
+            if (!event.hasBaseline(playerId, serverId)) {
+                statements.eventBaseline.setInt(1, event.getId());
+                statements.eventBaseline.setInt(2, playerId);
+                statements.eventBaseline.setInt(3, serverId);
+                statements.eventBaseline.setLong(4, baseline);
+                statements.eventBaseline.executeUpdate();
+            }
+        }
+
+        statements.eventChanges.add(new EventLeaderboards.Change(playerId, serverId, statId, oldValue, value, baseline));
+    }
+
+    // what one file changed in player_stats, carried from the row write over to the stats.db aggregates
+    private record FileDiff(int playerId, int serverId, boolean firstSeen, List<RowChange> changed, Map<Integer, Long> removed) {}
+
+    // oldValue is null when the row is new
+    private record RowChange(int statId, Long oldValue, long newValue) {}
+
+    // player_stats statements - on stats.db or a shard, whichever holds the server's rows
+    private static class RowStatements implements AutoCloseable {
+        final PreparedStatement select;
+        final PreparedStatement upsert;
+        final PreparedStatement delete;
+
+        RowStatements(Connection conn) throws SQLException {
+            // main. so a stats.db connection with shards attached writes its own table, not the view over all of them
+            select = conn.prepareStatement(
+                "SELECT stat_id, stat_value, last_updated FROM main.player_stats WHERE player_id = ? AND server_id = ?");
+            upsert = conn.prepareStatement(
+                "INSERT INTO main.player_stats (player_id, server_id, stat_id, stat_value, last_updated) " +
+                "VALUES (?, ?, ?, ?, ?) " +
+                "ON CONFLICT (player_id, server_id, stat_id) DO UPDATE SET " +
+                "stat_value = excluded.stat_value, last_updated = excluded.last_updated");
+            delete = conn.prepareStatement(
+                "DELETE FROM main.player_stats WHERE player_id = ? AND server_id = ? AND stat_id = ?");
+        }
+
+        // after a rollback - a file that failed halfway may have left rows queued
+        void clear() throws SQLException {
+            upsert.clearBatch();
+            delete.clearBatch();
+        }
+
+        @Override
+        public void close() throws SQLException {
+            select.close();
+            upsert.close();
+            delete.close();
+        }
+    }
+
+    // stats.db statements, prepared once per batch and reused for every file in it
+    private static class StatStatements implements AutoCloseable {
+        final PreparedStatement player;
+        final PreparedStatement history;
+        final PreparedStatement eventBaseline;
+        final PreparedStatement totals;
+        final PreparedStatement totalSelect;
+        final StatAdvancements.Statements advancements;
+        // live leaderboard and top cache updates made in the open transaction
+        final List<EventLeaderboards.Change> eventChanges = new ArrayList<>();
+        // (stat id, player id) of every total touched in the open transaction
+        final Set<Long> changedTotals = new HashSet<>();
+        // files whose manifest rows were written in the open transaction
+        final List<ParsedFile> recorded = new ArrayList<>();
+
+        StatStatements(Connection conn) throws SQLException {
+            // Upsert rather than replace - replacing would hand the player a new id and forget first_seen
+            player = conn.prepareStatement(
+                "INSERT INTO players (uuid, username, last_seen) VALUES (?, ?, ?) " +
+                "ON CONFLICT (uuid) DO UPDATE SET " +
+                "username = COALESCE(excluded.username, players.username), last_seen = excluded.last_seen");
+            history = conn.prepareStatement(StatHistory.UPSERT_HOURLY);
+            eventBaseline = conn.prepareStatement(
+                "INSERT OR IGNORE INTO event_baselines (event_id, player_id, server_id, baseline_value) VALUES (?, ?, ?, ?)");
+            totals = conn.prepareStatement(StatTotals.UPSERT);
+            totalSelect = conn.prepareStatement(StatTotals.SELECT);
+            advancements = new StatAdvancements.Statements(conn);
+        }
+
+        // after a rollback, or once a file is done - nothing of it may run or publish with the next one
+        void clear() throws SQLException {
+            history.clearBatch();
+            totals.clearBatch();
+            advancements.clear();
+            eventChanges.clear();
+            changedTotals.clear();
+            recorded.clear();
+        }
+
+        @Override
+        public void close() throws SQLException {
+            player.close();
+            history.close();
+            eventBaseline.close();
+            totals.close();
+            totalSelect.close();
+            advancements.close();
+        }
+    }
+
+    private void batchDatabaseTime(List<ParsedFile> batch, long nanos) {
+        batch.stream().map(ParsedFile::cycle).distinct().forEach(cycle -> cycle.database(null, nanos));
+    }
+
+    private void complete(ParsedFile file) {
+        file.cycle().latency(file.serverName(), System.nanoTime() - file.startNanos());
+        if (file.stats() != null) {
+            file.cycle().ingested(file.serverName());
+        } else {
+            file.cycle().skipped(file.serverName());
+        }
+    }
+
+    public void shutdown() {
+        parsers.shutdown();
+        try {
+            if (!parsers.awaitTermination(5, TimeUnit.SECONDS)) {
+                parsers.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            parsers.shutdownNow();
+        }
+
+        // let the writers drain whatever the parsers already handed over
+        running = false;
+        List<Lane> lanes = new ArrayList<>(shardLanes.values());
+        lanes.add(mainLane);
+        long deadline = System.currentTimeMillis() + 10000;
+        for (Lane lane : lanes) {
+            try {
+                lane.thread.join(Math.max(1, deadline - System.currentTimeMillis()));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+
+            if (lane.thread.isAlive()) {
+                lane.thread.interrupt();
+            }
+        }
+    }
+
+    private static ThreadFactory namedThreads(String prefix) {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + "-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
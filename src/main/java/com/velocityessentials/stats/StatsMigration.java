@@ -0,0 +1,102 @@
+package com.velocityessentials.stats;
+
+import org.slf4j.Logger;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * in-place upgrade of the original text-keyed stats schema to the dictionary-encoded one
+ * the old tables are renamed, copied into the new layout through the dictionaries and dropped
+ */
+public final class StatsMigration {
+
+    private StatsMigration() {}
+
+    // the original layout keyed player_stats on (uuid, server_name, stat_key)
+    public static boolean isLegacySchema(Connection conn) throws SQLException {
+        try (ResultSet rs = conn.createStatement().executeQuery("PRAGMA table_info(player_stats)")) {
+            while (rs.next()) {
+                if (rs.getString("name").equals("uuid")) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * step 1 - move the legacy tables out of the way so the new ones can be created under the same names
+     */
+    public static void renameLegacyTables(Connection conn) throws SQLException {
+        try (Statement st = conn.createStatement()) {
+            st.execute("DROP INDEX IF EXISTS idx_stats_uuid");
+            st.execute("DROP INDEX IF EXISTS idx_stats_key");
+            st.execute("DROP INDEX IF EXISTS idx_stats_updated");
+            st.execute("ALTER TABLE players RENAME TO legacy_players");
+            st.execute("ALTER TABLE player_stats RENAME TO legacy_player_stats");
+            st.execute("ALTER TABLE event_baselines RENAME TO legacy_event_baselines");
+            st.execute("ALTER TABLE event_results RENAME TO legacy_event_results");
+        }
+    }
+
+    /**
+     * step 2 - with the new tables created, fill the dictionaries and copy every row across
+     */
+    public static void copyLegacyData(Connection conn, Logger logger) throws SQLException {
+        try (Statement st = conn.createStatement()) {
+            // Dictionaries first
+            st.executeUpdate("""
+                INSERT INTO players (uuid, username, last_seen, first_seen)
+                SELECT uuid, username, last_seen, first_seen FROM legacy_players
+                """);
+            st.executeUpdate("""
+                INSERT OR IGNORE INTO players (uuid)
+                SELECT uuid FROM legacy_player_stats
+                UNION SELECT player_uuid FROM legacy_event_baselines
+                UNION SELECT player_uuid FROM legacy_event_results
+                """);
+            st.executeUpdate("""
+                INSERT OR IGNORE INTO servers (name)
+                SELECT server_name FROM legacy_player_stats
+                UNION SELECT server_name FROM legacy_event_baselines
+                """);
+            st.executeUpdate("""
+                INSERT OR IGNORE INTO stat_keys (key)
+                SELECT DISTINCT stat_key FROM legacy_player_stats
+                """);
+
+            int rows = st.executeUpdate("""
+                INSERT INTO player_stats (player_id, server_id, stat_id, stat_value, last_updated)
+                SELECT p.id, sv.id, k.id, l.stat_value, l.last_updated
+                FROM legacy_player_stats l
+                JOIN players p ON p.uuid = l.uuid
+                JOIN servers sv ON sv.name = l.server_name
+                JOIN stat_keys k ON k.key = l.stat_key
+                """);
+
+            st.executeUpdate("""
+                INSERT INTO event_baselines (event_id, player_id, server_id, baseline_value)
+                SELECT l.event_id, p.id, sv.id, l.baseline_value
+                FROM legacy_event_baselines l
+                JOIN players p ON p.uuid = l.player_uuid
+                JOIN servers sv ON sv.name = l.server_name
+                """);
+            st.executeUpdate("""
+                INSERT INTO event_results (event_id, player_id, final_progress, rank)
+                SELECT l.event_id, p.id, l.final_progress, l.rank
+                FROM legacy_event_results l
+                JOIN players p ON p.uuid = l.player_uuid
+                """);
+
+            st.execute("DROP TABLE legacy_event_results");
+            st.execute("DROP TABLE legacy_event_baselines");
+            st.execute("DROP TABLE legacy_player_stats");
+            st.execute("DROP TABLE legacy_players");
+
+            logger.info("Migrated " + rows + " stat rows to the dictionary-encoded schema");
+        }
+    }
+}
@@ -0,0 +1,188 @@
+package com.velocityessentials.stats;
+
+import com.google.common.io.ByteArrayDataInput;
+import com.google.gson.JsonObject;
+import com.velocityessentials.VelocityEssentials;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * stat values the backend plugin pushes on the stats_delta subchannel as they change. a batch holds the
+ * latest value of every key that moved for each player since the backend's last flush - absolute values,
+ * so a lost or repeated batch can't drift. decoded on the event thread, written by one thread through the
+ * ingester's writers. when that thread falls behind batches are dropped, the next scan reads the files
+ */
+public class StatsPushReceiver {
+    public static final String SUBCHANNEL = "stats_delta";
+    private static final int VERSION = 1;
+    private static final int QUEUE_SIZE = 256;
+    // pushes are recorded as one ingest cycle per window, not one per batch
+    private static final long WINDOW_MILLIS = 60_000;
+
+    private final VelocityEssentials plugin;
+    private final StatsIngester ingester;
+    private final ThreadPoolExecutor executor;
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong values = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong malformed = new AtomicLong();
+    private volatile long lastBatchAt;
+
+    // only touched by the push thread
+    private IngestCycle window;
+    private long windowStart;
+
+    record PlayerValues(String uuid, String username, StatValues stats, long bytes) {}
+
+    public StatsPushReceiver(VelocityEssentials plugin, StatsIngester ingester) {
+        this.plugin = plugin;
+        this.ingester = ingester;
+        this.executor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(QUEUE_SIZE), runnable -> {
+                Thread thread = new Thread(runnable, "VE-Stats-Push");
+                thread.setDaemon(true);
+                return thread;
+            });
+    }
+
+    /**
+     * a batch from the backend behind serverName - the caller has checked it came from a server, not a client
+     */
+    public void receive(String serverName, ByteArrayDataInput in) {
+        List<PlayerValues> players;
+        try {
+            players = decode(in);
+        } catch (IllegalStateException | IllegalArgumentException e) {
+            malformed.incrementAndGet();
+            plugin.getLogger().warn("Ignoring malformed stats push from " + serverName + ": " + e.getMessage());
+            return;
+        }
+
+        try {
+            executor.execute(() -> apply(serverName, players));
+        } catch (RejectedExecutionException e) {
+            dropped.incrementAndGet();
+        }
+    }
+
+    // version, key table, then per player: uuid, name and (key index, value) pairs
+    private static List<PlayerValues> decode(ByteArrayDataInput in) {
+        int version = in.readByte();
+        if (version != VERSION) {
+            throw new IllegalArgumentException("unsupported version " + version);
+        }
+
+        String[] keys = new String[in.readUnsignedShort()];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = in.readUTF();
+            // categories are summed here from their keys, a backend can't set them
+            if (keys[i].indexOf(':') < 0 || StatsDictionary.isCategory(keys[i])) {
+                throw new IllegalArgumentException("bad stat key " + keys[i]);
+            }
+        }
+
+        int playerCount = in.readUnsignedShort();
+        List<PlayerValues> players = new ArrayList<>(playerCount);
+        for (int p = 0; p < playerCount; p++) {
+            String uuid = new UUID(in.readLong(), in.readLong()).toString();
+            String username = in.readUTF();
+            int count = in.readUnsignedShort();
+
+            StatValues stats = new StatValues(Math.max(1, count));
+            long bytes = 0;
+            for (int i = 0; i < count; i++) {
+                int key = in.readUnsignedShort();
+                if (key >= keys.length) {
+                    throw new IllegalArgumentException("key index " + key + " out of range");
+                }
+                stats.add(keys[key], in.readInt());
+                bytes += keys[key].length() + 12;
+            }
+            players.add(new PlayerValues(uuid, username.isEmpty() ? null : username, stats, bytes));
+        }
+        return players;
+    }
+
+    private void apply(String serverName, List<PlayerValues> players) {
+        try {
+            long now = System.currentTimeMillis();
+            if (window == null) {
+                window = new IngestCycle();
+                windowStart = now;
+            }
+
+            for (PlayerValues player : players) {
+                ingester.push(window, serverName, player.uuid(), player.username(), player.stats(), player.bytes());
+                values.addAndGet(player.stats().size());
+            }
+            batches.incrementAndGet();
+            lastBatchAt = now;
+            closeWindow(false);
+
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * records the current window once it is old enough - called every minute so a window
+     * doesn't wait for the next batch when the servers go quiet
+     */
+    public void rotate() {
+        closeWindowLater(false);
+    }
+
+    // behind the queued batches, so the window holds all of them
+    private void closeWindowLater(boolean force) {
+        try {
+            executor.execute(() -> {
+                try {
+                    closeWindow(force);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+        } catch (RejectedExecutionException ignored) {
+            // full of batches, the next one closes the window
+        }
+    }
+
+    private void closeWindow(boolean force) throws InterruptedException {
+        if (window != null && (force || System.currentTimeMillis() - windowStart >= WINDOW_MILLIS)) {
+            IngestCycle finished = window;
+            window = null;
+            ingester.recordPushes(finished);
+        }
+    }
+
+    public JsonObject toJson() {
+        JsonObject json = new JsonObject();
+        json.addProperty("batches", batches.get());
+        json.addProperty("values", values.get());
+        json.addProperty("queued", executor.getQueue().size());
+        json.addProperty("dropped", dropped.get());
+        json.addProperty("malformed", malformed.get());
+        json.addProperty("last_batch_at", lastBatchAt);
+        return json;
+    }
+
+    // before the ingester stops - whatever is queued is still written
+    public void shutdown() {
+        closeWindowLater(true);
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(5, TimeUnit.SECONDS)) {
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+        }
+    }
+}
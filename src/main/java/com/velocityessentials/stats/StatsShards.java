@@ -0,0 +1,384 @@
+package com.velocityessentials.stats;
+
+import com.velocityessentials.VelocityEssentials;
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import org.sqlite.SQLiteConnection;
+import org.sqlite.SQLiteDataSource;
+import org.sqlite.SQLiteLimits;
+
+import java.io.IOException;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.*;
+import java.util.stream.Stream;
+
+/**
+ * optional per-server storage - every sharded server keeps its player_stats rows in its own
+ * sqlite file with its own writer connection, while dictionaries, totals, history and events stay in stats.db.
+ * connections to stats.db attach every shard and get a temp player_stats view over all of them,
+ * so cross-server queries read the same table name whichever layout is in use
+ */
+public class StatsShards {
+    static final String DIRECTORY = "stats-shards";
+
+    private static final String CREATE_STATS = """
+        CREATE TABLE IF NOT EXISTS player_stats (
+            player_id INTEGER,
+            server_id INTEGER,
+            stat_id INTEGER,
+            stat_value INTEGER,
+            last_updated INTEGER,
+            PRIMARY KEY (player_id, server_id, stat_id)
+        ) WITHOUT ROWID
+        """;
+
+    private final VelocityEssentials plugin;
+    private final Path directory;
+    // server name -> shard file, in a fixed order so every connection attaches them the same way
+    private final Map<String, Path> files = new TreeMap<>();
+    // connection-local schema name of each shard
+    private final Map<String, String> aliases = new HashMap<>();
+    private final Map<String, HikariDataSource> writers = new HashMap<>();
+    private volatile boolean attachable;
+
+    public StatsShards(VelocityEssentials plugin, Path dataDirectory, Collection<String> servers) {
+        this.plugin = plugin;
+        this.directory = dataDirectory.resolve(DIRECTORY);
+        for (String server : servers) {
+            files.put(server, directory.resolve(fileName(server)));
+        }
+        for (String server : files.keySet()) {
+            aliases.put(server, "shard_" + aliases.size());
+        }
+    }
+
+    public boolean isEnabled() {
+        return !files.isEmpty();
+    }
+
+    public Set<String> getServers() {
+        return files.keySet();
+    }
+
+    public boolean isSharded(String serverName) {
+        return files.containsKey(serverName);
+    }
+
+    // schema name on stats.db connections -> shard file, in attach order
+    Map<String, Path> getSchemas() {
+        Map<String, Path> schemas = new LinkedHashMap<>();
+        for (Map.Entry<String, Path> file : files.entrySet()) {
+            schemas.put(alias(file.getKey()), file.getValue());
+        }
+        return schemas;
+    }
+
+    /**
+     * a stats.db data source whose connections attach the shards once {@link #open} has made them ready
+     */
+    public SQLiteDataSource dataSource(Path database) {
+        SQLiteDataSource dataSource = new SQLiteDataSource() {
+            @Override
+            public SQLiteConnection getConnection(String username, String password) throws SQLException {
+                SQLiteConnection conn = super.getConnection(username, password);
+                if (attachable) {
+                    try {
+                        attach(conn);
+                    } catch (SQLException e) {
+                        conn.close();
+                        throw e;
+                    }
+                }
+                return conn;
+            }
+        };
+        dataSource.setUrl("jdbc:sqlite:" + database.toAbsolutePath());
+        return dataSource;
+    }
+
+    /**
+     * every stats.db connection attaches every shard, and sqlite caps the databases one connection can attach
+     * (10 unless it was built with another SQLITE_MAX_ATTACHED) - fails before anything is created or moved
+     */
+    void checkAttachLimit(Path database) throws SQLException {
+        if (files.isEmpty()) {
+            return;
+        }
+
+        try (SQLiteConnection conn = dataSource(database).getConnection(null, null)) {
+            int max = conn.getDatabase().limit(SQLiteLimits.SQLITE_LIMIT_ATTACHED.getId(), -1);
+            if (files.size() > max) {
+                throw new SQLException("Sharded stats storage attaches one database per server and SQLite allows at most " +
+                    max + ", but " + files.size() + " servers are configured - turn off stats.database.sharded " +
+                    "or list at most " + max + " servers under stats.servers");
+            }
+        }
+    }
+
+    /**
+     * creates the shard files and their writer pools, moves rows into the shard of their server and
+     * folds shards that are no longer configured back into stats.db. returns the servers whose shard
+     * was committed without the matching stats.db commit (crash in between) - their totals need a rebuild
+     */
+    public Set<String> open(Connection conn, StatsDictionary dictionary) throws SQLException {
+        try (Statement st = conn.createStatement()) {
+            st.execute("""
+                CREATE TABLE IF NOT EXISTS stat_shards (
+                    server_name TEXT PRIMARY KEY,
+                    seq INTEGER NOT NULL
+                )
+                """);
+        }
+
+        if (Files.isDirectory(directory)) {
+            mergeRemoved(conn);
+        }
+        forgetRemoved(conn);
+
+        if (files.isEmpty()) {
+            return Set.of();
+        }
+
+        try {
+            Files.createDirectories(directory);
+        } catch (IOException e) {
+            throw new SQLException("Could not create " + directory, e);
+        }
+
+        for (Map.Entry<String, Path> shard : files.entrySet()) {
+            HikariDataSource writer = createWriter(shard.getKey(), shard.getValue());
+            writers.put(shard.getKey(), writer);
+            try (Connection shardConn = writer.getConnection(); Statement st = shardConn.createStatement()) {
+                st.execute(CREATE_STATS);
+                st.execute("CREATE INDEX IF NOT EXISTS idx_stats_stat ON player_stats(stat_id, stat_value)");
+                st.execute("CREATE TABLE IF NOT EXISTS shard_state (id INTEGER PRIMARY KEY CHECK (id = 0), seq INTEGER NOT NULL)");
+                st.execute("INSERT OR IGNORE INTO shard_state (id, seq) VALUES (0, 0)");
+            }
+        }
+
+        attachable = true;
+        attach(conn);
+
+        Set<String> mismatched = new TreeSet<>();
+        for (String server : files.keySet()) {
+            moveIn(conn, server, dictionary.serverId(server));
+            if (recorded(conn, server) != attachedSequence(conn, server)) {
+                mismatched.add(server);
+            }
+        }
+        return mismatched;
+    }
+
+    /**
+     * attaches every shard and shadows player_stats with a view over stats.db and all of them -
+     * does nothing on a connection that already has them
+     */
+    void attach(Connection conn) throws SQLException {
+        if (files.isEmpty()) {
+            return;
+        }
+
+        Set<String> attached = new HashSet<>();
+        try (Statement st = conn.createStatement(); ResultSet rs = st.executeQuery("PRAGMA database_list")) {
+            while (rs.next()) {
+                attached.add(rs.getString("name"));
+            }
+        }
+
+        StringBuilder view = new StringBuilder(
+            "CREATE TEMP VIEW IF NOT EXISTS player_stats AS " +
+            "SELECT player_id, server_id, stat_id, stat_value, last_updated FROM main.player_stats");
+        try (Statement st = conn.createStatement()) {
+            for (Map.Entry<String, Path> shard : files.entrySet()) {
+                String alias = alias(shard.getKey());
+                if (!attached.contains(alias)) {
+                    try (PreparedStatement ps = conn.prepareStatement("ATTACH DATABASE ? AS " + alias)) {
+                        ps.setString(1, shard.getValue().toAbsolutePath().toString());
+                        ps.execute();
+                    }
+                }
+                view.append(" UNION ALL SELECT player_id, server_id, stat_id, stat_value, last_updated FROM ")
+                    .append(alias).append(".player_stats");
+            }
+            st.execute(view.toString());
+        }
+    }
+
+    /**
+     * the writer pool of a sharded server, null for servers kept in stats.db
+     */
+    public HikariDataSource getWriter(String serverName) {
+        return writers.get(serverName);
+    }
+
+    // counts a commit on the shard - the stats.db commit carrying its totals counts one for the server too
+    static void advance(Connection shardConn) throws SQLException {
+        try (Statement st = shardConn.createStatement()) {
+            st.executeUpdate("UPDATE shard_state SET seq = seq + 1");
+        }
+    }
+
+    static void advance(Connection conn, String serverName) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement(
+                "INSERT INTO stat_shards (server_name, seq) VALUES (?, 1) " +
+                "ON CONFLICT (server_name) DO UPDATE SET seq = seq + 1")) {
+            ps.setString(1, serverName);
+            ps.executeUpdate();
+        }
+    }
+
+    /**
+     * takes over every shard's count once the totals were summed again from the rows
+     */
+    void align(Connection conn) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement(
+                "INSERT INTO stat_shards (server_name, seq) VALUES (?, ?) " +
+                "ON CONFLICT (server_name) DO UPDATE SET seq = excluded.seq")) {
+            for (String server : files.keySet()) {
+                ps.setString(1, server);
+                ps.setLong(2, attachedSequence(conn, server));
+                ps.executeUpdate();
+            }
+        }
+    }
+
+    // drops every row of a sharded server, nothing else in the shard or stats.db changes
+    void clear(String serverName) throws SQLException {
+        HikariDataSource writer = writers.get(serverName);
+        if (writer == null) {
+            return;
+        }
+
+        try (Connection shardConn = writer.getConnection(); Statement st = shardConn.createStatement()) {
+            st.executeUpdate("DELETE FROM player_stats");
+        }
+    }
+
+    public void close() {
+        writers.values().forEach(HikariDataSource::close);
+        writers.clear();
+    }
+
+    private HikariDataSource createWriter(String serverName, Path file) {
+        HikariConfig config = new HikariConfig();
+        config.setPoolName("VE-Stats-Shard-" + serverName);
+        config.setDriverClassName("org.sqlite.JDBC");
+        config.setJdbcUrl("jdbc:sqlite:" + file.toAbsolutePath());
+        config.setMaximumPoolSize(1);
+
+        config.addDataSourceProperty("journal_mode", "WAL");
+        config.addDataSourceProperty("synchronous", "NORMAL");
+        config.addDataSourceProperty("cache_size", "-16000");
+        config.addDataSourceProperty("temp_store", "MEMORY");
+
+        return new HikariDataSource(config);
+    }
+
+    // rows of a server that was kept in stats.db before it got a shard
+    private void moveIn(Connection conn, String serverName, Integer serverId) throws SQLException {
+        if (serverId == null) {
+            return;
+        }
+
+        // not atomic across the two files in WAL mode - a crash in between leaves the rows in stats.db,
+        // and the replace makes the next startup's repeat harmless
+        String alias = alias(serverName);
+        int moved;
+        try (PreparedStatement insert = conn.prepareStatement(
+                "INSERT OR REPLACE INTO " + alias + ".player_stats SELECT * FROM main.player_stats WHERE server_id = ?");
+             PreparedStatement delete = conn.prepareStatement("DELETE FROM main.player_stats WHERE server_id = ?")) {
+            insert.setInt(1, serverId);
+            moved = insert.executeUpdate();
+            delete.setInt(1, serverId);
+            delete.executeUpdate();
+        }
+
+        if (moved > 0) {
+            plugin.getLogger().info("Moved " + moved + " stat rows of " + serverName + " into its shard");
+        }
+    }
+
+    // shard files of servers that aren't sharded any more go back into stats.db
+    private void mergeRemoved(Connection conn) throws SQLException {
+        Set<Path> configured = new HashSet<>(files.values());
+        List<Path> removed;
+        try (Stream<Path> list = Files.list(directory)) {
+            removed = list.filter(p -> p.toString().endsWith(".db") && !configured.contains(p)).toList();
+        } catch (IOException e) {
+            throw new SQLException("Could not list " + directory, e);
+        }
+
+        for (Path file : removed) {
+            try (Statement st = conn.createStatement()) {
+                try (PreparedStatement ps = conn.prepareStatement("ATTACH DATABASE ? AS merged_shard")) {
+                    ps.setString(1, file.toAbsolutePath().toString());
+                    ps.execute();
+                }
+
+                int merged = st.executeUpdate("INSERT OR REPLACE INTO main.player_stats SELECT * FROM merged_shard.player_stats");
+                st.execute("DETACH DATABASE merged_shard");
+                plugin.getLogger().info("Merged " + merged + " stat rows from " + file.getFileName() + " back into stats.db");
+            }
+
+            try {
+                for (String suffix : List.of("", "-wal", "-shm")) {
+                    Files.deleteIfExists(Path.of(file + suffix));
+                }
+            } catch (IOException e) {
+                throw new SQLException("Could not delete merged shard " + file, e);
+            }
+        }
+    }
+
+    // sequence rows of servers that no longer have a shard
+    private void forgetRemoved(Connection conn) throws SQLException {
+        List<String> stale = new ArrayList<>();
+        try (PreparedStatement ps = conn.prepareStatement("SELECT server_name FROM stat_shards")) {
+            ResultSet rs = ps.executeQuery();
+            while (rs.next()) {
+                if (!files.containsKey(rs.getString(1))) {
+                    stale.add(rs.getString(1));
+                }
+            }
+        }
+
+        try (PreparedStatement delete = conn.prepareStatement("DELETE FROM stat_shards WHERE server_name = ?")) {
+            for (String server : stale) {
+                delete.setString(1, server);
+                delete.executeUpdate();
+            }
+        }
+    }
+
+    private long recorded(Connection conn, String serverName) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement("SELECT seq FROM stat_shards WHERE server_name = ?")) {
+            ps.setString(1, serverName);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? rs.getLong(1) : 0;
+            }
+        }
+    }
+
+    private long attachedSequence(Connection conn, String serverName) throws SQLException {
+        try (Statement st = conn.createStatement();
+             ResultSet rs = st.executeQuery("SELECT seq FROM " + alias(serverName) + ".shard_state")) {
+            return rs.next() ? rs.getLong(1) : 0;
+        }
+    }
+
+    private String alias(String serverName) {
+        return aliases.get(serverName);
+    }
+    // stable and unique per server name, whatever characters the name uses
+    private static String fileName(String serverName) {
+        return URLEncoder.encode(serverName, StandardCharsets.UTF_8) + ".db";
+    }
+}
@@ -1,82 +1,180 @@
 package com.velocityessentials.stats;
 
-import com.google.gson.Gson;
 import com.google.gson.JsonObject;
 import com.velocityessentials.VelocityEssentials;
 import com.zaxxer.hikari.HikariConfig;
 import com.zaxxer.hikari.HikariDataSource;
+import org.sqlite.SQLiteDataSource;
 
 import java.io.IOException;
-import java.net.HttpURLConnection;
-import java.net.URL;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.sql.*;
-import java.time.Instant;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.util.*;
 import java.util.concurrent.*;
-import java.util.stream.Stream;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 public class StatsSystem {
     private final VelocityEssentials plugin;
     private final HikariDataSource dataSource;
-    private final Gson gson = new Gson();
+    private final HikariDataSource readers;
+    private final StatsShards shards;
+    private final PoolWaitTracker writerWaits = new PoolWaitTracker();
+    private final PoolWaitTracker readerWaits = new PoolWaitTracker();
     private final Map<String, Path> serverStatsPaths = new HashMap<>();
+    // empty unless advancements are enabled
+    private final Map<String, Path> advancementPaths = new HashMap<>();
     private final ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(2);
     private final Set<String> recentlyQueriedPlayers = ConcurrentHashMap.newKeySet();
-    
-    // Caches
-    private final Map<String, String> uuidToUsername = new ConcurrentHashMap<>();
-    private final Map<String, Long> lastMojangQuery = new ConcurrentHashMap<>();
+    private final IngestManifest manifest = new IngestManifest();
+    private final StatsDictionary dictionary = new StatsDictionary();
+    private final StatHistory history = new StatHistory();
+    private final StatTotals totals = new StatTotals();
+    private final EventLeaderboards leaderboards = new EventLeaderboards(dictionary);
+    private final StatsIngester ingester;
+    private final AtomicBoolean fullScanRunning = new AtomicBoolean();
+    private final UsernameResolver usernameResolver;
+    private final EventRegistry events;
+    private final TopPlayersCache topPlayers;
+    private final StatColumns columns;
+    private final StatKeyCatalog catalog;
+    private final StatsBackup backup;
+    private final StatAdvancements advancements;
+    private StatsWatcher watcher;
+    private StatsPushReceiver pushReceiver;
+    // how long a full scan may take to read its files, 0 = as fast as the read budgets allow
+    private long scanSpreadMillis;
     
     public StatsSystem(VelocityEssentials plugin) {
         this.plugin = plugin;
-        this.dataSource = setupDatabase();
+        this.advancements = new StatAdvancements(plugin.getConfig().isStatsAdvancementsIncludeRecipes());
         loadConfiguration();
+        applyStagedRestore();
+        // Every server with a stats path gets its own file when sharding is on
+        this.shards = new StatsShards(plugin, plugin.getDataDirectory(),
+            plugin.getConfig().isStatsShardingEnabled() ? serverStatsPaths.keySet() : List.of());
+        try {
+            shards.checkAttachLimit(plugin.getDataDirectory().resolve("stats.db"));
+        } catch (SQLException e) {
+            throw new IllegalStateException(e.getMessage(), e);
+        }
+        this.dataSource = setupDatabase();
+        this.topPlayers = new TopPlayersCache(
+            plugin.getConfig().getStatsTopCacheSize(),
+            plugin.getConfig().getStatsTopCacheKeys(),
+            plugin.getConfig().getStatsTopCachePromoteAfter());
         createTables();
+        // Opened once the schema exists - readers can't create anything
+        this.readers = setupReaders();
+        this.columns = new StatColumns(readers, dictionary, plugin.getConfig().getStatsColumnsMax());
+        this.catalog = new StatKeyCatalog(readers, dictionary);
+        loadCatalog();
+        this.backup = new StatsBackup(plugin, plugin.getDataDirectory(), shards);
+        this.usernameResolver = new UsernameResolver(plugin, dataSource, serverStatsPaths, this::storeResolvedUsername);
+        this.ingester = new StatsIngester(plugin, this, dataSource, shards, manifest, dictionary, leaderboards, topPlayers, columns, catalog,
+            advancements, advancementPaths);
+        this.events = new EventRegistry(plugin, dataSource, ingester.writerPause(), this::startEvent,
+            (conn, event) -> finishEvent(conn, event.getId(), event.getStatKey()));
         startProcessing();
     }
     
+    // A restore staged by /ve stats restore replaces the database files before anything opens them
+    private void applyStagedRestore() {
+        try {
+            String restored = StatsBackup.applyStaged(plugin.getDataDirectory());
+            if (restored != null) {
+                plugin.getLogger().info("Restored stats database from " + restored);
+            }
+        } catch (IOException e) {
+            plugin.getLogger().error("Failed to restore the staged stats snapshot", e);
+        }
+    }
+    
+    // The only connection that writes stats.db - the ingester, events and username updates all share it
     private HikariDataSource setupDatabase() {
         Path dbPath = plugin.getDataDirectory().resolve("stats.db");
         
+        // SQLite performance settings
+        SQLiteDataSource sqlite = shards.dataSource(dbPath);
+        sqlite.setJournalMode("WAL");
+        sqlite.setSynchronous("NORMAL");
+        sqlite.setCacheSize(-64000);
+        sqlite.setTempStore("MEMORY");
+        
         HikariConfig config = new HikariConfig();
-        config.setDriverClassName("org.sqlite.JDBC");
-        config.setJdbcUrl("jdbc:sqlite:" + dbPath.toAbsolutePath());
-        config.setMaximumPoolSize(1); // SQLite works best with single connection
+        config.setPoolName("VE-Stats-Writer");
+        config.setDataSource(sqlite);
+        config.setMaximumPoolSize(1); // SQLite only allows one writer at a time
+        config.setMetricsTrackerFactory(writerWaits);
         
-        // SQLite performance settings
-        config.addDataSourceProperty("journal_mode", "WAL");
-        config.addDataSourceProperty("synchronous", "NORMAL");
-        config.addDataSourceProperty("cache_size", "-64000");
-        config.addDataSourceProperty("temp_store", "MEMORY");
+        return new HikariDataSource(config);
+    }
+    
+    // API reads - WAL lets these run alongside a write transaction instead of queueing behind it
+    private HikariDataSource setupReaders() {
+        Path dbPath = plugin.getDataDirectory().resolve("stats.db");
+        
+        SQLiteDataSource sqlite = shards.dataSource(dbPath);
+        sqlite.setCacheSize(-16000);
+        sqlite.setTempStore("MEMORY");
+        
+        HikariConfig config = new HikariConfig();
+        config.setPoolName("VE-Stats-Readers");
+        config.setDataSource(sqlite);
+        config.setMaximumPoolSize(Math.max(1, plugin.getConfig().getStatsReaderConnections()));
+        config.setConnectionInitSql("PRAGMA query_only = ON");
+        config.setMetricsTrackerFactory(readerWaits);
         
         return new HikariDataSource(config);
     }
     
     private void createTables() {
         try (Connection conn = dataSource.getConnection()) {
-            // Players table
+            boolean legacy = StatsMigration.isLegacySchema(conn);
+            conn.setAutoCommit(false);
+            
+            if (legacy) {
+                plugin.getLogger().info("Migrating stats database to the dictionary-encoded schema, this may take a while...");
+                StatsMigration.renameLegacyTables(conn);
+            }
+            
+            // Dictionaries - player_stats only stores their ids
             conn.createStatement().execute("""
                 CREATE TABLE IF NOT EXISTS players (
-                    uuid TEXT PRIMARY KEY,
+                    id INTEGER PRIMARY KEY,
+                    uuid TEXT NOT NULL UNIQUE,
                     username TEXT,
                     last_seen INTEGER,
                     first_seen INTEGER DEFAULT (strftime('%s', 'now'))
                 )
                 """);
             
+            conn.createStatement().execute("""
+                CREATE TABLE IF NOT EXISTS servers (
+                    id INTEGER PRIMARY KEY,
+                    name TEXT NOT NULL UNIQUE
+                )
+                """);
+            
+            conn.createStatement().execute("""
+                CREATE TABLE IF NOT EXISTS stat_keys (
+                    id INTEGER PRIMARY KEY,
+                    key TEXT NOT NULL UNIQUE
+                )
+                """);
+            
             // Stats table - stores ALL Minecraft stats
             conn.createStatement().execute("""
                 CREATE TABLE IF NOT EXISTS player_stats (
-                    uuid TEXT,
-                    server_name TEXT,
-                    stat_key TEXT,
+                    player_id INTEGER,
+                    server_id INTEGER,
+                    stat_id INTEGER,
                     stat_value INTEGER,
                     last_updated INTEGER,
-                    PRIMARY KEY (uuid, server_name, stat_key)
-                )
+                    PRIMARY KEY (player_id, server_id, stat_id)
+                ) WITHOUT ROWID
                 """);
             
             // Events system
@@ -97,32 +195,83 @@ public class StatsSystem {
             conn.createStatement().execute("""
                 CREATE TABLE IF NOT EXISTS event_baselines (
                     event_id INTEGER,
-                    player_uuid TEXT,
-                    server_name TEXT,
+                    player_id INTEGER,
+                    server_id INTEGER,
                     baseline_value INTEGER,
-                    PRIMARY KEY (event_id, player_uuid, server_name),
+                    PRIMARY KEY (event_id, player_id, server_id),
                     FOREIGN KEY (event_id) REFERENCES events(id)
-                )
+                ) WITHOUT ROWID
                 """);
             
             // Event results
             conn.createStatement().execute("""
                 CREATE TABLE IF NOT EXISTS event_results (
                     event_id INTEGER,
-                    player_uuid TEXT,
+                    player_id INTEGER,
                     final_progress INTEGER,
                     rank INTEGER,
-                    PRIMARY KEY (event_id, player_uuid),
+                    PRIMARY KEY (event_id, player_id),
                     FOREIGN KEY (event_id) REFERENCES events(id)
-                )
+                ) WITHOUT ROWID
                 """);
             
-            // Indexes for performance
-            conn.createStatement().execute("CREATE INDEX IF NOT EXISTS idx_stats_uuid ON player_stats(uuid)");
-            conn.createStatement().execute("CREATE INDEX IF NOT EXISTS idx_stats_key ON player_stats(stat_key)");
-            conn.createStatement().execute("CREATE INDEX IF NOT EXISTS idx_stats_updated ON player_stats(last_updated)");
+            // Indexes for performance - per-player lookups use the primary key prefix
+            conn.createStatement().execute("CREATE INDEX IF NOT EXISTS idx_stats_stat ON player_stats(stat_id, stat_value)");
+            conn.createStatement().execute("CREATE INDEX IF NOT EXISTS idx_players_username ON players(username)");
             conn.createStatement().execute("CREATE INDEX IF NOT EXISTS idx_events_status ON events(status)");
             
+            // Ingest manifest - lets unchanged stat files be skipped between cycles
+            manifest.createTable(conn);
+            
+            // Hourly/daily stat deltas
+            history.createTables(conn);
+            
+            // Completed advancements - created even while disabled so turning them on later needs no migration
+            advancements.createTables(conn);
+            
+            if (legacy) {
+                StatsMigration.copyLegacyData(conn, plugin.getLogger());
+            }
+            
+            // Cross-server totals - after the legacy copy so the first fill sees the migrated rows
+            if (totals.createTable(conn)) {
+                plugin.getLogger().info("Built cross-server stat totals");
+            }
+            
+            conn.commit();
+            conn.setAutoCommit(true);
+            
+            if (legacy) {
+                // Give the space held by the old text-keyed tables back to the filesystem
+                conn.createStatement().execute("VACUUM");
+                plugin.getLogger().info("Stats database migration complete");
+            }
+            
+            dictionary.load(conn);
+            advancements.load(conn);
+            int categories = totals.fillCategories(conn, dictionary);
+            if (categories > 0) {
+                plugin.getLogger().info("Summed totals for " + categories + " new stat categories");
+            }
+            
+            // Before the manifest loads - folding a shard back in doesn't change which files were ingested
+            Set<String> behind = shards.open(conn, dictionary);
+            if (!behind.isEmpty()) {
+                plugin.getLogger().warn("Stats shards " + behind + " were saved without their totals, summing stat totals again...");
+                conn.setAutoCommit(false);
+                StatTotals.rebuild(conn, dictionary);
+                shards.align(conn);
+                conn.commit();
+                conn.setAutoCommit(true);
+            }
+            if (shards.isEnabled()) {
+                plugin.getLogger().info("Stats are sharded per server: " + String.join(", ", shards.getServers()));
+            }
+            
+            int manifestSize = manifest.load(conn);
+            plugin.getLogger().info("Loaded " + dictionary.statCount() + " stat keys, " + dictionary.playerCount() + 
+                                 " players and " + manifestSize + " ingest manifest entries");
+            
             plugin.getLogger().info("Stats database tables created successfully");
             
         } catch (SQLException e) {
@@ -146,11 +295,53 @@ public class StatsSystem {
         }
         
         plugin.getLogger().info("Loaded stats paths for " + serverStatsPaths.size() + " servers");
+        
+        // A world keeps advancements/ next to stats/
+        if (plugin.getConfig().isStatsAdvancementsEnabled()) {
+            Map<String, String> overrides = plugin.getConfig().getStatsAdvancementPaths();
+            for (Map.Entry<String, Path> entry : serverStatsPaths.entrySet()) {
+                String override = overrides.getOrDefault(entry.getKey(), "");
+                advancementPaths.put(entry.getKey(),
+                    override.isEmpty() ? entry.getValue().resolveSibling("advancements") : Path.of(override));
+            }
+            plugin.getLogger().info("Reading advancements for " + advancementPaths.size() + " servers");
+        }
     }
     
     private void startProcessing() {
+        loadEvents();
+        
+        if (columns.isEnabled() && plugin.getConfig().isStatsColumnsPreload()) {
+            scheduler.execute(this::preloadColumns);
+        }
+        
         int updateInterval = plugin.getConfig().getStatsUpdateInterval();
         
+        if (plugin.getConfig().isStatsPushEnabled()) {
+            pushReceiver = new StatsPushReceiver(plugin, ingester);
+            scheduler.scheduleAtFixedRate(pushReceiver::rotate, 1, 1, TimeUnit.MINUTES);
+        }
+        
+        // In watch mode changed files are picked up as they are saved, so the full scan only reconciles
+        if (plugin.getConfig().isStatsWatchEnabled()) {
+            try {
+                watcher = new StatsWatcher(plugin, ingester, serverStatsPaths, advancementPaths,
+                    () -> scheduler.execute(this::processAllStats));
+                updateInterval = plugin.getConfig().getStatsReconcileInterval();
+            } catch (IOException e) {
+                plugin.getLogger().error("Failed to start stats watcher, falling back to periodic scans", e);
+            }
+        }
+        
+        // With every backend pushing its values the scan only catches what the events don't fire for
+        if (pushReceiver != null && plugin.getConfig().getStatsPushReconcileInterval() > 0) {
+            updateInterval = plugin.getConfig().getStatsPushReconcileInterval();
+        }
+        
+        if (plugin.getConfig().isStatsIoSpreadScans()) {
+            scanSpreadMillis = TimeUnit.MINUTES.toMillis(updateInterval) * 8 / 10;
+        }
+        
         // Initial delay of 1 minute, then every X minutes
         scheduler.scheduleAtFixedRate(
             this::processAllStats,
@@ -159,203 +350,287 @@ public class StatsSystem {
             TimeUnit.MINUTES
         );
         
-        // Event processor - runs every minute
-        scheduler.scheduleAtFixedRate(
-            this::processEvents,
-            0,
-            1,
-            TimeUnit.MINUTES
-        );
+        // History rollup - hourly is plenty, rows only age out a day at a time
+        if (plugin.getConfig().isStatsHistoryEnabled()) {
+            scheduler.scheduleAtFixedRate(
+                this::rollupHistory,
+                5,
+                60,
+                TimeUnit.MINUTES
+            );
+        }
+        
+        if (plugin.getConfig().isStatsBackupEnabled()) {
+            long interval = Math.max(1, plugin.getConfig().getStatsBackupIntervalHours()) * 60L;
+            scheduler.scheduleAtFixedRate(this::runBackup, interval, interval, TimeUnit.MINUTES);
+        }
         
         plugin.getLogger().info("Stats processing scheduled every " + updateInterval + " minutes");
     }
     
-    private void processAllStats() {
-        plugin.getLogger().info("Starting stats processing cycle...");
-        long startTime = System.currentTimeMillis();
-        int totalProcessed = 0;
-        
-        for (Map.Entry<String, Path> entry : serverStatsPaths.entrySet()) {
-            String serverName = entry.getKey();
-            Path statsPath = entry.getValue();
-            
-            if (!Files.exists(statsPath)) {
-                plugin.getLogger().warn("Stats path not found for " + serverName + ": " + statsPath);
-                continue;
+    // Before the ingester starts, from then on the writer keeps it current
+    private void loadCatalog() {
+        try (Connection conn = readers.getConnection()) {
+            long start = System.currentTimeMillis();
+            int loaded = catalog.load(conn);
+            plugin.getLogger().info("Cataloged " + loaded + " stat keys in " + (System.currentTimeMillis() - start) + "ms");
+        } catch (SQLException e) {
+            plugin.getLogger().error("Failed to load the stat key catalog", e);
+        }
+    }
+    
+    private void preloadColumns() {
+        try {
+            long start = System.currentTimeMillis();
+            int loaded = columns.preload();
+            plugin.getLogger().info("Loaded " + loaded + " stat columns (" + columns.getResidentBytes() / 1024 + " KB) in " + 
+                                 (System.currentTimeMillis() - start) + "ms");
+        } catch (SQLException e) {
+            plugin.getLogger().error("Failed to preload stat columns", e);
+        }
+    }
+    
+    private StatsBackup.Snapshot runBackup() {
+        try {
+            plugin.getLogger().info("Starting stats backup...");
+            StatsBackup.Snapshot snapshot = backup.run();
+            if (snapshot == null) {
+                plugin.getLogger().warn("Stats backup skipped, another one is still running");
+                return null;
             }
             
-            try (Stream<Path> files = Files.list(statsPath)) {
-                List<Path> statFiles = files
-                    .filter(p -> p.toString().endsWith(".json"))
-                    .toList();
-                
-                plugin.getLogger().info("Processing " + statFiles.size() + " stat files for " + serverName);
-                
-                for (Path statFile : statFiles) {
-                    if (processPlayerStats(statFile, serverName)) {
-                        totalProcessed++;
-                    }
-                }
-                
-            } catch (IOException e) {
-                plugin.getLogger().error("Failed to read stats directory for " + serverName, e);
+            plugin.getLogger().info("Stats backup " + snapshot.name() + " complete: " + snapshot.files() + " files, " + 
+                                 snapshot.databaseBytes() / 1024 + " KB compressed to " + snapshot.archiveBytes() / 1024 + 
+                                 " KB, copied in " + snapshot.copyMillis() + "ms, " + snapshot.totalMillis() + "ms total");
+            return snapshot;
+        } catch (SQLException | IOException e) {
+            plugin.getLogger().error("Failed to back up the stats database", e);
+            return null;
+        }
+    }
+    
+    private void rollupHistory() {
+        try (Connection conn = dataSource.getConnection()) {
+            int rolled = history.rollup(conn, System.currentTimeMillis() / 1000,
+                plugin.getConfig().getStatsHistoryHourlyRetentionDays(),
+                plugin.getConfig().getStatsHistoryDailyRetentionDays());
+            
+            if (rolled > 0 && plugin.getConfig().isDebug()) {
+                plugin.getLogger().info("Rolled " + rolled + " hourly stat history rows up into days");
             }
+        } catch (SQLException e) {
+            plugin.getLogger().error("Failed to roll up stat history", e);
         }
-        
-        long duration = System.currentTimeMillis() - startTime;
-        plugin.getLogger().info("Stats processing complete! Processed " + totalProcessed + 
-                             " files in " + duration + "ms");
     }
     
-    private boolean processPlayerStats(Path statsFile, String serverName) {
+    void processAllStats() {
+        // An overflow-triggered scan can land while the scheduled one is still going
+        if (!fullScanRunning.compareAndSet(false, true)) {
+            return;
+        }
+        
+        plugin.getLogger().info("Starting stats processing cycle...");
+        
         try {
-            String fileName = statsFile.getFileName().toString();
-            String uuidString = fileName.replace(".json", "");
+            IngestCycle cycle = ingester.runCycle(serverStatsPaths, scanSpreadMillis);
             
-            // Validate UUID format
-            try {
-                UUID.fromString(uuidString);
-            } catch (IllegalArgumentException e) {
-                return false;
+            for (Map.Entry<String, IngestCycle.Counts> entry : cycle.getServers().entrySet()) {
+                IngestCycle.Counts counts = entry.getValue();
+                plugin.getLogger().info("Stats for " + entry.getKey() + ": scanned " + counts.scanned.get() + 
+                                     ", skipped " + counts.skipped.get() + ", ingested " + counts.ingested.get());
             }
             
-            // Read and parse stats
-            String content = Files.readString(statsFile);
-            JsonObject data = gson.fromJson(content, JsonObject.class);
+            IngestCycle.Counts totals = cycle.getTotals();
+            long duration = System.currentTimeMillis() - cycle.getStartTime();
+            plugin.getLogger().info("Stats processing complete! Scanned " + totals.scanned.get() + " files, skipped " + 
+                                 totals.skipped.get() + ", ingested " + totals.ingested.get() + 
+                                 (totals.failed.get() > 0 ? ", failed " + totals.failed.get() : "") + 
+                                 " in " + duration + "ms (rows changed " + totals.rowsChanged.get() + 
+                                 ", unchanged " + totals.rowsUnchanged.get() + ", deleted " + totals.rowsDeleted.get() + 
+                                 ", " + cycle.getCommits() + " commits)");
             
-            if (!data.has("stats")) {
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            fullScanRunning.set(false);
+        }
+    }
+    
+    String resolveUsername(String uuid) {
+        return usernameResolver.resolve(uuid);
+    }
+    
+    // null when stats.push is off
+    public StatsPushReceiver getPushReceiver() {
+        return pushReceiver;
+    }
+    
+    long getMojangLookups() {
+        return usernameResolver.getLookups();
+    }
+    
+    public JsonObject getIngestStatus(String trigger, int limit) {
+        JsonObject result = ingester.getMetrics().toJson(trigger, limit);
+        
+        JsonObject usernames = new JsonObject();
+        usernames.addProperty("cached", usernameResolver.getCachedUsernames());
+        usernames.addProperty("queued_lookups", usernameResolver.getQueuedLookups());
+        usernames.addProperty("lookups_total", usernameResolver.getLookups());
+        result.add("usernames", usernames);
+        
+        result.addProperty("top_cache_keys", topPlayers.getHotKeys());
+        result.add("columns", columns.toJson());
+        result.add("stat_keys", catalog.toJson());
+        result.add("backup", backup.toJson());
+        result.add("io_budgets", ingester.getGovernor().toJson());
+        if (pushReceiver != null) {
+            result.add("pushes", pushReceiver.toJson());
+        }
+        result.addProperty("advancement_keys", advancements.count());
+        
+        com.google.gson.JsonArray sharded = new com.google.gson.JsonArray();
+        shards.getServers().forEach(sharded::add);
+        result.add("sharded_servers", sharded);
+        
+        JsonObject pools = new JsonObject();
+        pools.add("writer", writerWaits.toJson());
+        pools.add("readers", readerWaits.toJson());
+        result.add("connection_pools", pools);
+        result.addProperty("watching", watcher != null);
+        result.addProperty("success", true);
+        return result;
+    }
+    
+    public List<IngestMetrics.CycleMetrics> getRecentCycles(String trigger, int limit) {
+        return ingester.getMetrics().recent(trigger, limit);
+    }
+    
+    public PoolWaitTracker getWriterWaits() {
+        return writerWaits;
+    }
+    
+    public PoolWaitTracker getReaderWaits() {
+        return readerWaits;
+    }
+    
+    public StatColumns getColumns() {
+        return columns;
+    }
+    
+    public StatKeyCatalog getCatalog() {
+        return catalog;
+    }
+    
+    public StatsBackup getBackup() {
+        return backup;
+    }
+    
+    /**
+     * takes a snapshot now - completes with null if it failed or one was already running
+     */
+    public CompletableFuture<StatsBackup.Snapshot> backupNow() {
+        return CompletableFuture.supplyAsync(this::runBackup);
+    }
+    
+    /**
+     * unpacks a snapshot to replace the stats database on the next start
+     */
+    public CompletableFuture<Boolean> stageRestore(String name) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                backup.stage(name);
+                plugin.getLogger().warn("Stats snapshot " + name + " staged, it replaces the stats database on the next start");
+                return true;
+            } catch (SQLException | IOException e) {
+                plugin.getLogger().error("Failed to stage stats snapshot " + name, e);
                 return false;
             }
-            
-            JsonObject stats = data.getAsJsonObject("stats");
-            long lastModified = Files.getLastModifiedTime(statsFile).toMillis() / 1000;
-            
-            // Update player info
-            updatePlayerInfo(uuidString, lastModified);
-            
-            // Process all stats
-            try (Connection conn = dataSource.getConnection()) {
-                conn.setAutoCommit(false);
-                
-                // Clear old stats for this player/server
-                try (PreparedStatement ps = conn.prepareStatement(
-                    "DELETE FROM player_stats WHERE uuid = ? AND server_name = ?")) {
-                    ps.setString(1, uuidString);
-                    ps.setString(2, serverName);
-                    ps.executeUpdate();
-                }
-                
-                // Insert all stats
-                try (PreparedStatement ps = conn.prepareStatement(
-                    "INSERT INTO player_stats (uuid, server_name, stat_key, stat_value, last_updated) " +
-                    "VALUES (?, ?, ?, ?, ?)")) {
-                    
-                    for (Map.Entry<String, com.google.gson.JsonElement> category : stats.entrySet()) {
-                        String categoryName = category.getKey();
-                        JsonObject categoryStats = category.getValue().getAsJsonObject();
-                        
-                        for (Map.Entry<String, com.google.gson.JsonElement> stat : categoryStats.entrySet()) {
-                            String statKey = categoryName + ":" + stat.getKey();
-                            long value = stat.getValue().getAsLong();
-                            
-                            ps.setString(1, uuidString);
-                            ps.setString(2, serverName);
-                            ps.setString(3, statKey);
-                            ps.setLong(4, value);
-                            ps.setLong(5, lastModified);
-                            ps.addBatch();
-                        }
-                    }
-                    
-                    ps.executeBatch();
-                }
-                
-                conn.commit();
-                return true;
-                
+        });
+    }
+    
+    public Set<String> getServerNames() {
+        return serverStatsPaths.keySet();
+    }
+    
+    /**
+     * drops every stat row of one server and ingests its files again - with sharding only that
+     * server's file is emptied. completes false for an unknown server or a failed rebuild
+     */
+    public CompletableFuture<Boolean> rebuildServer(String serverName) {
+        if (!serverStatsPaths.containsKey(serverName)) {
+            return CompletableFuture.completedFuture(false);
+        }
+        
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                ingester.rebuildServer(serverName);
             } catch (SQLException e) {
-                plugin.getLogger().error("Failed to save stats for " + uuidString, e);
+                plugin.getLogger().error("Failed to drop the stats of " + serverName, e);
                 return false;
             }
             
-        } catch (IOException e) {
-            plugin.getLogger().error("Failed to read stats file: " + statsFile, e);
-            return false;
-        }
+            plugin.getLogger().info("Dropped the stats of " + serverName + ", ingesting them again");
+            processAllStats();
+            return true;
+        });
     }
     
-    private void updatePlayerInfo(String uuid, long lastSeen) {
-        // Check if we need to fetch username
-        String username = uuidToUsername.get(uuid);
-        
-        if (username == null) {
-            // Check if we've queried recently (rate limiting)
-            Long lastQuery = lastMojangQuery.get(uuid);
-            long now = System.currentTimeMillis();
-            
-            if (lastQuery == null || now - lastQuery > 3600000) { // 1 hour
-                username = fetchUsernameFromMojang(uuid);
-                lastMojangQuery.put(uuid, now);
-            }
-        }
-        
+    // Names the proxy sees at login are authoritative and save a lookup later
+    public void rememberUsername(UUID uuid, String username) {
+        usernameResolver.remember(uuid.toString(), username);
+    }
+    
+    // A background lookup finished - fill in the name without waiting for the player's next stat save
+    private void storeResolvedUsername(String uuid, String username) {
         try (Connection conn = dataSource.getConnection();
              PreparedStatement ps = conn.prepareStatement(
-                 "INSERT OR REPLACE INTO players (uuid, username, last_seen) VALUES (?, ?, ?)")) {
+                 "INSERT INTO players (uuid, username) VALUES (?, ?) " +
+                 "ON CONFLICT (uuid) DO UPDATE SET username = excluded.username")) {
             
             ps.setString(1, uuid);
             ps.setString(2, username);
-            ps.setLong(3, lastSeen);
             ps.executeUpdate();
             
         } catch (SQLException e) {
-            plugin.getLogger().error("Failed to update player info for " + uuid, e);
+            plugin.getLogger().error("Failed to store username for " + uuid, e);
         }
     }
     
-    private String fetchUsernameFromMojang(String uuid) {
-        try {
-            URL url = new URL("https://sessionserver.mojang.com/session/minecraft/profile/" + uuid);
-            HttpURLConnection conn = (HttpURLConnection) url.openConnection();
-            conn.setRequestMethod("GET");
-            conn.setConnectTimeout(5000);
-            conn.setReadTimeout(5000);
-            
-            if (conn.getResponseCode() == 200) {
-                String response = new String(conn.getInputStream().readAllBytes());
-                JsonObject profile = gson.fromJson(response, JsonObject.class);
-                String username = profile.get("name").getAsString();
-                
-                uuidToUsername.put(uuid, username);
-                return username;
-            }
-        } catch (Exception e) {
-            // Silently fail - we'll try again later
-        }
-        
-        return null;
-    }
-    
     // ===== EVENTS SYSTEM =====
     
     public CompletableFuture<Boolean> createEvent(String name, String statKey, 
                                                   LocalDateTime start, LocalDateTime end, 
                                                   String creator) {
         return CompletableFuture.supplyAsync(() -> {
+            // The command passes local times - convert with the proxy's zone so the event starts when asked
+            long startTime = start.atZone(ZoneId.systemDefault()).toEpochSecond();
+            long endTime = end.atZone(ZoneId.systemDefault()).toEpochSecond();
+            String eventName = name.toLowerCase().replace(" ", "_");
+            
             try (Connection conn = dataSource.getConnection();
                  PreparedStatement ps = conn.prepareStatement(
                      "INSERT INTO events (name, display_name, stat_key, start_time, end_time, created_by) " +
-                     "VALUES (?, ?, ?, ?, ?, ?)")) {
+                     "VALUES (?, ?, ?, ?, ?, ?)", Statement.RETURN_GENERATED_KEYS)) {
                 
-                ps.setString(1, name.toLowerCase().replace(" ", "_"));
+                ps.setString(1, eventName);
                 ps.setString(2, name);
                 ps.setString(3, statKey);
-                ps.setLong(4, start.toEpochSecond(java.time.ZoneOffset.UTC));
-                ps.setLong(5, end.toEpochSecond(java.time.ZoneOffset.UTC));
+                ps.setLong(4, startTime);
+                ps.setLong(5, endTime);
                 ps.setString(6, creator);
                 
                 ps.executeUpdate();
                 
+                // The start runs in one transaction, where the dictionary can't add the key itself
+                if (dictionary.statId(statKey) == null) {
+                    dictionary.ensure(conn, List.of(statKey), List.of(), List.of());
+                }
+                
+                ResultSet keys = ps.getGeneratedKeys();
+                if (keys.next()) {
+                    events.add(keys.getInt(1), eventName, statKey, startTime, endTime);
+                }
+                
                 plugin.getLogger().info("Event created: " + name + " tracking " + statKey);
                 return true;
                 
@@ -366,46 +641,67 @@ public class StatsSystem {
         });
     }
     
-    private void processEvents() {
+    // Starts and ends are timed by the registry - live leaderboards for events that were
+    // already running when the proxy stopped are rebuilt before it takes over, with the writers paused
+    private void loadEvents() {
+        ingester.writerPause().lock();
         try (Connection conn = dataSource.getConnection()) {
-            long now = Instant.now().getEpochSecond();
-            
-            // Activate pending events
-            conn.createStatement().executeUpdate(
-                "UPDATE events SET status = 'active' WHERE status = 'pending' AND start_time <= " + now
-            );
-            
-            // Create baselines for newly active events
-            try (PreparedStatement ps = conn.prepareStatement(
-                "SELECT id, stat_key FROM events WHERE status = 'active' AND " +
-                "id NOT IN (SELECT DISTINCT event_id FROM event_baselines)")) {
-                
+            List<Integer> active = new ArrayList<>();
+            try (PreparedStatement ps = conn.prepareStatement("SELECT id FROM events WHERE status = 'active'")) {
                 ResultSet rs = ps.executeQuery();
                 while (rs.next()) {
-                    createEventBaselines(conn, rs.getInt("id"), rs.getString("stat_key"));
+                    active.add(rs.getInt(1));
                 }
             }
             
-            // Finish ended events
-            try (PreparedStatement ps = conn.prepareStatement(
-                "SELECT id FROM events WHERE status = 'active' AND end_time <= " + now)) {
-                
+            for (int eventId : active) {
+                leaderboards.activate(conn, eventId);
+            }
+            
+            // Events created before their stat key was ever ingested still need an id before they start
+            List<String> statKeys = new ArrayList<>();
+            try (PreparedStatement ps = conn.prepareStatement("SELECT DISTINCT stat_key FROM events WHERE status = 'pending'")) {
                 ResultSet rs = ps.executeQuery();
                 while (rs.next()) {
-                    finishEvent(conn, rs.getInt("id"));
+                    if (dictionary.statId(rs.getString(1)) == null) {
+                        statKeys.add(rs.getString(1));
+                    }
                 }
             }
+            if (!statKeys.isEmpty()) {
+                dictionary.ensure(conn, statKeys, List.of(), List.of());
+            }
+            
+            if (!active.isEmpty()) {
+                plugin.getLogger().info("Rebuilt live leaderboards for " + active.size() + " active events");
+            }
+            
+            events.load(conn);
             
         } catch (SQLException e) {
-            plugin.getLogger().error("Failed to process events", e);
+            plugin.getLogger().error("Failed to load events", e);
+        } finally {
+            ingester.writerPause().unlock();
+        }
+    }
+    
+    private void startEvent(Connection conn, EventRegistry.Event event) throws SQLException {
+        // Baselines and the status change commit together - the registry runs the start in one transaction
+        createEventBaselines(conn, event.getId(), event.getStatKey());
+        
+        try (PreparedStatement ps = conn.prepareStatement(
+            "UPDATE events SET status = 'active' WHERE id = ?")) {
+            ps.setInt(1, event.getId());
+            ps.executeUpdate();
         }
     }
     
     private void createEventBaselines(Connection conn, int eventId, String statKey) throws SQLException {
         // Snapshot current values for this stat
         try (PreparedStatement ps = conn.prepareStatement(
-            "INSERT INTO event_baselines (event_id, player_uuid, server_name, baseline_value) " +
-            "SELECT ?, uuid, server_name, stat_value FROM player_stats WHERE stat_key = ?")) {
+            "INSERT OR IGNORE INTO event_baselines (event_id, player_id, server_id, baseline_value) " +
+            "SELECT ?, player_id, server_id, stat_value FROM player_stats " +
+            "WHERE stat_id = (SELECT id FROM stat_keys WHERE key = ?)")) {
             
             ps.setInt(1, eventId);
             ps.setString(2, statKey);
@@ -413,28 +709,42 @@ public class StatsSystem {
             
             plugin.getLogger().info("Created baselines for event " + eventId);
         }
+        
+        leaderboards.activate(conn, eventId);
     }
     
-    private void finishEvent(Connection conn, int eventId) throws SQLException {
+    private void finishEvent(Connection conn, int eventId, String statKey) throws SQLException {
         // Calculate final rankings
+        // Progress is summed across servers - a player can have a baseline on each of them
+        // A retry after a failed finish starts from a clean slate
+        try (PreparedStatement ps = conn.prepareStatement("DELETE FROM event_results WHERE event_id = ?")) {
+            ps.setInt(1, eventId);
+            ps.executeUpdate();
+        }
+        
         String sql = """
-            INSERT INTO event_results (event_id, player_uuid, final_progress, rank)
-            SELECT 
-                eb.event_id,
-                eb.player_uuid,
-                COALESCE(ps.stat_value, 0) - COALESCE(eb.baseline_value, 0) as progress,
-                RANK() OVER (ORDER BY COALESCE(ps.stat_value, 0) - COALESCE(eb.baseline_value, 0) DESC) as rank
-            FROM event_baselines eb
-            LEFT JOIN events e ON e.id = eb.event_id
-            LEFT JOIN player_stats ps ON 
-                ps.uuid = eb.player_uuid AND 
-                ps.server_name = eb.server_name AND 
-                ps.stat_key = e.stat_key
-            WHERE eb.event_id = ?
+            INSERT INTO event_results (event_id, player_id, final_progress, rank)
+            SELECT event_id, player_id, progress, RANK() OVER (ORDER BY progress DESC) as rank
+            FROM (
+                SELECT 
+                    eb.event_id,
+                    eb.player_id,
+                    SUM(COALESCE(ps.stat_value, 0) - COALESCE(eb.baseline_value, 0)) as progress
+                FROM event_baselines eb
+                LEFT JOIN player_stats ps ON 
+                    ps.player_id = eb.player_id AND 
+                    ps.server_id = eb.server_id AND 
+                    ps.stat_id = ?
+                WHERE eb.event_id = ?
+                GROUP BY eb.player_id
+            )
             """;
             
+        // The stat id is bound rather than joined - with shards player_stats is a view, and only a
+        // constant lets sqlite narrow it to one stat before the join
         try (PreparedStatement ps = conn.prepareStatement(sql)) {
-            ps.setInt(1, eventId);
+            ps.setObject(1, dictionary.statId(statKey));
+            ps.setInt(2, eventId);
             ps.executeUpdate();
         }
         
@@ -445,37 +755,117 @@ public class StatsSystem {
             ps.executeUpdate();
         }
         
+        leaderboards.remove(eventId);
         plugin.getLogger().info("Finished event " + eventId);
     }
     
     // ===== API METHODS =====
     
     public JsonObject getPlayerStats(String username) {
+        return getPlayerStats(username, List.of(), List.of(), List.of(), false);
+    }
+    
+    /**
+     * a player's stats, narrowed in the query - fields are exact keys, prefixes match key ranges and a
+     * stat is returned if it matches either, servers limits the rows to those servers. empty means no filter.
+     * aggregate sums every server into one "totals" object instead of one object per server
+     */
+    public JsonObject getPlayerStats(String username, Collection<String> fields, Collection<String> prefixes,
+                                     Collection<String> servers, boolean aggregate) {
         JsonObject result = new JsonObject();
         
-        try (Connection conn = dataSource.getConnection();
-             PreparedStatement ps = conn.prepareStatement(
-                 "SELECT s.*, p.username FROM player_stats s " +
-                 "JOIN players p ON s.uuid = p.uuid " +
-                 "WHERE p.username = ?")) {
+        List<Integer> statIds = new ArrayList<>();
+        for (String field : fields) {
+            Integer statId = dictionary.statId(field);
+            if (statId != null) {
+                statIds.add(statId);
+            }
+        }
+        List<Integer> serverIds = new ArrayList<>();
+        for (String server : servers) {
+            Integer serverId = dictionary.serverId(server);
+            if (serverId != null) {
+                serverIds.add(serverId);
+            }
+        }
+        
+        // Nothing asked for is known - no need to ask the database
+        boolean statFilter = !fields.isEmpty() || !prefixes.isEmpty();
+        if ((statFilter && statIds.isEmpty() && prefixes.isEmpty()) || (!servers.isEmpty() && serverIds.isEmpty())) {
+            result.add(aggregate ? "totals" : "servers", new JsonObject());
+            result.addProperty("success", true);
+            return result;
+        }
+        
+        // Summed over every server the totals are already kept per player - categories included, when asked for by name
+        boolean fromTotals = aggregate && servers.isEmpty();
+        StringBuilder sql = new StringBuilder();
+        if (fromTotals) {
+            sql.append("SELECT k.key AS stat_key, t.total AS stat_value FROM player_stat_totals t " +
+                       "JOIN stat_keys k ON k.id = t.stat_id WHERE t.player_id = ");
+        } else if (aggregate) {
+            sql.append("SELECT k.key AS stat_key, SUM(t.stat_value) AS stat_value FROM player_stats t " +
+                       "JOIN stat_keys k ON k.id = t.stat_id WHERE t.player_id = ");
+        } else {
+            sql.append("SELECT sv.name AS server_name, k.key AS stat_key, t.stat_value FROM player_stats t " +
+                       "JOIN servers sv ON sv.id = t.server_id JOIN stat_keys k ON k.id = t.stat_id WHERE t.player_id = ");
+        }
+        sql.append("(SELECT id FROM players WHERE username = ? ORDER BY last_seen DESC LIMIT 1)");
+        
+        if (!serverIds.isEmpty()) {
+            sql.append(" AND t.server_id IN (").append(String.join(",", Collections.nCopies(serverIds.size(), "?"))).append(")");
+        }
+        if (statFilter) {
+            List<String> matches = new ArrayList<>();
+            if (!statIds.isEmpty()) {
+                matches.add("t.stat_id IN (" + String.join(",", Collections.nCopies(statIds.size(), "?")) + ")");
+            }
+            // A prefix is a range of the unique key index; category totals only come back by name
+            for (int i = 0; i < prefixes.size(); i++) {
+                matches.add("(k.key >= ? AND k.key < ? AND substr(k.key, -2) <> ':*')");
+            }
+            sql.append(" AND (").append(String.join(" OR ", matches)).append(")");
+        } else if (fromTotals) {
+            sql.append(" AND substr(k.key, -2) <> ':*'");
+        }
+        if (aggregate && !fromTotals) {
+            sql.append(" GROUP BY t.stat_id");
+        }
+        
+        try (Connection conn = readers.getConnection();
+             PreparedStatement ps = conn.prepareStatement(sql.toString())) {
             
-            ps.setString(1, username);
+            int index = 1;
+            ps.setString(index++, username);
+            for (int serverId : serverIds) {
+                ps.setInt(index++, serverId);
+            }
+            for (int statId : statIds) {
+                ps.setInt(index++, statId);
+            }
+            for (String prefix : prefixes) {
+                ps.setString(index++, prefix);
+                ps.setString(index++, prefix + Character.MAX_VALUE);
+            }
             ResultSet rs = ps.executeQuery();
             
-            JsonObject servers = new JsonObject();
-            while (rs.next()) {
-                String server = rs.getString("server_name");
-                String statKey = rs.getString("stat_key");
-                long value = rs.getLong("stat_value");
-                
-                if (!servers.has(server)) {
-                    servers.add(server, new JsonObject());
+            if (aggregate) {
+                JsonObject totals = new JsonObject();
+                while (rs.next()) {
+                    totals.addProperty(rs.getString("stat_key"), rs.getLong("stat_value"));
                 }
-                
-                servers.getAsJsonObject(server).addProperty(statKey, value);
+                result.add("totals", totals);
+            } else {
+                JsonObject serverStats = new JsonObject();
+                while (rs.next()) {
+                    String server = rs.getString("server_name");
+                    if (!serverStats.has(server)) {
+                        serverStats.add(server, new JsonObject());
+                    }
+                    serverStats.getAsJsonObject(server).addProperty(rs.getString("stat_key"), rs.getLong("stat_value"));
+                }
+                result.add("servers", serverStats);
             }
-            
-            result.add("servers", servers);
             result.addProperty("success", true);
             
         } catch (SQLException e) {
@@ -486,55 +876,423 @@ public class StatsSystem {
         return result;
     }
     
+    /**
+     * statKey can be a single key, a category ("minecraft:mined:*", summed during ingest)
+     * or any other * pattern, which is summed over its matching keys here
+     */
     public JsonObject getTopPlayers(String statKey, int limit) {
         JsonObject result = new JsonObject();
+        com.google.gson.JsonArray players = new com.google.gson.JsonArray();
+        Integer statId = dictionary.statId(statKey);
+        List<Integer> statIds = statId == null ? dictionary.resolve(statKey) : List.of(statId);
         
-        try (Connection conn = dataSource.getConnection();
+        if (!statIds.isEmpty()) {
+            try {
+                List<RankTree.Entry> top = null;
+                if (statId != null) {
+                    // Resident stat columns answer any key and limit from memory - without them frequently
+                    // asked keys come from the top cache, everything else reads the totals index
+                    top = columns.top(statId, limit);
+                    if (top == null) {
+                        top = topPlayers.top(statId, limit, this::loadTopTotals);
+                    }
+                }
+                if (top == null) {
+                    top = new ArrayList<>();
+                    List<long[]> rows = statId != null ? loadTopTotals(statId, limit) : loadTopTotals(statIds, limit);
+                    for (long[] row : rows) {
+                        top.add(new RankTree.Entry((int) row[0], row[1], top.size() + 1));
+                    }
+                }
+                
+                Map<Integer, String> usernames = getUsernames(top.stream().map(RankTree.Entry::playerId).toList());
+                for (RankTree.Entry entry : top) {
+                    JsonObject player = new JsonObject();
+                    player.addProperty("username", usernames.get(entry.playerId()));
+                    player.addProperty("value", entry.score());
+                    players.add(player);
+                }
+                
+            } catch (SQLException e) {
+                result.addProperty("success", false);
+                result.addProperty("error", e.getMessage());
+                return result;
+            }
+        }
+        
+        result.add("players", players);
+        result.addProperty("success", true);
+        return result;
+    }
+    
+    // one pass over the totals of every matched key
+    private List<long[]> loadTopTotals(List<Integer> statIds, int limit) throws SQLException {
+        List<long[]> rows = new ArrayList<>();
+        String placeholders = String.join(",", Collections.nCopies(statIds.size(), "?"));
+        try (Connection conn = readers.getConnection();
              PreparedStatement ps = conn.prepareStatement(
-                 "SELECT p.username, SUM(s.stat_value) as total " +
-                 "FROM player_stats s " +
-                 "JOIN players p ON s.uuid = p.uuid " +
-                 "WHERE s.stat_key = ? " +
-                 "GROUP BY s.uuid " +
+                 "SELECT player_id, SUM(total) AS total FROM player_stat_totals " +
+                 "WHERE stat_id IN (" + placeholders + ") " +
+                 "GROUP BY player_id " +
                  "ORDER BY total DESC " +
                  "LIMIT ?")) {
             
-            ps.setString(1, statKey);
-            ps.setInt(2, limit);
+            for (int i = 0; i < statIds.size(); i++) {
+                ps.setInt(i + 1, statIds.get(i));
+            }
+            ps.setInt(statIds.size() + 1, limit);
             ResultSet rs = ps.executeQuery();
-            
-            com.google.gson.JsonArray players = new com.google.gson.JsonArray();
             while (rs.next()) {
-                JsonObject player = new JsonObject();
-                player.addProperty("username", rs.getString("username"));
-                player.addProperty("value", rs.getLong("total"));
-                players.add(player);
+                rows.add(new long[] { rs.getInt(1), rs.getLong(2) });
+            }
+        }
+        return rows;
+    }
+    
+    /**
+     * catalog entries of the keys starting with prefix, in key order - count is how many match,
+     * keys holds the first `limit`
+     */
+    public JsonObject getStatKeys(String prefix, int limit) {
+        JsonObject result = new JsonObject();
+        com.google.gson.JsonArray keys = new com.google.gson.JsonArray();
+        result.addProperty("prefix", prefix);
+        
+        try {
+            for (StatKeyCatalog.Summary summary : catalog.list(prefix, limit)) {
+                keys.add(summary.toJson());
+            }
+            result.addProperty("count", catalog.count(prefix));
+            result.add("keys", keys);
+            result.addProperty("success", true);
+            
+        } catch (SQLException e) {
+            result.addProperty("success", false);
+            result.addProperty("error", e.getMessage());
+        }
+        
+        return result;
+    }
+    
+    /**
+     * players, min, max and sum of one stat key or category from the catalog
+     */
+    public JsonObject getStatKeyInfo(String statKey) {
+        JsonObject result = new JsonObject();
+        
+        try {
+            StatKeyCatalog.Summary summary = catalog.summary(statKey);
+            if (summary == null) {
+                result.addProperty("success", false);
+                result.addProperty("error", "Unknown stat key");
+                return result;
             }
+            result = summary.toJson();
+            result.addProperty("success", true);
             
-            result.add("players", players);
+        } catch (SQLException e) {
+            result.addProperty("success", false);
+            result.addProperty("error", e.getMessage());
+        }
+        
+        return result;
+    }
+    
+    /**
+     * one player's total for a key, category or pattern, summed over every server
+     */
+    public JsonObject getStatTotal(String username, String selector) {
+        JsonObject result = new JsonObject();
+        Integer statId = dictionary.statId(selector);
+        List<Integer> statIds = statId == null ? dictionary.resolve(selector) : List.of(statId);
+        
+        result.addProperty("username", username);
+        result.addProperty("selector", selector);
+        // a category is one pre-summed id, report how many keys went into it
+        result.addProperty("keys", StatsDictionary.isCategory(selector) ? dictionary.resolve(selector).size() : statIds.size());
+        
+        if (statIds.isEmpty()) {
+            result.addProperty("total", 0);
             result.addProperty("success", true);
+            return result;
+        }
+        
+        String placeholders = String.join(",", Collections.nCopies(statIds.size(), "?"));
+        try (Connection conn = readers.getConnection();
+             PreparedStatement ps = conn.prepareStatement(
+                 "SELECT COALESCE(SUM(t.total), 0) FROM player_stat_totals t " +
+                 "WHERE t.player_id = (SELECT id FROM players WHERE username = ? ORDER BY last_seen DESC LIMIT 1) " +
+                 "AND t.stat_id IN (" + placeholders + ")")) {
+            
+            ps.setString(1, username);
+            for (int i = 0; i < statIds.size(); i++) {
+                ps.setInt(i + 2, statIds.get(i));
+            }
+            ResultSet rs = ps.executeQuery();
+            result.addProperty("total", rs.next() ? rs.getLong(1) : 0);
+            result.addProperty("success", true);
+            
+        } catch (SQLException e) {
+            result.addProperty("success", false);
+            result.addProperty("error", e.getMessage());
+        }
+        
+        return result;
+    }
+    
+    /**
+     * a player's rank and percentile for one stat key or category, from its stat column when the
+     * column store is on - percentile is the share of players ranked at or below them
+     */
+    public JsonObject getStatRank(String username, String statKey) {
+        JsonObject result = new JsonObject();
+        result.addProperty("username", username);
+        
+        try (Connection conn = readers.getConnection();
+             PreparedStatement ps = conn.prepareStatement(
+                 "SELECT id FROM players WHERE username = ? ORDER BY last_seen DESC LIMIT 1")) {
+            
+            ps.setString(1, username);
+            ResultSet rs = ps.executeQuery();
+            if (!rs.next()) {
+                result.addProperty("success", false);
+                result.addProperty("error", "Player not found");
+                return result;
+            }
+            return statRank(result, rs.getInt(1), statKey);
             
         } catch (SQLException e) {
             result.addProperty("success", false);
             result.addProperty("error", e.getMessage());
+            return result;
+        }
+    }
+    
+    public JsonObject getStatRank(UUID uuid, String statKey) {
+        JsonObject result = new JsonObject();
+        Integer playerId = dictionary.playerId(uuid.toString());
+        if (playerId == null) {
+            result.addProperty("success", false);
+            result.addProperty("error", "Player has no stats yet");
+            return result;
+        }
+        
+        try {
+            return statRank(result, playerId, statKey);
+        } catch (SQLException e) {
+            result.addProperty("success", false);
+            result.addProperty("error", e.getMessage());
+            return result;
+        }
+    }
+    
+    private JsonObject statRank(JsonObject result, int playerId, String statKey) throws SQLException {
+        Integer statId = dictionary.statId(statKey);
+        result.addProperty("stat", statKey);
+        if (statId == null) {
+            result.addProperty("success", false);
+            result.addProperty("error", statKey.contains("*") ? 
+                "Rank needs a single stat key or category" : "Unknown stat key");
+            return result;
+        }
+        
+        StatColumns.Standing standing = columns.isEnabled() ? 
+            columns.standing(statId, playerId) : loadStanding(statId, playerId);
+        if (standing == null) {
+            result.addProperty("success", false);
+            result.addProperty("error", "Player has no value for this stat");
+            return result;
+        }
+        
+        result.addProperty("value", standing.score());
+        result.addProperty("rank", standing.rank());
+        result.addProperty("players", standing.players());
+        result.addProperty("percentile", percentile(standing.rank(), standing.players()));
+        result.addProperty("success", true);
+        return result;
+    }
+    
+    /**
+     * share of players ranked at or below `rank`, in percent to two decimals - ties share the better rank,
+     * so the first place is always 100. the api and the in-game commands all show this number
+     */
+    public static double percentile(int rank, int players) {
+        return players > 0 ? Math.round(10000.0 * (players - rank + 1) / players) / 100.0 : 0;
+    }
+    
+    // without the column store rank and player count come from one pass over the stat's totals index
+    private StatColumns.Standing loadStanding(int statId, int playerId) throws SQLException {
+        try (Connection conn = readers.getConnection();
+             PreparedStatement ps = conn.prepareStatement(
+                 "SELECT p.total, SUM(t.total > p.total) + 1, COUNT(*) " +
+                 "FROM player_stat_totals p JOIN player_stat_totals t ON t.stat_id = p.stat_id " +
+                 "WHERE p.stat_id = ? AND p.player_id = ?")) {
+            
+            ps.setInt(1, statId);
+            ps.setInt(2, playerId);
+            ResultSet rs = ps.executeQuery();
+            // the aggregate always returns a row, a player without a total leaves it null
+            if (!rs.next() || rs.getObject(1) == null) {
+                return null;
+            }
+            return new StatColumns.Standing(rs.getLong(1), rs.getInt(2), rs.getInt(3));
+        }
+    }
+    
+    private List<long[]> loadTopTotals(int statId, int limit) throws SQLException {
+        List<long[]> rows = new ArrayList<>();
+        try (Connection conn = readers.getConnection();
+             PreparedStatement ps = conn.prepareStatement(StatTotals.TOP)) {
+            
+            ps.setInt(1, statId);
+            ps.setInt(2, limit);
+            ResultSet rs = ps.executeQuery();
+            while (rs.next()) {
+                rows.add(new long[] { rs.getInt(1), rs.getLong(2) });
+            }
+        }
+        return rows;
+    }
+    
+    /**
+     * how much a player's stat grew over the last N hours, with one point per bucket for graphs
+     * (hourly while the history is recent, daily once it has been rolled up)
+     */
+    public JsonObject getStatHistory(String username, String statKey, int hours) {
+        JsonObject result = new JsonObject();
+        Integer statId = dictionary.statId(statKey);
+        long since = System.currentTimeMillis() / 1000 - hours * StatHistory.HOUR;
+        
+        com.google.gson.JsonArray points = new com.google.gson.JsonArray();
+        long total = 0;
+        
+        if (statId != null) {
+            try (Connection conn = readers.getConnection();
+                 PreparedStatement ps = conn.prepareStatement(
+                     "SELECT w.bucket_start, SUM(w.delta) AS delta FROM (" + StatHistory.WINDOW_ROWS + ") w " +
+                     "WHERE w.player_id = (SELECT id FROM players WHERE username = ? ORDER BY last_seen DESC LIMIT 1) " +
+                     "GROUP BY w.bucket_start ORDER BY w.bucket_start")) {
+                
+                StatHistory.bindWindow(ps, 1, statId, since);
+                ps.setString(5, username);
+                ResultSet rs = ps.executeQuery();
+                
+                while (rs.next()) {
+                    JsonObject point = new JsonObject();
+                    point.addProperty("time", rs.getLong("bucket_start"));
+                    point.addProperty("delta", rs.getLong("delta"));
+                    points.add(point);
+                    total += rs.getLong("delta");
+                }
+                
+            } catch (SQLException e) {
+                result.addProperty("success", false);
+                result.addProperty("error", e.getMessage());
+                return result;
+            }
         }
         
+        result.addProperty("username", username);
+        result.addProperty("stat", statKey);
+        result.addProperty("hours", hours);
+        result.addProperty("total", total);
+        result.add("points", points);
+        result.addProperty("success", true);
+        return result;
+    }
+    
+    // leaderboard of how much each player gained over the last N hours
+    public JsonObject getTopPlayers(String statKey, int limit, int hours) {
+        JsonObject result = new JsonObject();
+        if (statKey.contains("*")) {
+            // history is only kept per key
+            result.addProperty("success", false);
+            result.addProperty("error", "Windowed leaderboards need a single stat key");
+            return result;
+        }
+
+        Integer statId = dictionary.statId(statKey);
+        long since = System.currentTimeMillis() / 1000 - hours * StatHistory.HOUR;
+        
+        com.google.gson.JsonArray players = new com.google.gson.JsonArray();
+        
+        if (statId != null) {
+            try (Connection conn = readers.getConnection();
+                 PreparedStatement ps = conn.prepareStatement(
+                     "SELECT p.username, SUM(w.delta) AS total FROM (" + StatHistory.WINDOW_ROWS + ") w " +
+                     "JOIN players p ON p.id = w.player_id " +
+                     "GROUP BY w.player_id " +
+                     "ORDER BY total DESC " +
+                     "LIMIT ?")) {
+                
+                StatHistory.bindWindow(ps, 1, statId, since);
+                ps.setInt(5, limit);
+                ResultSet rs = ps.executeQuery();
+                
+                while (rs.next()) {
+                    JsonObject player = new JsonObject();
+                    player.addProperty("username", rs.getString("username"));
+                    player.addProperty("value", rs.getLong("total"));
+                    players.add(player);
+                }
+                
+            } catch (SQLException e) {
+                result.addProperty("success", false);
+                result.addProperty("error", e.getMessage());
+                return result;
+            }
+        }
+        
+        result.addProperty("hours", hours);
+        result.add("players", players);
+        result.addProperty("success", true);
         return result;
     }
     
     public JsonObject getEventLeaderboard(String eventName) {
+        return getEventLeaderboard(eventName, 100);
+    }
+    
+    /**
+     * live ranking while the event runs, stored results once it has finished
+     */
+    public JsonObject getEventLeaderboard(String eventName, int limit) {
+        EventLeaderboards.LiveEvent live = leaderboards.get(eventName);
+        if (live != null) {
+            JsonObject result = new JsonObject();
+            com.google.gson.JsonArray leaderboard = new com.google.gson.JsonArray();
+            
+            List<RankTree.Entry> top = live.top(limit);
+            Map<Integer, String> usernames = getUsernames(top.stream().map(RankTree.Entry::playerId).toList());
+            for (RankTree.Entry entry : top) {
+                JsonObject row = new JsonObject();
+                row.addProperty("username", usernames.get(entry.playerId()));
+                row.addProperty("progress", entry.score());
+                row.addProperty("rank", entry.rank());
+                leaderboard.add(row);
+            }
+            
+            result.add("leaderboard", leaderboard);
+            result.addProperty("participants", live.participants());
+            result.addProperty("live", true);
+            result.addProperty("success", true);
+            return result;
+        }
+        
         JsonObject result = new JsonObject();
         
-        try (Connection conn = dataSource.getConnection();
+        try (Connection conn = readers.getConnection();
              PreparedStatement ps = conn.prepareStatement(
                  "SELECT p.username, er.final_progress, er.rank " +
                  "FROM event_results er " +
                  "JOIN events e ON er.event_id = e.id " +
-                 "JOIN players p ON er.player_uuid = p.uuid " +
+                 "JOIN players p ON p.id = er.player_id " +
                  "WHERE e.name = ? " +
-                 "ORDER BY er.rank")) {
+                 "ORDER BY er.rank " +
+                 "LIMIT ?")) {
             
             ps.setString(1, eventName);
+            ps.setInt(2, limit);
             ResultSet rs = ps.executeQuery();
             
             com.google.gson.JsonArray leaderboard = new com.google.gson.JsonArray();
@@ -547,6 +1305,133 @@ public class StatsSystem {
             }
             
             result.add("leaderboard", leaderboard);
+            result.addProperty("live", false);
+            result.addProperty("success", true);
+            
+        } catch (SQLException e) {
+            result.addProperty("success", false);
+            result.addProperty("error", e.getMessage());
+        }
+        
+        return result;
+    }
+    
+    /**
+     * a player's current place in a running event, null if the event isn't running or they aren't in it
+     */
+    public RankTree.Entry getLiveEventRank(String eventName, UUID uuid) {
+        EventLeaderboards.LiveEvent live = leaderboards.get(eventName);
+        Integer playerId = dictionary.playerId(uuid.toString());
+        return live == null || playerId == null ? null : live.entry(playerId);
+    }
+    
+    public JsonObject getEventRank(String eventName, String username) {
+        JsonObject result = new JsonObject();
+        EventLeaderboards.LiveEvent live = leaderboards.get(eventName);
+        
+        if (live == null) {
+            result.addProperty("success", false);
+            result.addProperty("error", "Event is not running");
+            return result;
+        }
+        
+        try (Connection conn = readers.getConnection();
+             PreparedStatement ps = conn.prepareStatement(
+                 "SELECT id FROM players WHERE username = ? ORDER BY last_seen DESC LIMIT 1")) {
+            
+            ps.setString(1, username);
+            ResultSet rs = ps.executeQuery();
+            RankTree.Entry entry = rs.next() ? live.entry(rs.getInt(1)) : null;
+            
+            result.addProperty("username", username);
+            int participants = live.participants();
+            if (entry != null) {
+                result.addProperty("progress", entry.score());
+                result.addProperty("rank", entry.rank());
+                result.addProperty("percentile", percentile(entry.rank(), participants));
+            }
+            result.addProperty("participants", participants);
+            result.addProperty("success", entry != null);
+            if (entry == null) {
+                result.addProperty("error", "Player is not in this event");
+            }
+            
+        } catch (SQLException e) {
+            result.addProperty("success", false);
+            result.addProperty("error", e.getMessage());
+        }
+        
+        return result;
+    }
+    
+    /**
+     * how many players finished each advancement starting with prefix, in key order -
+     * percent is of every player the stats have seen
+     */
+    public JsonObject getAdvancements(String prefix, int limit) {
+        JsonObject result = new JsonObject();
+        com.google.gson.JsonArray list = new com.google.gson.JsonArray();
+        result.addProperty("prefix", prefix);
+        
+        int players = dictionary.playerCount();
+        try (Connection conn = readers.getConnection()) {
+            for (StatAdvancements.Completion completion : advancements.completions(conn, prefix, limit)) {
+                JsonObject entry = new JsonObject();
+                entry.addProperty("key", completion.key());
+                entry.addProperty("players", completion.players());
+                entry.addProperty("percent", players > 0 ? Math.round(completion.players() * 10000.0 / players) / 100.0 : 0);
+                list.add(entry);
+            }
+            result.addProperty("count", advancements.keys(prefix).size());
+            result.addProperty("total_players", players);
+            result.add("advancements", list);
+            result.addProperty("success", true);
+            
+        } catch (SQLException e) {
+            result.addProperty("success", false);
+            result.addProperty("error", e.getMessage());
+        }
+        
+        return result;
+    }
+    
+    /**
+     * the first players to finish one advancement, earliest first
+     */
+    public JsonObject getFirstCompleters(String advancementKey, int limit) {
+        JsonObject result = new JsonObject();
+        result.addProperty("advancement", advancementKey);
+        
+        Integer advancementId = advancements.id(advancementKey);
+        if (advancementId == null) {
+            result.addProperty("success", false);
+            result.addProperty("error", "Nobody has completed this advancement");
+            return result;
+        }
+        
+        try (Connection conn = readers.getConnection()) {
+            List<StatAdvancements.PlayerEntry> first = advancements.firstCompleters(conn, advancementId, limit);
+            result.add("players", toAdvancementRanking(first, "completed_at"));
+            result.addProperty("success", true);
+            
+        } catch (SQLException e) {
+            result.addProperty("success", false);
+            result.addProperty("error", e.getMessage());
+        }
+        
+        return result;
+    }
+    
+    /**
+     * players with the most advancements completed across every server
+     */
+    public JsonObject getAdvancementLeaders(int limit) {
+        JsonObject result = new JsonObject();
+        
+        try (Connection conn = readers.getConnection()) {
+            List<StatAdvancements.PlayerEntry> top = advancements.mostCompleted(conn, limit);
+            result.add("players", toAdvancementRanking(top, "completed"));
+            result.addProperty("total_advancements", advancements.count());
             result.addProperty("success", true);
             
         } catch (SQLException e) {
@@ -557,7 +1442,57 @@ public class StatsSystem {
         return result;
     }
     
+    private com.google.gson.JsonArray toAdvancementRanking(List<StatAdvancements.PlayerEntry> entries, String valueName) {
+        com.google.gson.JsonArray players = new com.google.gson.JsonArray();
+        Map<Integer, String> usernames = getUsernames(entries.stream().map(StatAdvancements.PlayerEntry::playerId).toList());
+        
+        int rank = 1;
+        for (StatAdvancements.PlayerEntry entry : entries) {
+            JsonObject player = new JsonObject();
+            player.addProperty("rank", rank++);
+            player.addProperty("username", usernames.get(entry.playerId()));
+            player.addProperty(valueName, entry.value());
+            if (!valueName.equals("completed_at")) {
+                player.addProperty("completed_at", entry.completedAt());
+            }
+            players.add(player);
+        }
+        return players;
+    }
+    
+    // player id -> username for a page of leaderboard rows
+    private Map<Integer, String> getUsernames(List<Integer> playerIds) {
+        Map<Integer, String> usernames = new HashMap<>();
+        if (playerIds.isEmpty()) {
+            return usernames;
+        }
+        
+        String placeholders = String.join(",", Collections.nCopies(playerIds.size(), "?"));
+        try (Connection conn = readers.getConnection();
+             PreparedStatement ps = conn.prepareStatement(
+                 "SELECT id, username FROM players WHERE id IN (" + placeholders + ")")) {
+            
+            for (int i = 0; i < playerIds.size(); i++) {
+                ps.setInt(i + 1, playerIds.get(i));
+            }
+            ResultSet rs = ps.executeQuery();
+            while (rs.next()) {
+                usernames.put(rs.getInt(1), rs.getString(2));
+            }
+            
+        } catch (SQLException e) {
+            plugin.getLogger().error("Failed to look up leaderboard usernames", e);
+        }
+        
+        return usernames;
+    }
+    
     public void shutdown() {
+        if (watcher != null) {
+            watcher.shutdown();
+        }
+        
+        events.shutdown();
         scheduler.shutdown();
         try {
             if (!scheduler.awaitTermination(5, TimeUnit.SECONDS)) {
@@ -567,6 +1502,16 @@ public class StatsSystem {
             scheduler.shutdownNow();
         }
         
+        if (pushReceiver != null) {
+            pushReceiver.shutdown();
+        }
+        ingester.shutdown();
+        shards.close();
+        usernameResolver.shutdown();
+        
+        if (readers != null && !readers.isClosed()) {
+            readers.close();
+        }
         if (dataSource != null && !dataSource.isClosed()) {
             dataSource.close();
         }
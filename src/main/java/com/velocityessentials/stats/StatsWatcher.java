@@ -0,0 +1,160 @@
+package com.velocityessentials.stats;
+
+import com.velocityessentials.VelocityEssentials;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * near-real-time stats ingestion
+ * watches every stats directory, coalesces bursts of events per file and feeds only the touched files to the ingester
+ */
+public class StatsWatcher {
+    private final VelocityEssentials plugin;
+    private final StatsIngester ingester;
+    private final Runnable onOverflow;
+    private final long debounceMillis;
+    private final WatchService watchService;
+    private final Map<WatchKey, String> keyToServer = new HashMap<>();
+    private final Map<WatchKey, Path> keyToPath = new HashMap<>();
+
+    // server -> file -> time of the last event, only touched by the watcher thread
+    private final Map<String, Map<Path, Long>> pending = new HashMap<>();
+    private final Thread thread;
+    private volatile boolean running = true;
+
+    public StatsWatcher(VelocityEssentials plugin, StatsIngester ingester, Map<String, Path> serverStatsPaths,
+                        Map<String, Path> advancementPaths, Runnable onOverflow) throws IOException {
+        this.plugin = plugin;
+        this.ingester = ingester;
+        this.onOverflow = onOverflow;
+        this.debounceMillis = Math.max(100, plugin.getConfig().getStatsWatchDebounceMs());
+        this.watchService = FileSystems.getDefault().newWatchService();
+
+        for (Map.Entry<String, Path> entry : serverStatsPaths.entrySet()) {
+            Path statsPath = entry.getValue();
+            if (!Files.isDirectory(statsPath)) {
+                plugin.getLogger().warn("Cannot watch stats path for " + entry.getKey() + ", not a directory: " + statsPath);
+                continue;
+            }
+
+            register(entry.getKey(), statsPath);
+        }
+        // advancement folders are watched when they exist, the full scan picks up ones created later
+        for (Map.Entry<String, Path> entry : advancementPaths.entrySet()) {
+            if (Files.isDirectory(entry.getValue())) {
+                register(entry.getKey(), entry.getValue());
+            }
+        }
+
+        this.thread = new Thread(this::watchLoop, "VE-Stats-Watcher");
+        this.thread.setDaemon(true);
+        this.thread.start();
+
+        plugin.getLogger().info("Watching " + keyToServer.size() + " stats directories (debounce " + debounceMillis + "ms)");
+    }
+
+    private void register(String serverName, Path dir) throws IOException {
+        WatchKey key = dir.register(watchService,
+            StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+        keyToServer.put(key, serverName);
+        keyToPath.put(key, dir);
+    }
+
+    private void watchLoop() {
+        while (running) {
+            try {
+                WatchKey key = watchService.poll(debounceMillis / 2, TimeUnit.MILLISECONDS);
+                if (key != null) {
+                    collect(key);
+                }
+
+                flushSettled();
+
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                break;
+            } catch (RuntimeException e) {
+                plugin.getLogger().error("Stats watcher error", e);
+            }
+        }
+    }
+
+    private void collect(WatchKey key) {
+        String serverName = keyToServer.get(key);
+        Path dir = keyToPath.get(key);
+        long now = System.currentTimeMillis();
+
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                // we lost events - let the full scan catch up instead of guessing
+                plugin.getLogger().warn("Stats watcher overflowed for " + serverName + ", running a full scan");
+                onOverflow.run();
+                continue;
+            }
+
+            Path file = dir.resolve((Path) event.context());
+            if (file.toString().endsWith(".json")) {
+                // each modify pushes the deadline out again, so a file being written in chunks is read once
+                pending.computeIfAbsent(serverName, k -> new HashMap<>()).put(file, now);
+            }
+        }
+
+        if (!key.reset()) {
+            plugin.getLogger().warn("Stats directory for " + serverName + " is no longer watchable: " + dir);
+            keyToServer.remove(key);
+            keyToPath.remove(key);
+        }
+    }
+
+    private void flushSettled() throws InterruptedException {
+        if (pending.isEmpty()) {
+            return;
+        }
+
+        long cutoff = System.currentTimeMillis() - debounceMillis;
+        Map<String, List<Path>> settled = new HashMap<>();
+
+        Iterator<Map.Entry<String, Map<Path, Long>>> servers = pending.entrySet().iterator();
+        while (servers.hasNext()) {
+            Map.Entry<String, Map<Path, Long>> server = servers.next();
+
+            Iterator<Map.Entry<Path, Long>> files = server.getValue().entrySet().iterator();
+            while (files.hasNext()) {
+                Map.Entry<Path, Long> file = files.next();
+                if (file.getValue() <= cutoff) {
+                    settled.computeIfAbsent(server.getKey(), k -> new ArrayList<>()).add(file.getKey());
+                    files.remove();
+                }
+            }
+
+            if (server.getValue().isEmpty()) {
+                servers.remove();
+            }
+        }
+
+        if (settled.isEmpty()) {
+            return;
+        }
+
+        IngestCycle cycle = ingester.ingestFiles(settled);
+        if (plugin.getConfig().isDebug()) {
+            plugin.getLogger().info("Stats watcher ingested " + cycle.getTotals().ingested.get() + " of " +
+                                 cycle.getTotals().scanned.get() + " changed files");
+        }
+    }
+
+    public void shutdown() {
+        running = false;
+        try {
+            watchService.close();
+        } catch (IOException ignored) {}
+
+        try {
+            thread.join(5000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,195 @@
+package com.velocityessentials.stats;
+
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * in-memory top players for the stat keys that get asked for most
+ * a key is promoted once it has been requested often enough (counts halve every minute), the
+ * coldest key is dropped when the hot set is full. the writer hands over every committed total
+ * of a hot key, so cached rankings never go stale waiting for a timeout
+ */
+public class TopPlayersCache {
+    private static final long DECAY_MILLIS = 60_000;
+
+    private final int size;
+    private final int maxKeys;
+    private final int promoteAfter;
+    private final Map<Integer, Demand> demand = new ConcurrentHashMap<>();
+    private final Map<Integer, Hot> hot = new ConcurrentHashMap<>();
+
+    @FunctionalInterface
+    public interface Loader {
+        // the top `limit` (player id, total) pairs of a stat, highest first
+        List<long[]> load(int statId, int limit) throws SQLException;
+    }
+
+    // requests for one stat key, halved for every minute that passes
+    private static final class Demand {
+        private double count;
+        private long decayedAt = System.currentTimeMillis();
+
+        synchronized double hit() {
+            decay();
+            return ++count;
+        }
+
+        synchronized double current() {
+            decay();
+            return count;
+        }
+
+        private void decay() {
+            long now = System.currentTimeMillis();
+            long periods = (now - decayedAt) / DECAY_MILLIS;
+            if (periods > 0) {
+                count = count / Math.pow(2, Math.min(periods, 64));
+                decayedAt += periods * DECAY_MILLIS;
+            }
+        }
+    }
+
+    // exact top `size` players of one stat
+    private final class Hot {
+        private final RankTree ranking = new RankTree();
+        private boolean loaded;
+        // every player with this stat fits, so anyone new belongs in the ranking
+        private boolean complete;
+
+        synchronized List<RankTree.Entry> top(int statId, int limit, Loader loader) throws SQLException {
+            if (!loaded) {
+                ranking.clear();
+                List<long[]> rows = loader.load(statId, size);
+                for (long[] row : rows) {
+                    ranking.put((int) row[0], row[1]);
+                }
+                complete = rows.size() < size;
+                loaded = true;
+            }
+            return ranking.top(limit);
+        }
+
+        synchronized void invalidate() {
+            loaded = false;
+        }
+
+        synchronized void apply(StatTotals.Change change) {
+            if (!loaded) {
+                return;
+            }
+
+            Long score = ranking.score(change.playerId());
+            if (score != null) {
+                ranking.put(change.playerId(), change.total());
+
+                // someone outside the cache may now be ahead of the player who dropped - reload on next read
+                RankTree.Entry last = ranking.last();
+                if (!complete && change.total() < score && last.playerId() == change.playerId()) {
+                    loaded = false;
+                }
+                return;
+            }
+
+            RankTree.Entry last = ranking.last();
+            if (complete || last == null || change.total() > last.score()) {
+                ranking.put(change.playerId(), change.total());
+                if (ranking.size() > size) {
+                    ranking.remove(ranking.last().playerId());
+                    complete = false;
+                }
+            }
+        }
+    }
+
+    public TopPlayersCache(int size, int maxKeys, int promoteAfter) {
+        this.size = size;
+        this.maxKeys = maxKeys;
+        this.promoteAfter = promoteAfter;
+    }
+
+    /**
+     * top players from the cache, or null when the caller should ask the database -
+     * the key isn't hot (yet) or more players were asked for than the cache holds
+     */
+    public List<RankTree.Entry> top(int statId, int limit, Loader loader) throws SQLException {
+        double requests = demand.computeIfAbsent(statId, k -> new Demand()).hit();
+        if (limit > size || maxKeys <= 0) {
+            return null;
+        }
+
+        Hot entry = hot.get(statId);
+        if (entry == null) {
+            entry = requests >= promoteAfter ? promote(statId, requests) : null;
+            if (entry == null) {
+                return null;
+            }
+        }
+
+        return entry.top(statId, limit, loader);
+    }
+
+    public boolean isHot(int statId) {
+        return hot.containsKey(statId);
+    }
+
+    /**
+     * totals the writer has committed, applied after the commit so a reload never misses one
+     */
+    void apply(List<StatTotals.Change> changes) {
+        for (StatTotals.Change change : changes) {
+            Hot entry = hot.get(change.statId());
+            if (entry != null) {
+                entry.apply(change);
+            }
+        }
+    }
+
+    // every hot key reloads on its next read
+    void invalidate() {
+        for (Hot entry : hot.values()) {
+            entry.invalidate();
+        }
+    }
+
+    public int getHotKeys() {
+        return hot.size();
+    }
+
+    // makes room for a key by dropping the coldest hot key, if that one is colder
+    private synchronized Hot promote(int statId, double requests) {
+        Hot existing = hot.get(statId);
+        if (existing != null) {
+            return existing;
+        }
+        if (hot.size() < maxKeys) {
+            Hot entry = new Hot();
+            hot.put(statId, entry);
+            return entry;
+        }
+
+        int coldest = -1;
+        double coldestRequests = Double.MAX_VALUE;
+        for (int key : hot.keySet()) {
+            Demand keyDemand = demand.get(key);
+            double current = keyDemand != null ? keyDemand.current() : 0;
+            if (current < coldestRequests) {
+                coldest = key;
+                coldestRequests = current;
+            }
+        }
+
+        if (coldestRequests >= requests) {
+            return null;
+        }
+
+        hot.remove(coldest);
+        // keys that haven't been asked for in a long time aren't worth remembering either
+        demand.entrySet().removeIf(e -> !hot.containsKey(e.getKey()) && e.getKey() != statId && e.getValue().current() < 0.01);
+
+        Hot entry = new Hot();
+        hot.put(statId, entry);
+        return entry;
+    }
+}
@@ -0,0 +1,380 @@
+package com.velocityessentials.stats;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.velocityessentials.VelocityEssentials;
+import com.velocityessentials.database.Database;
+import com.zaxxer.hikari.HikariDataSource;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.*;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+
+/**
+ * uuid -> username lookups that never block ingestion
+ * answers from memory only - a miss goes to one background thread that checks each backend's
+ * usercache.json and the proxy's last_server table, and only asks the rate-limited session server
+ * for players found in neither. names found later are handed to onResolved.
+ * the in-memory cache is a bounded lru warmed from the players table, and failed lookups are
+ * persisted so the retry backoff survives restarts
+ */
+public class UsernameResolver {
+    private static final long RETRY_AFTER_MILLIS = 3600000; // 1 hour
+    private static final long USERCACHE_CHECK_MILLIS = 30000;
+
+    private final VelocityEssentials plugin;
+    private final HikariDataSource dataSource;
+    private final BiConsumer<String, String> onResolved;
+    private final List<Path> usercacheFiles = new ArrayList<>();
+    private final Map<Path, Long> usercacheMtimes = new HashMap<>();
+    private long lastUsercacheCheck;
+
+    private final int cacheSize;
+    private final Map<String, String> uuidToUsername;
+    private final Map<String, Long> lastMojangQuery = new ConcurrentHashMap<>();
+
+    private final String sessionServerUrl;
+    private final long mojangIntervalMillis;
+    private final BlockingQueue<String> mojangQueue = new LinkedBlockingQueue<>();
+    private final Set<String> queued = ConcurrentHashMap.newKeySet();
+    private final AtomicLong lookups = new AtomicLong();
+    private final Thread mojangThread;
+    private volatile boolean running = true;
+
+    /**
+     * onResolved is called from the lookup thread whenever it finds the name of a queued player
+     */
+    public UsernameResolver(VelocityEssentials plugin, HikariDataSource dataSource, Map<String, Path> serverStatsPaths,
+                            BiConsumer<String, String> onResolved) {
+        this(plugin, dataSource, serverStatsPaths, onResolved, plugin.getConfig().getStatsMojangSessionServerUrl(),
+            plugin.getConfig().getStatsMojangRequestsPerMinute(), plugin.getConfig().getStatsUsernameCacheSize());
+    }
+
+    // settings passed in rather than read from the config, so tests can point it at a local session server
+    UsernameResolver(VelocityEssentials plugin, HikariDataSource dataSource, Map<String, Path> serverStatsPaths,
+                     BiConsumer<String, String> onResolved, String url, int requestsPerMinute, int cacheSize) {
+        this.plugin = plugin;
+        this.dataSource = dataSource;
+        this.onResolved = onResolved;
+
+        // access-ordered, so the players that keep saving stats are the ones that stay cached
+        this.cacheSize = Math.max(16, cacheSize);
+        this.uuidToUsername = Collections.synchronizedMap(new LinkedHashMap<>(256, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+                return size() > cacheSize;
+            }
+        });
+
+        this.sessionServerUrl = url.endsWith("/") ? url : url + "/";
+        this.mojangIntervalMillis = 60000L / Math.max(1, requestsPerMinute);
+
+        // <server>/world/stats -> <server>/usercache.json, or next to the stats folder for custom layouts
+        for (Map.Entry<String, Path> entry : serverStatsPaths.entrySet()) {
+            Path statsPath = entry.getValue().toAbsolutePath();
+            List<Path> candidates = new ArrayList<>();
+            if (statsPath.getParent() != null && statsPath.getParent().getParent() != null) {
+                candidates.add(statsPath.getParent().resolveSibling("usercache.json"));
+            }
+            candidates.add(statsPath.resolveSibling("usercache.json"));
+
+            Path usercache = candidates.stream().filter(Files::isRegularFile).findFirst().orElse(candidates.get(0));
+            if (!usercacheFiles.contains(usercache)) {
+                usercacheFiles.add(usercache);
+            }
+        }
+
+        loadPersisted();
+        refreshUsercaches(true);
+
+        this.mojangThread = new Thread(this::mojangLoop, "VE-Stats-Usernames");
+        this.mojangThread.setDaemon(true);
+        this.mojangThread.start();
+    }
+
+    /**
+     * returns the username if it is cached, otherwise queues a background lookup and returns null -
+     * called from the parser threads, so it never touches a file or a database
+     */
+    public String resolve(String uuid) {
+        String username = uuidToUsername.get(uuid);
+        if (username != null) {
+            return username;
+        }
+
+        if (queued.add(uuid)) {
+            mojangQueue.offer(uuid);
+        }
+        return null;
+    }
+
+    /**
+     * records a name the proxy saw first-hand - it wins over anything cached
+     */
+    public void remember(String uuid, String username) {
+        uuidToUsername.put(uuid, username);
+        // called on the login path, so the persisted backoff row is left to expire rather than deleted here
+        lastMojangQuery.remove(uuid);
+    }
+
+    public int getCachedUsernames() {
+        return uuidToUsername.size();
+    }
+
+    // session server requests made since startup
+    public long getLookups() {
+        return lookups.get();
+    }
+
+    public int getQueuedLookups() {
+        return mojangQueue.size();
+    }
+
+    // warm the cache with the most recently seen players and pick up still-running backoffs
+    private void loadPersisted() {
+        try (Connection conn = dataSource.getConnection(); Statement st = conn.createStatement()) {
+            st.execute("""
+                CREATE TABLE IF NOT EXISTS username_lookups (
+                    uuid TEXT PRIMARY KEY,
+                    last_attempt INTEGER NOT NULL
+                ) WITHOUT ROWID
+                """);
+
+            // oldest first, so the most recent players end up youngest in the lru
+            try (PreparedStatement ps = conn.prepareStatement(
+                    "SELECT uuid, username FROM (" +
+                    "SELECT uuid, username, last_seen FROM players WHERE username IS NOT NULL " +
+                    "ORDER BY last_seen DESC LIMIT ?) ORDER BY last_seen ASC")) {
+                ps.setInt(1, cacheSize);
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        uuidToUsername.put(rs.getString(1), rs.getString(2));
+                    }
+                }
+            }
+
+            st.executeUpdate("DELETE FROM username_lookups WHERE last_attempt < " +
+                (System.currentTimeMillis() - RETRY_AFTER_MILLIS));
+            try (ResultSet rs = st.executeQuery("SELECT uuid, last_attempt FROM username_lookups")) {
+                while (rs.next()) {
+                    lastMojangQuery.put(rs.getString(1), rs.getLong(2));
+                }
+            }
+
+            plugin.getLogger().info("Warmed username cache with " + uuidToUsername.size() + " players (" +
+                                 lastMojangQuery.size() + " lookups backing off)");
+
+        } catch (SQLException e) {
+            plugin.getLogger().error("Failed to load username cache", e);
+        }
+    }
+
+    private void recordFailedLookup(String uuid, long attempt) {
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement ps = conn.prepareStatement(
+                 "INSERT INTO username_lookups (uuid, last_attempt) VALUES (?, ?) " +
+                 "ON CONFLICT (uuid) DO UPDATE SET last_attempt = excluded.last_attempt")) {
+            ps.setString(1, uuid);
+            ps.setLong(2, attempt);
+            ps.executeUpdate();
+        } catch (SQLException e) {
+            plugin.getLogger().warn("Failed to record username lookup for " + uuid + ": " + e.getMessage());
+        }
+    }
+
+    private void clearFailedLookup(String uuid) {
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement ps = conn.prepareStatement("DELETE FROM username_lookups WHERE uuid = ?")) {
+            ps.setString(1, uuid);
+            ps.executeUpdate();
+        } catch (SQLException e) {
+            plugin.getLogger().warn("Failed to clear username lookup for " + uuid + ": " + e.getMessage());
+        }
+    }
+
+    // returns true if any usercache was (re)loaded
+    private synchronized boolean refreshUsercaches(boolean force) {
+        long now = System.currentTimeMillis();
+        if (!force && now - lastUsercacheCheck < USERCACHE_CHECK_MILLIS) {
+            return false;
+        }
+        lastUsercacheCheck = now;
+
+        boolean loaded = false;
+        for (Path usercache : usercacheFiles) {
+            try {
+                long mtime = Files.getLastModifiedTime(usercache).toMillis();
+                if (Objects.equals(usercacheMtimes.get(usercache), mtime)) {
+                    continue;
+                }
+
+                int entries = loadUsercache(usercache);
+                usercacheMtimes.put(usercache, mtime);
+                loaded = true;
+
+                if (plugin.getConfig().isDebug()) {
+                    plugin.getLogger().info("Loaded " + entries + " usernames from " + usercache);
+                }
+            } catch (IOException e) {
+                // no usercache for this server (yet) - nothing to learn from it
+            } catch (RuntimeException e) {
+                plugin.getLogger().warn("Failed to read " + usercache + ": " + e.getMessage());
+            }
+        }
+
+        return loaded;
+    }
+
+    private int loadUsercache(Path usercache) throws IOException {
+        int entries = 0;
+
+        try (Reader reader = Files.newBufferedReader(usercache, StandardCharsets.UTF_8)) {
+            JsonElement root = JsonParser.parseReader(reader);
+            if (!root.isJsonArray()) {
+                return 0;
+            }
+
+            for (JsonElement element : root.getAsJsonArray()) {
+                if (!element.isJsonObject()) {
+                    continue;
+                }
+
+                JsonObject entry = element.getAsJsonObject();
+                if (entry.has("uuid") && entry.has("name")) {
+                    uuidToUsername.put(entry.get("uuid").getAsString(), entry.get("name").getAsString());
+                    entries++;
+                }
+            }
+        }
+
+        return entries;
+    }
+
+    // Servers rewrite usercache.json as players join, so a miss is worth a (throttled) re-read
+    private String lookupLocally(String uuid) {
+        if (refreshUsercaches(false)) {
+            String username = uuidToUsername.get(uuid);
+            if (username != null) {
+                return username;
+            }
+        }
+        return lookupLastServer(uuid);
+    }
+
+    private String lookupLastServer(String uuid) {
+        Database database = plugin.getDatabase();
+        if (database == null || !database.isConnected()) {
+            return null;
+        }
+
+        try (Connection conn = database.getConnection();
+             PreparedStatement ps = conn.prepareStatement("SELECT username FROM last_server WHERE uuid = ?")) {
+            ps.setString(1, uuid);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? rs.getString(1) : null;
+            }
+        } catch (SQLException e) {
+            plugin.getLogger().warn("Failed to look up username for " + uuid + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    private void mojangLoop() {
+        while (running) {
+            try {
+                String uuid = mojangQueue.take();
+                queued.remove(uuid);
+
+                // Someone may have logged in (or a usercache refreshed) while this was queued
+                if (uuidToUsername.containsKey(uuid)) {
+                    continue;
+                }
+
+                String username = lookupLocally(uuid);
+                if (username != null) {
+                    uuidToUsername.put(uuid, username);
+                    onResolved.accept(uuid, username);
+                    continue;
+                }
+
+                Long lastQuery = lastMojangQuery.get(uuid);
+                if (lastQuery != null && System.currentTimeMillis() - lastQuery < RETRY_AFTER_MILLIS) {
+                    continue;
+                }
+
+                long attempt = System.currentTimeMillis();
+                lookups.incrementAndGet();
+                username = fetchUsername(uuid);
+                if (username != null) {
+                    uuidToUsername.put(uuid, username);
+                    if (lastMojangQuery.remove(uuid) != null) {
+                        clearFailedLookup(uuid);
+                    }
+                    onResolved.accept(uuid, username);
+                } else {
+                    lastMojangQuery.put(uuid, attempt);
+                    recordFailedLookup(uuid, attempt);
+                    pruneBackoffs(attempt);
+                }
+
+                Thread.sleep(mojangIntervalMillis);
+
+            } catch (InterruptedException e) {
+                break;
+            } catch (RuntimeException e) {
+                plugin.getLogger().error("Username lookup failed", e);
+            }
+        }
+    }
+
+    // backoffs only matter for an hour - don't let one-off visitors pile up forever
+    private void pruneBackoffs(long now) {
+        if (lastMojangQuery.size() > cacheSize) {
+            lastMojangQuery.values().removeIf(attempt -> now - attempt >= RETRY_AFTER_MILLIS);
+        }
+    }
+
+    private String fetchUsername(String uuid) {
+        try {
+            HttpURLConnection conn = (HttpURLConnection) new URL(sessionServerUrl + uuid.replace("-", "")).openConnection();
+            conn.setRequestMethod("GET");
+            conn.setConnectTimeout(5000);
+            conn.setReadTimeout(5000);
+
+            try {
+                if (conn.getResponseCode() == 200) {
+                    String response = new String(conn.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+                    JsonObject profile = JsonParser.parseString(response).getAsJsonObject();
+                    return profile.has("name") ? profile.get("name").getAsString() : null;
+                }
+            } finally {
+                conn.disconnect();
+            }
+        } catch (IOException | RuntimeException e) {
+            // unreachable or garbled - the retry backoff applies either way
+        }
+
+        return null;
+    }
+
+    public void shutdown() {
+        running = false;
+        mojangThread.interrupt();
+    }
+}
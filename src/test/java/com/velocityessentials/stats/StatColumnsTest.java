@@ -0,0 +1,105 @@
+package com.velocityessentials.stats;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * column ranks against a brute-force count, while the writer keeps moving the totals
+ */
+class StatColumnsTest {
+    private static final int STAT = 1;
+
+    @TempDir
+    Path dir;
+
+    private HikariDataSource dataSource;
+    // what the column should hold - player id -> total
+    private final Map<Integer, Long> totals = new HashMap<>();
+    private final Random random = new Random(42);
+
+    @BeforeEach
+    void setUp() throws Exception {
+        HikariConfig config = new HikariConfig();
+        config.setJdbcUrl("jdbc:sqlite:" + dir.resolve("stats.db"));
+        config.setMaximumPoolSize(1);
+        dataSource = new HikariDataSource(config);
+
+        try (Connection conn = dataSource.getConnection()) {
+            try (Statement st = conn.createStatement()) {
+                st.execute("CREATE TABLE player_stat_totals (stat_id INTEGER NOT NULL, player_id INTEGER NOT NULL, " +
+                    "total INTEGER NOT NULL, PRIMARY KEY (stat_id, player_id)) WITHOUT ROWID");
+            }
+            try (PreparedStatement ps = conn.prepareStatement("INSERT INTO player_stat_totals VALUES (?, ?, ?)")) {
+                // a narrow range so plenty of players tie
+                for (int playerId = 1; playerId <= 300; playerId++) {
+                    long total = random.nextInt(50);
+                    totals.put(playerId, total);
+                    ps.setInt(1, STAT);
+                    ps.setInt(2, playerId);
+                    ps.setLong(3, total);
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+            }
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        dataSource.close();
+    }
+
+    private void assertStandings(StatColumns columns) throws Exception {
+        for (Map.Entry<Integer, Long> entry : totals.entrySet()) {
+            long above = totals.values().stream().filter(total -> total > entry.getValue()).count();
+            StatColumns.Standing standing = columns.standing(STAT, entry.getKey());
+            assertEquals(entry.getValue(), standing.score());
+            assertEquals(above + 1, standing.rank(), "rank of player " + entry.getKey());
+            assertEquals(totals.size(), standing.players());
+        }
+    }
+
+    @Test
+    void ranksMatchAfterLoad() throws Exception {
+        assertStandings(new StatColumns(dataSource, new StatsDictionary(), 4));
+    }
+
+    @Test
+    void ranksFollowTheWriter() throws Exception {
+        StatColumns columns = new StatColumns(dataSource, new StatsDictionary(), 4);
+        assertNotNull(columns.standing(STAT, 1));
+
+        for (int round = 0; round < 50; round++) {
+            for (int i = 0; i < 20; i++) {
+                // raises, drops and players the column hasn't seen yet
+                int playerId = 1 + random.nextInt(400);
+                long total = random.nextInt(60);
+                totals.put(playerId, total);
+                columns.apply(List.of(new StatTotals.Change(STAT, playerId, total)));
+            }
+            assertStandings(columns);
+        }
+    }
+
+    @Test
+    void unknownPlayerHasNoStanding() throws Exception {
+        StatColumns columns = new StatColumns(dataSource, new StatsDictionary(), 4);
+        assertNull(columns.standing(STAT, 1000));
+        assertNull(new StatColumns(dataSource, new StatsDictionary(), 0).standing(STAT, 1));
+    }
+}
@@ -0,0 +1,43 @@
+package com.velocityessentials.stats;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+/**
+ * stat files shaped like the ones vanilla writes - compact json, a stats object of categories, DataVersion last
+ */
+final class StatFiles {
+    private static final String[] CATEGORIES = {
+        "minecraft:mined", "minecraft:used", "minecraft:crafted", "minecraft:broken",
+        "minecraft:picked_up", "minecraft:dropped", "minecraft:killed", "minecraft:killed_by", "minecraft:custom"
+    };
+
+    private StatFiles() {
+    }
+
+    /**
+     * a player's file with about `keys` stats spread over the vanilla categories
+     */
+    static byte[] vanilla(long seed, int keys) {
+        Random random = new Random(seed);
+        StringBuilder json = new StringBuilder("{\"stats\":{");
+        int perCategory = Math.max(1, keys / CATEGORIES.length);
+        for (int c = 0; c < CATEGORIES.length; c++) {
+            if (c > 0) {
+                json.append(',');
+            }
+            json.append('"').append(CATEGORIES[c]).append("\":{");
+            for (int k = 0; k < perCategory; k++) {
+                if (k > 0) {
+                    json.append(',');
+                }
+                // mostly small counters, now and then a play-time sized one
+                long value = random.nextInt(10) == 0 ? random.nextLong() >>> 20 : random.nextInt(5000);
+                json.append("\"minecraft:key_").append(k).append("\":").append(value);
+            }
+            json.append('}');
+        }
+        json.append("},\"DataVersion\":3465}");
+        return json.toString().getBytes(StandardCharsets.UTF_8);
+    }
+}
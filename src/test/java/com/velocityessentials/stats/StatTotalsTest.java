@@ -0,0 +1,139 @@
+package com.velocityessentials.stats;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * the writer keeps player_stat_totals as deltas - after any mix of new, raised, lowered and dropped rows
+ * they must still be what summing player_stats from scratch gives
+ */
+class StatTotalsTest {
+    private static final List<String> KEYS = List.of(
+        "minecraft:mined:minecraft:stone", "minecraft:mined:minecraft:dirt", "minecraft:mined:minecraft:sand",
+        "minecraft:used:minecraft:bow", "minecraft:used:minecraft:torch",
+        "minecraft:custom:minecraft:jump", "minecraft:custom:minecraft:play_time");
+
+    @TempDir
+    Path dir;
+
+    private final Random random = new Random(7);
+
+    /**
+     * every cycle rewrites a random half of the files - each key is kept, moved up or down, added or left out
+     */
+    private void ingestRandomSaves(boolean sharded) throws Exception {
+        Map<String, Path> servers = new TreeMap<>();
+        servers.put("survival", dir.resolve("survival/world/stats"));
+        servers.put("creative", dir.resolve("creative/world/stats"));
+        List<String> players = List.of(new UUID(1, 1).toString(), new UUID(1, 2).toString(), new UUID(1, 3).toString());
+
+        StatsSystem stats = new StatsSystem(StatsTestSupport.plugin(dir.resolve("data"), servers, sharded));
+        try {
+            Map<Path, Map<String, Long>> files = new HashMap<>();
+            int dropped = 0;
+            for (int cycle = 0; cycle < 12; cycle++) {
+                for (Path folder : servers.values()) {
+                    for (String player : players) {
+                        if (cycle > 0 && random.nextBoolean()) {
+                            continue;
+                        }
+                        Map<String, Long> previous = files.getOrDefault(folder.resolve(player), Map.of());
+                        Map<String, Long> saved = new HashMap<>();
+                        for (String key : KEYS) {
+                            long value = previous.getOrDefault(key, 0L);
+                            switch (random.nextInt(4)) {
+                                case 0 -> { }
+                                case 1 -> saved.put(key, value + 1 + random.nextInt(100));
+                                case 2 -> saved.put(key, Math.max(0, value - random.nextInt(50)));
+                                default -> {
+                                    if (previous.containsKey(key)) {
+                                        saved.put(key, value);
+                                    }
+                                }
+                            }
+                        }
+                        files.put(folder.resolve(player), saved);
+                        StatsTestSupport.writeStats(folder, player, saved);
+                    }
+                }
+                StatsTestSupport.ingest(stats);
+                dropped = Math.max(dropped, assertTotalsMatchRows());
+            }
+            assertTrue(dropped > 0, "no save dropped every row of a stat");
+        } finally {
+            stats.shutdown();
+        }
+    }
+
+    // returns how many totals have no rows left
+    private int assertTotalsMatchRows() throws Exception {
+        int dropped = 0;
+        try (Connection conn = StatsTestSupport.connect(dir.resolve("data")); Statement st = conn.createStatement()) {
+            // every stat total against the sum of its rows - a dropped row leaves a total of 0 behind, not a missing one
+            try (ResultSet rs = st.executeQuery("""
+                    SELECT k.key, t.player_id, t.total, COALESCE(s.total, 0), s.total IS NULL
+                    FROM player_stat_totals t
+                    JOIN stat_keys k ON k.id = t.stat_id
+                    LEFT JOIN (SELECT stat_id, player_id, SUM(stat_value) AS total FROM player_stats
+                               GROUP BY stat_id, player_id) s ON s.stat_id = t.stat_id AND s.player_id = t.player_id
+                    WHERE k.key NOT LIKE '%:*'
+                    """)) {
+                while (rs.next()) {
+                    assertEquals(rs.getLong(4), rs.getLong(3), rs.getString(1) + " of player " + rs.getInt(2));
+                    if (rs.getBoolean(5)) {
+                        dropped++;
+                    }
+                }
+            }
+
+            try (ResultSet rs = st.executeQuery("""
+                    SELECT COUNT(*) FROM (SELECT DISTINCT stat_id, player_id FROM player_stats) s
+                    LEFT JOIN player_stat_totals t ON t.stat_id = s.stat_id AND t.player_id = s.player_id
+                    WHERE t.total IS NULL
+                    """)) {
+                assertEquals(0, rs.getInt(1), "rows without a total");
+            }
+
+            // and each category against its member stats
+            try (ResultSet rs = st.executeQuery("""
+                    SELECT c.key, t.player_id, t.total,
+                           (SELECT COALESCE(SUM(m.total), 0) FROM player_stat_totals m JOIN stat_keys mk ON mk.id = m.stat_id
+                            WHERE m.player_id = t.player_id AND mk.key LIKE substr(c.key, 1, length(c.key) - 1) || '%'
+                              AND mk.key NOT LIKE '%:*')
+                    FROM player_stat_totals t JOIN stat_keys c ON c.id = t.stat_id
+                    WHERE c.key LIKE '%:*'
+                    """)) {
+                int categories = 0;
+                while (rs.next()) {
+                    assertEquals(rs.getLong(4), rs.getLong(3), rs.getString(1) + " of player " + rs.getInt(2));
+                    categories++;
+                }
+                assertTrue(categories > 0, "no category totals");
+            }
+        }
+        return dropped;
+    }
+
+    @Test
+    void totalsFollowMixedSaves() throws Exception {
+        ingestRandomSaves(false);
+    }
+
+    @Test
+    void totalsFollowMixedSavesAcrossShards() throws Exception {
+        ingestRandomSaves(true);
+    }
+}
@@ -0,0 +1,81 @@
+package com.velocityessentials.stats;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * one stat file through the byte scanner, the JsonReader fallback and the JsonObject tree the parser used before.
+ * run the main method from the test classpath - the gc profiler reports the bytes allocated per file
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StatsDecoderBenchmark {
+    // a new player, a regular and a veteran
+    @Param({"50", "400", "1500"})
+    public int keys;
+
+    private final StatsDecoder decoder = new StatsDecoder();
+    private byte[] content;
+
+    @Setup
+    public void setUp() {
+        content = StatFiles.vanilla(keys, keys);
+    }
+
+    @Benchmark
+    public StatValues scanner() throws IOException {
+        return decoder.decode(content);
+    }
+
+    @Benchmark
+    public void streaming(Blackhole blackhole) throws IOException {
+        decoder.decodeStreaming(content, (statKey, value) -> {
+            blackhole.consume(statKey);
+            blackhole.consume(value);
+        });
+    }
+
+    @Benchmark
+    public void tree(Blackhole blackhole) {
+        JsonObject stats = JsonParser.parseString(new String(content, StandardCharsets.UTF_8))
+            .getAsJsonObject().getAsJsonObject("stats");
+        for (Map.Entry<String, JsonElement> category : stats.entrySet()) {
+            for (Map.Entry<String, JsonElement> stat : category.getValue().getAsJsonObject().entrySet()) {
+                blackhole.consume(category.getKey() + ":" + stat.getKey());
+                blackhole.consume(stat.getValue().getAsLong());
+            }
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder()
+            .include(StatsDecoderBenchmark.class.getSimpleName())
+            .addProfiler(GCProfiler.class)
+            .build()).run();
+    }
+}
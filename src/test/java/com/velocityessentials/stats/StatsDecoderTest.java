@@ -0,0 +1,109 @@
+package com.velocityessentials.stats;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * the byte scanner against the JsonReader fallback - whichever path a file takes, it decodes to the same stats
+ */
+class StatsDecoderTest {
+    private final StatsDecoder decoder = new StatsDecoder();
+
+    private static List<String> entries(StatValues values) {
+        if (values == null) {
+            return null;
+        }
+        List<String> entries = new ArrayList<>();
+        for (int i = 0; i < values.size(); i++) {
+            entries.add(values.key(i) + "=" + values.value(i));
+        }
+        return entries;
+    }
+
+    private List<String> streamed(byte[] content) throws Exception {
+        List<String> entries = new ArrayList<>();
+        return decoder.decodeStreaming(content, (key, value) -> entries.add(key + "=" + value)) ? entries : null;
+    }
+
+    // decoded twice, so the second pass goes through the scanner's cached name tables
+    private List<String> assertSameDecode(String json) throws Exception {
+        return assertSameDecode(json.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private List<String> assertSameDecode(byte[] content) throws Exception {
+        List<String> expected = streamed(content);
+        assertEquals(expected, entries(decoder.decode(content)));
+        assertEquals(expected, entries(decoder.decode(content)));
+        return expected;
+    }
+
+    @Test
+    void vanillaFiles() throws Exception {
+        for (int seed = 0; seed < 20; seed++) {
+            int keys = 50 + seed * 80;
+            // rounded down to whole categories
+            assertTrue(assertSameDecode(StatFiles.vanilla(seed, keys)).size() > keys - 10);
+        }
+    }
+
+    @Test
+    void prettyPrinted() throws Exception {
+        assertSameDecode("""
+            {
+              "stats": {
+                "minecraft:mined": {
+                  "minecraft:stone": 12,
+                  "minecraft:dirt": 3
+                },
+                "minecraft:custom": {}
+              },
+              "DataVersion": 3465
+            }
+            """);
+    }
+
+    @Test
+    void escapedNames() throws Exception {
+        List<String> entries = assertSameDecode(
+            "{\"stats\":{\"minecraft:custom\":{\"mod:quote\\\"d\":1,\"mod:\\u00e9t\\u00e9\":2,\"mod:plain\":3}}}");
+        assertEquals(List.of("minecraft:custom:mod:quote\"d=1", "minecraft:custom:mod:été=2", "minecraft:custom:mod:plain=3"), entries);
+    }
+
+    @Test
+    void nonAsciiNames() throws Exception {
+        List<String> entries = assertSameDecode(
+            "{\"stats\":{\"minecraft:mined\":{\"mod:bläck_stöne\":5,\"模组:石头\":7}," +
+            "\"über:mod\":{\"mod:ñ\":9}}}");
+        assertEquals(List.of("minecraft:mined:mod:bläck_stöne=5", "minecraft:mined:模组:石头=7",
+            "über:mod:mod:ñ=9"), entries);
+    }
+
+    @Test
+    void largeValues() throws Exception {
+        List<String> entries = assertSameDecode("{\"stats\":{\"minecraft:custom\":{" +
+            "\"a\":999999999999999999,\"b\":1000000000000000000,\"c\":" + Long.MAX_VALUE + "," +
+            "\"d\":-" + Long.MAX_VALUE + ",\"e\":-42,\"f\":0}}}");
+        assertEquals(List.of("minecraft:custom:a=999999999999999999", "minecraft:custom:b=1000000000000000000",
+            "minecraft:custom:c=" + Long.MAX_VALUE, "minecraft:custom:d=-" + Long.MAX_VALUE,
+            "minecraft:custom:e=-42", "minecraft:custom:f=0"), entries);
+    }
+
+    @Test
+    void missingStatsSection() throws Exception {
+        assertNull(assertSameDecode("{\"DataVersion\":3465}"));
+        assertNull(assertSameDecode("{}"));
+        assertNull(assertSameDecode("{\"stats\":[1,2],\"DataVersion\":3465}"));
+    }
+
+    @Test
+    void unexpectedShapesAreSkipped() throws Exception {
+        List<String> entries = assertSameDecode("{\"extra\":{\"nested\":[{\"a\":\"}\"}]}," +
+            "\"stats\":{\"odd\":5,\"minecraft:used\":{\"text\":\"x\",\"minecraft:bow\":2}}}");
+        assertEquals(List.of("minecraft:used:minecraft:bow=2"), entries);
+    }
+}
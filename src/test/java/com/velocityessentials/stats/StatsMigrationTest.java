@@ -0,0 +1,142 @@
+package com.velocityessentials.stats;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * a database in the original text-keyed layout, opened by the stats system and read back through the dictionaries
+ */
+class StatsMigrationTest {
+    private static final String STEVE = "00000000-0000-0001-0000-000000000001";
+    private static final String ALEX = "00000000-0000-0001-0000-000000000002";
+
+    @TempDir
+    Path dir;
+
+    // the schema (and its indexes) as the plugin created it before the dictionaries
+    private void createLegacyDatabase(Path database) throws SQLException {
+        try (Connection conn = DriverManager.getConnection("jdbc:sqlite:" + database); Statement st = conn.createStatement()) {
+            st.execute("CREATE TABLE players (uuid TEXT PRIMARY KEY, username TEXT, last_seen INTEGER, " +
+                "first_seen INTEGER DEFAULT (strftime('%s', 'now')))");
+            st.execute("CREATE TABLE player_stats (uuid TEXT, server_name TEXT, stat_key TEXT, stat_value INTEGER, " +
+                "last_updated INTEGER, PRIMARY KEY (uuid, server_name, stat_key))");
+            st.execute("CREATE TABLE events (id INTEGER PRIMARY KEY AUTOINCREMENT, name TEXT UNIQUE, display_name TEXT, " +
+                "stat_key TEXT, start_time INTEGER, end_time INTEGER, created_by TEXT, status TEXT DEFAULT 'pending')");
+            st.execute("CREATE TABLE event_baselines (event_id INTEGER, player_uuid TEXT, server_name TEXT, baseline_value INTEGER, " +
+                "PRIMARY KEY (event_id, player_uuid, server_name), FOREIGN KEY (event_id) REFERENCES events(id))");
+            st.execute("CREATE TABLE event_results (event_id INTEGER, player_uuid TEXT, final_progress INTEGER, rank INTEGER, " +
+                "PRIMARY KEY (event_id, player_uuid), FOREIGN KEY (event_id) REFERENCES events(id))");
+            st.execute("CREATE INDEX idx_stats_uuid ON player_stats(uuid)");
+            st.execute("CREATE INDEX idx_stats_key ON player_stats(stat_key)");
+            st.execute("CREATE INDEX idx_stats_updated ON player_stats(last_updated)");
+            st.execute("CREATE INDEX idx_events_status ON events(status)");
+
+            st.execute("INSERT INTO players (uuid, username, last_seen, first_seen) VALUES " +
+                "('" + STEVE + "', 'Steve', 200, 100), ('" + ALEX + "', 'Alex', 300, 150)");
+            st.execute("INSERT INTO player_stats VALUES " +
+                "('" + STEVE + "', 'survival', 'minecraft:mined:minecraft:stone', 40, 200), " +
+                "('" + STEVE + "', 'creative', 'minecraft:mined:minecraft:stone', 2, 200), " +
+                "('" + STEVE + "', 'survival', 'minecraft:custom:minecraft:jump', 500, 200), " +
+                "('" + ALEX + "', 'survival', 'minecraft:mined:minecraft:stone', 90, 300), " +
+                "('" + ALEX + "', 'survival', 'minecraft:mined:minecraft:dirt', 7, 300)");
+            st.execute("INSERT INTO events (id, name, display_name, stat_key, start_time, end_time, status) VALUES " +
+                "(1, 'dig', 'Dig', 'minecraft:mined:minecraft:stone', 100, 150, 'finished')");
+            st.execute("INSERT INTO event_baselines VALUES (1, '" + STEVE + "', 'survival', 10), (1, '" + ALEX + "', 'survival', 60)");
+            st.execute("INSERT INTO event_results VALUES (1, '" + ALEX + "', 30, 1), (1, '" + STEVE + "', 30, 1)");
+
+            // filler the migration frees again - after the VACUUM none of its pages may be left over
+            st.execute("CREATE TABLE filler (data BLOB)");
+            st.execute("INSERT INTO filler SELECT randomblob(4096) FROM (WITH RECURSIVE n(i) AS (SELECT 1 UNION ALL SELECT i + 1 FROM n WHERE i < 200) SELECT i FROM n)");
+            st.execute("DROP TABLE filler");
+        }
+    }
+
+    private static List<String> rows(Connection conn, String sql) throws SQLException {
+        List<String> rows = new ArrayList<>();
+        try (Statement st = conn.createStatement(); ResultSet rs = st.executeQuery(sql)) {
+            int columns = rs.getMetaData().getColumnCount();
+            while (rs.next()) {
+                StringBuilder row = new StringBuilder();
+                for (int i = 1; i <= columns; i++) {
+                    row.append(i > 1 ? " " : "").append(rs.getString(i));
+                }
+                rows.add(row.toString());
+            }
+        }
+        return rows;
+    }
+
+    private void open() throws Exception {
+        Path survival = Files.createDirectories(dir.resolve("survival/world/stats"));
+        Path creative = Files.createDirectories(dir.resolve("creative/world/stats"));
+        Path data = dir.resolve("data");
+        StatsSystem stats = new StatsSystem(StatsTestSupport.plugin(data, Map.of("survival", survival, "creative", creative), false));
+        stats.shutdown();
+    }
+
+    @Test
+    void legacyDatabaseRoundTrips() throws Exception {
+        Path database = Files.createDirectories(dir.resolve("data")).resolve("stats.db");
+        createLegacyDatabase(database);
+        try (Connection conn = DriverManager.getConnection("jdbc:sqlite:" + database)) {
+            assertNotEquals(List.of("0"), rows(conn, "PRAGMA freelist_count"));
+        }
+
+        open();
+
+        List<String> stats = List.of(
+            STEVE + " creative minecraft:mined:minecraft:stone 2 200",
+            STEVE + " survival minecraft:custom:minecraft:jump 500 200",
+            STEVE + " survival minecraft:mined:minecraft:stone 40 200",
+            ALEX + " survival minecraft:mined:minecraft:dirt 7 300",
+            ALEX + " survival minecraft:mined:minecraft:stone 90 300");
+        String statsQuery = "SELECT p.uuid, s.name, k.key, ps.stat_value, ps.last_updated FROM player_stats ps " +
+            "JOIN players p ON p.id = ps.player_id JOIN servers s ON s.id = ps.server_id JOIN stat_keys k ON k.id = ps.stat_id " +
+            "ORDER BY p.uuid, s.name, k.key";
+
+        try (Connection conn = DriverManager.getConnection("jdbc:sqlite:" + database)) {
+            assertEquals(stats, rows(conn, statsQuery));
+            assertEquals(List.of(STEVE + " Steve 200 100", ALEX + " Alex 300 150"),
+                rows(conn, "SELECT uuid, username, last_seen, first_seen FROM players ORDER BY uuid"));
+            assertEquals(List.of(STEVE + " survival 10", ALEX + " survival 60"),
+                rows(conn, "SELECT p.uuid, s.name, b.baseline_value FROM event_baselines b " +
+                    "JOIN players p ON p.id = b.player_id JOIN servers s ON s.id = b.server_id ORDER BY p.uuid"));
+            assertEquals(List.of(STEVE + " 30 1", ALEX + " 30 1"),
+                rows(conn, "SELECT p.uuid, r.final_progress, r.rank FROM event_results r " +
+                    "JOIN players p ON p.id = r.player_id ORDER BY p.uuid"));
+            assertEquals(List.of("dig minecraft:mined:minecraft:stone finished"),
+                rows(conn, "SELECT name, stat_key, status FROM events"));
+
+            // the totals are filled from the migrated rows, the mined category included
+            assertEquals(List.of(
+                    STEVE + " minecraft:custom:minecraft:jump 500",
+                    STEVE + " minecraft:mined:* 42", STEVE + " minecraft:mined:minecraft:stone 42",
+                    ALEX + " minecraft:mined:* 97", ALEX + " minecraft:mined:minecraft:dirt 7", ALEX + " minecraft:mined:minecraft:stone 90"),
+                rows(conn, "SELECT p.uuid, k.key, t.total FROM player_stat_totals t " +
+                    "JOIN players p ON p.id = t.player_id JOIN stat_keys k ON k.id = t.stat_id ORDER BY p.uuid, k.key"));
+
+            assertEquals(List.of(), rows(conn, "SELECT name FROM sqlite_master WHERE name LIKE 'legacy_%' OR name LIKE 'idx_stats_uuid'"));
+            assertEquals(List.of("0"), rows(conn, "PRAGMA freelist_count"));
+        }
+
+        // a second start sees the new layout and leaves it alone
+        open();
+        try (Connection conn = DriverManager.getConnection("jdbc:sqlite:" + database)) {
+            assertEquals(stats, rows(conn, statsQuery));
+            assertEquals(List.of("2"), rows(conn, "SELECT COUNT(*) FROM players"));
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package com.velocityessentials.stats;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * a shard commits before the stats.db commit carrying its totals - a crash in between
+ * has to be caught by the sequence numbers on the next start and the totals summed again
+ */
+class StatsShardsTest {
+    private static final String STONE = "minecraft:mined:minecraft:stone";
+
+    @TempDir
+    Path dir;
+
+    private final Map<String, Path> servers = new TreeMap<>();
+
+    private StatsSystem start() throws Exception {
+        return new StatsSystem(StatsTestSupport.plugin(dir.resolve("data"), servers, true));
+    }
+
+    // stat totals that differ from the sum of their rows
+    private int staleTotals() throws Exception {
+        try (Connection conn = StatsTestSupport.connect(dir.resolve("data")); Statement st = conn.createStatement();
+             ResultSet rs = st.executeQuery("""
+                 SELECT COUNT(*) FROM player_stat_totals t JOIN stat_keys k ON k.id = t.stat_id
+                 WHERE k.key NOT LIKE '%:*' AND t.total != COALESCE((SELECT SUM(stat_value) FROM player_stats p
+                     WHERE p.stat_id = t.stat_id AND p.player_id = t.player_id), 0)
+                 """)) {
+            return rs.getInt(1);
+        }
+    }
+
+    private long shardSequence(String file) throws Exception {
+        try (Connection conn = DriverManager.getConnection("jdbc:sqlite:" + dir.resolve("data/stats-shards/" + file));
+             Statement st = conn.createStatement(); ResultSet rs = st.executeQuery("SELECT seq FROM shard_state")) {
+            return rs.getLong(1);
+        }
+    }
+
+    private long recordedSequence(String server) throws Exception {
+        try (Connection conn = DriverManager.getConnection("jdbc:sqlite:" + dir.resolve("data/stats.db"));
+             Statement st = conn.createStatement();
+             ResultSet rs = st.executeQuery("SELECT seq FROM stat_shards WHERE server_name = '" + server + "'")) {
+            return rs.getLong(1);
+        }
+    }
+
+    @Test
+    void crashBetweenShardAndTotalsIsRebuilt() throws Exception {
+        servers.put("survival", dir.resolve("survival/world/stats"));
+        servers.put("creative", dir.resolve("creative/world/stats"));
+        String steve = new UUID(1, 1).toString();
+        String alex = new UUID(1, 2).toString();
+
+        StatsSystem stats = start();
+        try {
+            StatsTestSupport.writeStats(servers.get("survival"), steve, Map.of(STONE, 10L));
+            StatsTestSupport.writeStats(servers.get("survival"), alex, Map.of(STONE, 20L));
+            StatsTestSupport.writeStats(servers.get("creative"), steve, Map.of(STONE, 5L));
+            StatsTestSupport.ingest(stats);
+        } finally {
+            stats.shutdown();
+        }
+        assertEquals(0, staleTotals());
+        assertEquals(shardSequence("survival.db"), recordedSequence("survival"));
+
+        // what a shard commit without its stats.db commit leaves behind - new rows, one more commit counted
+        try (Connection conn = DriverManager.getConnection("jdbc:sqlite:" + dir.resolve("data/stats-shards/survival.db"));
+             Statement st = conn.createStatement()) {
+            st.executeUpdate("UPDATE player_stats SET stat_value = stat_value + 1000");
+            st.executeUpdate("UPDATE shard_state SET seq = seq + 1");
+        }
+        assertEquals(2, staleTotals());
+        assertNotEquals(shardSequence("survival.db"), recordedSequence("survival"));
+
+        stats = start();
+        try {
+            assertEquals(0, staleTotals());
+            assertEquals(shardSequence("survival.db"), recordedSequence("survival"));
+            assertEquals(shardSequence("creative.db"), recordedSequence("creative"));
+
+            // and the writer carries on from the rebuilt totals
+            StatsTestSupport.writeStats(servers.get("survival"), steve, Map.of(STONE, 15L));
+            StatsTestSupport.ingest(stats);
+            assertEquals(0, staleTotals());
+        } finally {
+            stats.shutdown();
+        }
+        assertEquals(shardSequence("survival.db"), recordedSequence("survival"));
+    }
+
+    @Test
+    void moreShardsThanSqliteCanAttachIsRefused() throws Exception {
+        for (int i = 0; i < 11; i++) {
+            servers.put("server" + i, dir.resolve("server" + i + "/world/stats"));
+        }
+
+        IllegalStateException e = assertThrows(IllegalStateException.class, this::start);
+        assertTrue(e.getMessage().contains("11 servers"), e.getMessage());
+        // refused before any shard file was created
+        assertFalse(Files.exists(dir.resolve("data").resolve(StatsShards.DIRECTORY)));
+    }
+}
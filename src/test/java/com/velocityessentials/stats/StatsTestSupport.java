@@ -0,0 +1,128 @@
+package com.velocityessentials.stats;
+
+import com.velocityessentials.VelocityEssentials;
+import com.velocityessentials.config.Config;
+import org.slf4j.helpers.NOPLogger;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+
+/**
+ * a stats system over a temp directory - a plugin with a real config, stat files written the way vanilla does,
+ * and plain connections to the database it leaves behind
+ */
+final class StatsTestSupport {
+    private StatsTestSupport() {
+    }
+
+    /**
+     * a plugin whose config.yml holds the stats section with the given servers (name -> stats folder)
+     */
+    static VelocityEssentials plugin(Path dataDirectory, Map<String, Path> servers, boolean sharded) throws Exception {
+        StringBuilder yaml = new StringBuilder()
+            .append("stats:\n")
+            .append("  enabled: true\n")
+            // nothing listens there, username lookups fail at once instead of reaching mojang
+            .append("  mojang:\n")
+            .append("    session-server-url: \"http://127.0.0.1:1/\"\n")
+            .append("  database:\n")
+            .append("    sharded: ").append(sharded).append('\n')
+            .append("  servers:\n");
+        for (Map.Entry<String, Path> server : servers.entrySet()) {
+            yaml.append("    ").append(server.getKey()).append(": \"").append(server.getValue()).append("\"\n");
+        }
+
+        Files.createDirectories(dataDirectory);
+        Files.writeString(dataDirectory.resolve("config.yml"), yaml);
+
+        VelocityEssentials plugin = new VelocityEssentials(null, NOPLogger.NOP_LOGGER, dataDirectory);
+        Config config = new Config(plugin);
+        if (!config.load()) {
+            throw new IllegalStateException("config did not load");
+        }
+        // normally set on proxy initialization, which needs a running proxy
+        Field field = VelocityEssentials.class.getDeclaredField("config");
+        field.setAccessible(true);
+        field.set(plugin, config);
+        return plugin;
+    }
+
+    /**
+     * writes a player's stat file, keys are "category:key" - the mtime always moves forward so every write is picked up
+     */
+    static void writeStats(Path statsFolder, String uuid, Map<String, Long> stats) throws IOException {
+        Map<String, Map<String, Long>> categories = new TreeMap<>();
+        for (Map.Entry<String, Long> stat : stats.entrySet()) {
+            String key = stat.getKey();
+            int split = key.indexOf(':', key.indexOf(':') + 1);
+            categories.computeIfAbsent(key.substring(0, split), c -> new TreeMap<>()).put(key.substring(split + 1), stat.getValue());
+        }
+
+        StringBuilder json = new StringBuilder("{\"stats\":{");
+        String separator = "";
+        for (Map.Entry<String, Map<String, Long>> category : categories.entrySet()) {
+            json.append(separator).append('"').append(category.getKey()).append("\":{");
+            String statSeparator = "";
+            for (Map.Entry<String, Long> stat : category.getValue().entrySet()) {
+                json.append(statSeparator).append('"').append(stat.getKey()).append("\":").append(stat.getValue());
+                statSeparator = ",";
+            }
+            json.append('}');
+            separator = ",";
+        }
+        json.append("},\"DataVersion\":3465}");
+
+        Files.createDirectories(statsFolder);
+        Path file = statsFolder.resolve(uuid + ".json");
+        FileTime previous = Files.exists(file) ? Files.getLastModifiedTime(file) : null;
+        Files.writeString(file, json);
+        if (previous != null) {
+            Files.setLastModifiedTime(file, FileTime.fromMillis(previous.toMillis() + 1000));
+        }
+    }
+
+    // one full scan, returns once everything it read is committed
+    static void ingest(StatsSystem stats) {
+        stats.processAllStats();
+    }
+
+    /**
+     * a connection to stats.db with every shard attached under a player_stats view, like the plugin's own
+     */
+    static Connection connect(Path dataDirectory) throws SQLException, IOException {
+        Connection conn = DriverManager.getConnection("jdbc:sqlite:" + dataDirectory.resolve("stats.db"));
+        Path shards = dataDirectory.resolve(StatsShards.DIRECTORY);
+        if (!Files.isDirectory(shards)) {
+            return conn;
+        }
+
+        List<Path> files;
+        try (Stream<Path> list = Files.list(shards)) {
+            files = list.filter(p -> p.toString().endsWith(".db")).sorted().toList();
+        }
+        StringBuilder view = new StringBuilder("CREATE TEMP VIEW player_stats AS SELECT * FROM main.player_stats");
+        for (int i = 0; i < files.size(); i++) {
+            try (PreparedStatement ps = conn.prepareStatement("ATTACH DATABASE ? AS shard_" + i)) {
+                ps.setString(1, files.get(i).toString());
+                ps.execute();
+            }
+            view.append(" UNION ALL SELECT * FROM shard_").append(i).append(".player_stats");
+        }
+        try (Statement st = conn.createStatement()) {
+            st.execute(view.toString());
+        }
+        return conn;
+    }
+}
@@ -0,0 +1,195 @@
+package com.velocityessentials.stats;
+
+import com.sun.net.httpserver.HttpServer;
+import com.velocityessentials.VelocityEssentials;
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.slf4j.helpers.NOPLogger;
+
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * the resolver against a stand-in session server on localhost - no network needed
+ */
+class UsernameResolverTest {
+    private static final int REQUESTS_PER_MINUTE = 600;
+
+    @TempDir
+    Path dir;
+
+    private HttpServer sessionServer;
+    // undashed uuid -> name the stand-in knows, everything else is a 204 like for an unknown profile
+    private final Map<String, String> profiles = new ConcurrentHashMap<>();
+    private final List<Long> requestTimes = new ArrayList<>();
+    private final Map<String, Integer> requests = new ConcurrentHashMap<>();
+    private final BlockingQueue<String> resolved = new LinkedBlockingQueue<>();
+    private VelocityEssentials plugin;
+    private HikariDataSource dataSource;
+    private final List<UsernameResolver> resolvers = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() throws Exception {
+        sessionServer = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        sessionServer.createContext("/", exchange -> {
+            String path = exchange.getRequestURI().getPath();
+            String uuid = path.substring(path.lastIndexOf('/') + 1);
+            synchronized (requestTimes) {
+                requestTimes.add(System.nanoTime());
+            }
+            requests.merge(uuid, 1, Integer::sum);
+
+            String name = profiles.get(uuid);
+            if (name == null) {
+                exchange.sendResponseHeaders(204, -1);
+                exchange.close();
+                return;
+            }
+            byte[] body = ("{\"id\":\"" + uuid + "\",\"name\":\"" + name + "\"}").getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write(body);
+            }
+        });
+        sessionServer.start();
+
+        plugin = new VelocityEssentials(null, NOPLogger.NOP_LOGGER, dir);
+
+        HikariConfig config = new HikariConfig();
+        config.setJdbcUrl("jdbc:sqlite:" + dir.resolve("stats.db"));
+        config.setMaximumPoolSize(1);
+        dataSource = new HikariDataSource(config);
+        try (Connection conn = dataSource.getConnection(); Statement st = conn.createStatement()) {
+            st.execute("CREATE TABLE players (id INTEGER PRIMARY KEY, uuid TEXT UNIQUE, username TEXT, last_seen INTEGER)");
+            st.execute("INSERT INTO players (uuid, username, last_seen) VALUES ('" + new UUID(0, 1) + "', 'Cached', 1)");
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        resolvers.forEach(UsernameResolver::shutdown);
+        sessionServer.stop(0);
+        dataSource.close();
+    }
+
+    private UsernameResolver resolver() {
+        return resolver("http://127.0.0.1:" + sessionServer.getAddress().getPort() + "/session/minecraft/profile/");
+    }
+
+    private UsernameResolver resolver(String sessionServerUrl) {
+        UsernameResolver resolver = new UsernameResolver(plugin, dataSource, Map.of(),
+            (uuid, name) -> resolved.add(uuid + "=" + name), sessionServerUrl, REQUESTS_PER_MINUTE, 100);
+        resolvers.add(resolver);
+        return resolver;
+    }
+
+    private String known(UUID uuid, String name) {
+        profiles.put(uuid.toString().replace("-", ""), name);
+        return uuid.toString();
+    }
+
+    private String next() throws InterruptedException {
+        return resolved.poll(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    void answersFromTheWarmedCacheWithoutARequest() {
+        assertEquals("Cached", resolver().resolve(new UUID(0, 1).toString()));
+        assertTrue(requests.isEmpty());
+    }
+
+    @Test
+    void missReturnsAtOnceAndIsFilledInLater() throws Exception {
+        UsernameResolver resolver = resolver();
+        String uuid = known(new UUID(0, 2), "Steve");
+
+        assertNull(resolver.resolve(uuid));
+        assertEquals(uuid + "=Steve", next());
+        assertEquals("Steve", resolver.resolve(uuid));
+        assertEquals(1, resolver.getLookups());
+    }
+
+    @Test
+    void failedLookupBacksOffAcrossRestarts() throws Exception {
+        UsernameResolver resolver = resolver();
+        String unknown = new UUID(0, 3).toString();
+        String undashed = unknown.replace("-", "");
+
+        assertNull(resolver.resolve(unknown));
+        // lookups run in order, so once a later one resolved the unknown one has been tried
+        String marker = known(new UUID(0, 4), "Alex");
+        resolver.resolve(marker);
+        assertEquals(marker + "=Alex", next());
+        assertEquals(1, requests.get(undashed));
+
+        assertNull(resolver.resolve(unknown));
+        String second = known(new UUID(0, 5), "Herobrine");
+        resolver.resolve(second);
+        assertEquals(second + "=Herobrine", next());
+        assertEquals(1, requests.get(undashed), "retried inside the backoff");
+
+        // the backoff is persisted, a new resolver picks it up
+        resolver.shutdown();
+        UsernameResolver restarted = resolver();
+        assertNull(restarted.resolve(unknown));
+        String third = known(new UUID(0, 6), "Notch");
+        restarted.resolve(third);
+        assertEquals(third + "=Notch", next());
+        assertEquals(1, requests.get(undashed), "retried after a restart");
+    }
+
+    @Test
+    void requestsAreSpacedByTheRateLimit() throws Exception {
+        UsernameResolver resolver = resolver();
+        List<String> uuids = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            uuids.add(known(new UUID(1, i), "Player" + i));
+        }
+        uuids.forEach(resolver::resolve);
+        for (int i = 0; i < uuids.size(); i++) {
+            assertNotNull(next());
+        }
+
+        long intervalNanos = TimeUnit.MINUTES.toNanos(1) / REQUESTS_PER_MINUTE;
+        synchronized (requestTimes) {
+            assertEquals(uuids.size(), requestTimes.size());
+            for (int i = 1; i < requestTimes.size(); i++) {
+                long gap = requestTimes.get(i) - requestTimes.get(i - 1);
+                assertTrue(gap >= intervalNanos * 9 / 10, "requests " + (i - 1) + " and " + i + " only " + gap + "ns apart");
+            }
+        }
+    }
+
+    @Test
+    void unreachableSessionServerCountsAsAFailure() throws Exception {
+        // nothing listens on port 1
+        UsernameResolver resolver = resolver("http://127.0.0.1:1/");
+        String uuid = new UUID(0, 7).toString();
+
+        assertNull(resolver.resolve(uuid));
+        long deadline = System.currentTimeMillis() + 5000;
+        while (resolver.getLookups() == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        assertEquals(1, resolver.getLookups());
+        assertNull(resolver.resolve(uuid));
+    }
+}